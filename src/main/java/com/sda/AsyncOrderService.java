@@ -0,0 +1,131 @@
+package com.sda;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Non-blocking facade over OrderService: every call runs on the executor and the caller gets a future.
+// By default that is one virtual thread per call (Java 21+), so a slow repository parks
+// cheap virtual threads instead of tying up a pool of platform threads.
+//
+// At most maxInFlight calls run at the same time. A call that finds no free slot waits up to
+// acquireTimeout on the calling thread (backpressure), and if there still is none its future
+// fails with RejectedExecutionException instead of queueing without limit
+public class AsyncOrderService implements AutoCloseable {
+    private final OrderService orderService;
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final long acquireTimeoutNanos;
+
+    public AsyncOrderService(OrderService orderService, int maxInFlight, Duration acquireTimeout) {
+        this(orderService, newDefaultExecutor("async-order-service"), true, maxInFlight, acquireTimeout);
+    }
+
+    // the executor stays owned by the caller, close() doesn't shut it down
+    public AsyncOrderService(OrderService orderService, Executor executor, int maxInFlight, Duration acquireTimeout) {
+        this(orderService, executor, false, maxInFlight, acquireTimeout);
+    }
+
+    private AsyncOrderService(OrderService orderService, Executor executor, boolean ownsExecutor,
+                              int maxInFlight, Duration acquireTimeout) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Max in flight must be positive");
+        }
+        if (acquireTimeout.isNegative()) {
+            throw new IllegalArgumentException("Acquire timeout must not be negative");
+        }
+        this.orderService = orderService;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.permits = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    public CompletableFuture<Order> createOrder(String orderId, double itemPrice, int itemCount, double taxRate) {
+        return submit(() -> orderService.createOrder(orderId, itemPrice, itemCount, taxRate));
+    }
+
+    public CompletableFuture<Order> confirmOrder(String orderId) {
+        return submit(() -> orderService.tryConfirmOrder(orderId).orderOrThrow());
+    }
+
+    public CompletableFuture<Order> cancelOrder(String orderId) {
+        return submit(() -> orderService.tryCancelOrder(orderId).orderOrThrow());
+    }
+
+    // how many calls are running or waiting for the repository right now
+    public int inFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private CompletableFuture<Order> submit(Supplier<Order> call) {
+        if (!acquirePermit()) {
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Too many orders in flight (" + maxInFlight + ")"));
+        }
+        CompletableFuture<Order> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> run(call, future));
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // the permit is back before the future completes, so a dependent stage can start the next call
+    private void run(Supplier<Order> call, CompletableFuture<Order> future) {
+        Order order;
+        try {
+            order = call.get();
+        } catch (Throwable e) {
+            permits.release();
+            future.completeExceptionally(e);
+            return;
+        }
+        permits.release();
+        future.complete(order);
+    }
+
+    private boolean acquirePermit() {
+        if (acquireTimeoutNanos == 0) {
+            return permits.tryAcquire();
+        }
+        try {
+            return permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // the build still targets Java 17, so the virtual thread executor is looked up at runtime.
+    // On 17 it falls back to a growing pool of daemon threads, maxInFlight caps its size
+    static ExecutorService newDefaultExecutor(String threadName) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.sda;
+
+import java.time.format.DateTimeFormatter;
+
+// Where OrderAuditService gets its timestamps from.
+// CachedAuditClock is the production clock, tests pass a clock they control
+public interface AuditClock {
+    // the text of a timestamp label, e.g. 2024-01-31T23:59:59, LocalDateTime.parse() reads it back
+    DateTimeFormatter LABEL_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    // epoch microseconds, larger than every value returned before to the same thread.
+    // Two threads may get the same value, stores order such entries themselves
+    long epochMicros();
+
+    // label of the second of the calling thread's latest epochMicros(), formatted in the clock's time zone
+    String currentLabel();
+}
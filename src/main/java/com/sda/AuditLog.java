@@ -0,0 +1,423 @@
+package com.sda;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Column oriented store for audit entries.
+// Instead of building a String for every entry, each field lives in its own array
+// and the "[timestamp] Order id: ACTION" text is only rendered when somebody reads it.
+//
+// Entries are kept in timestamp order inside fixed size segments, so retention can
+// binary search for the cutoff and drop whole segments instead of scanning every entry.
+//
+// One thread may append at a time. Readers and clearOldEntries callers can run next to
+// that writer without blocking it: a slot is only published (by moving the segment's end)
+// after all its columns are written, and written slots are never changed again.
+// An AuditTrailIndex next to the segments answers trail() for one order. It costs every append
+// a map update, a log whose trails are rarely asked for can leave it out and scan instead
+public class AuditLog implements AuditStore {
+    static final int SEGMENT_SIZE = 4096;
+    private static final int MAX_ACTIONS = 256;
+
+    private static final VarHandle SEGMENT_END;
+
+    static {
+        try {
+            SEGMENT_END = MethodHandles.lookup().findVarHandle(Segment.class, "end", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final AtomicReference<Directory> directory = new AtomicReference<>(new Directory(new Segment[8], 0, 0));
+    private final Object cleanerLock = new Object();
+    private final AuditTrailIndex trails; // null when trail() scans the segments
+
+    public AuditLog() {
+        this(true);
+    }
+
+    public AuditLog(boolean indexTrails) {
+        this.trails = indexTrails ? new AuditTrailIndex() : null;
+    }
+
+    // only touched by the writing thread
+    private Segment current;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    // actions are a small vocabulary (UPDATED, UPDATED_FAILED, ...), so we intern
+    // them once and only keep a one byte code per entry
+    private final Map<String, Byte> actionLookup = new HashMap<>();
+    private final String[] actions = new String[MAX_ACTIONS];
+
+    @Override
+    public void append(long epochMillis, String timestampLabel, String action, String orderId) {
+        appendMicros(toMicros(epochMillis), timestampLabel, action, orderId);
+    }
+
+    // a clock that jumps backwards must not break the ordering,
+    // so such an entry gets the timestamp of the previous one
+    @Override
+    public void appendMicros(long epochMicros, String timestampLabel, String action, String orderId) {
+        long timestamp = Math.max(epochMicros, lastTimestamp);
+        Segment segment = current;
+        if (segment == null || segment.end == SEGMENT_SIZE) {
+            segment = addSegment();
+        }
+        int slot = segment.end;
+        segment.timestamps[slot] = timestamp;
+        segment.timestampLabels[slot] = timestampLabel;
+        segment.actionCodes[slot] = codeOf(action);
+        segment.orderIds[slot] = orderId;
+        SEGMENT_END.setRelease(segment, slot + 1);
+        lastTimestamp = timestamp;
+        if (trails != null) {
+            trails.add(orderId, timestamp, timestampLabel, action);
+        }
+    }
+
+    @Override
+    public int size() {
+        return snapshot().remaining();
+    }
+
+    // epoch millis
+    public long getTimestamp(int index) {
+        Snapshot snapshot = snapshot();
+        long position = snapshot.locate(index);
+        return Math.floorDiv(snapshot.segments[(int) (position >>> 32)].timestamps[(int) position], 1000);
+    }
+
+    public String getAction(int index) {
+        Snapshot snapshot = snapshot();
+        long position = snapshot.locate(index);
+        return actions[snapshot.segments[(int) (position >>> 32)].actionCodes[(int) position] & 0xFF];
+    }
+
+    public String getOrderId(int index) {
+        Snapshot snapshot = snapshot();
+        long position = snapshot.locate(index);
+        return snapshot.segments[(int) (position >>> 32)].orderIds[(int) position];
+    }
+
+    // renders a single entry in the same format the service always used
+    public String render(int index) {
+        Snapshot snapshot = snapshot();
+        long position = snapshot.locate(index);
+        return render(snapshot.segments[(int) (position >>> 32)], (int) position);
+    }
+
+    @Override
+    public List<String> renderAll() {
+        Snapshot snapshot = snapshot();
+        List<String> entries = new ArrayList<>(snapshot.remaining());
+        while (snapshot.hasNext()) {
+            entries.add(snapshot.renderNext());
+        }
+        return entries;
+    }
+
+    // renders each entry only when the stream gets to it
+    @Override
+    public Stream<String> entries() {
+        Snapshot snapshot = snapshot();
+        Iterator<String> iterator = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return snapshot.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!snapshot.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot.renderNext();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(iterator, snapshot.remaining(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    // O(log n + k) for the k entries of the order with the index, without it O(n)
+    @Override
+    public List<String> trail(String orderId, long fromMillis, long toMillis) {
+        return findTrail(orderId, fromMillis, toMillis).entries;
+    }
+
+    // the timestamps of the entries found are epoch micros
+    AuditTrailIndex.Found findTrail(String orderId, long fromMillis, long toMillis) {
+        long from = toMicros(fromMillis);
+        long to = toMicros(toMillis);
+        if (trails != null) {
+            return trails.find(orderId, from, to);
+        }
+        Snapshot snapshot = snapshot();
+        long[] timestamps = new long[16];
+        List<String> entries = new ArrayList<>();
+        for (int s = 0; s < snapshot.segments.length; s++) {
+            Segment segment = snapshot.segments[s];
+            for (int slot = snapshot.starts[s]; slot < snapshot.ends[s]; slot++) {
+                long timestamp = segment.timestamps[slot];
+                if (timestamp >= from && timestamp < to && segment.orderIds[slot].equals(orderId)) {
+                    if (entries.size() == timestamps.length) {
+                        timestamps = Arrays.copyOf(timestamps, timestamps.length * 2);
+                    }
+                    timestamps[entries.size()] = timestamp;
+                    entries.add(render(segment, slot));
+                }
+            }
+        }
+        return new AuditTrailIndex.Found(Arrays.copyOf(timestamps, entries.size()), entries);
+    }
+
+    // drops every entry older than the cutoff
+    // whole segments are cut off after a binary search, so the cost is O(log n)
+    // no matter how many entries are removed
+    // Returns number of deleted entries
+    @Override
+    public int removeOlderThan(long cutoffMillis) {
+        long cutoff = toMicros(cutoffMillis);
+        synchronized (cleanerLock) {
+            if (trails != null) {
+                trails.removeOlderThan(cutoff);
+            }
+            while (true) {
+                Directory dir = directory.get();
+                if (dir.head == dir.tail) {
+                    return 0;
+                }
+                // the newest segment is never dropped, the writer may still be filling it
+                int firstKept = Math.min(firstSegmentWithEntriesFrom(dir, cutoff), dir.tail - 1);
+                int removed = 0;
+                for (int s = dir.head; s < firstKept; s++) {
+                    removed += dir.segments[s].end - dir.segments[s].start;
+                }
+                if (!directory.compareAndSet(dir, dir.withHead(firstKept))) {
+                    // the writer added a segment in the meantime, look again
+                    continue;
+                }
+
+                // removed slots keep their values until the whole segment goes away,
+                // a reader may still be looking at them
+                Segment boundary = dir.segments[firstKept];
+                int firstSlot = firstSlotFrom(boundary, cutoff);
+                removed += firstSlot - boundary.start;
+                boundary.start = firstSlot;
+                return removed;
+            }
+        }
+    }
+
+    // consistent view of all entries published so far
+    Snapshot snapshot() {
+        Directory dir = directory.get();
+        int count = dir.tail - dir.head;
+        Segment[] segments = new Segment[count];
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            Segment segment = dir.segments[dir.head + i];
+            segments[i] = segment;
+            ends[i] = (int) SEGMENT_END.getAcquire(segment);
+        }
+        // retention only ever trims the oldest segment, every later one starts at slot 0
+        if (count > 0) {
+            starts[0] = Math.min(segments[0].start, ends[0]);
+        }
+        return new Snapshot(segments, starts, ends);
+    }
+
+    // segments are ordered by time, so the first one whose newest entry is not older
+    // than the cutoff is the first one we have to keep
+    private static int firstSegmentWithEntriesFrom(Directory dir, long cutoff) {
+        int low = dir.head;
+        int high = dir.tail;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Segment segment = dir.segments[mid];
+            int end = (int) SEGMENT_END.getAcquire(segment);
+            if (end == 0 || segment.timestamps[end - 1] < cutoff) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int firstSlotFrom(Segment segment, long cutoff) {
+        int low = segment.start;
+        int high = (int) SEGMENT_END.getAcquire(segment);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segment.timestamps[mid] < cutoff) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // saturates, so Long.MIN_VALUE and Long.MAX_VALUE stay open bounds
+    static long toMicros(long millis) {
+        if (millis > Long.MAX_VALUE / 1000) {
+            return Long.MAX_VALUE;
+        }
+        if (millis < Long.MIN_VALUE / 1000) {
+            return Long.MIN_VALUE;
+        }
+        return millis * 1000;
+    }
+
+    private Segment addSegment() {
+        Segment segment = new Segment();
+        while (true) {
+            Directory dir = directory.get();
+            if (directory.compareAndSet(dir, dir.append(segment))) {
+                current = segment;
+                return segment;
+            }
+        }
+    }
+
+    private String render(Segment segment, int slot) {
+        return "[" + segment.timestampLabels[slot] + "] Order " + segment.orderIds[slot] + ": " + actions[segment.actionCodes[slot] & 0xFF];
+    }
+
+    private byte codeOf(String action) {
+        Byte code = actionLookup.get(action);
+        if (code != null) {
+            return code;
+        }
+        int newCode = actionLookup.size();
+        if (newCode == MAX_ACTIONS) {
+            throw new IllegalStateException("Too many distinct audit actions");
+        }
+        // published to readers together with the entry that first uses it
+        actions[newCode] = action;
+        actionLookup.put(action, (byte) newCode);
+        return (byte) newCode;
+    }
+
+    private static final class Segment {
+        private final long[] timestamps = new long[SEGMENT_SIZE]; // epoch micros
+        private final String[] timestampLabels = new String[SEGMENT_SIZE];
+        private final byte[] actionCodes = new byte[SEGMENT_SIZE];
+        private final String[] orderIds = new String[SEGMENT_SIZE];
+        private volatile int start; // first live slot, moves forward when retention cuts into the segment
+        private volatile int end;   // next free slot, written by the writer with release semantics
+    }
+
+    // immutable list of live segments, segments[head..tail) with the oldest one first
+    // the writer and the cleaners swap it with compareAndSet, so nobody has to lock
+    private static final class Directory {
+        private final Segment[] segments;
+        private final int head;
+        private final int tail;
+
+        private Directory(Segment[] segments, int head, int tail) {
+            this.segments = segments;
+            this.head = head;
+            this.tail = tail;
+        }
+
+        private Directory withHead(int newHead) {
+            return new Directory(segments, newHead, tail);
+        }
+
+        // older directories only look at their own [head, tail), so writing past
+        // the tail of the shared array is invisible to them
+        private Directory append(Segment segment) {
+            if (tail < segments.length) {
+                segments[tail] = segment;
+                return new Directory(segments, head, tail + 1);
+            }
+            int live = tail - head;
+            // a fresh array also lets go of segments that were dropped by retention
+            Segment[] copy = new Segment[live < segments.length / 2 ? segments.length : segments.length * 2];
+            System.arraycopy(segments, head, copy, 0, live);
+            copy[live] = segment;
+            return new Directory(copy, 0, live + 1);
+        }
+    }
+
+    // cursor over the entries visible when the snapshot was taken, oldest first
+    final class Snapshot {
+        private final Segment[] segments;
+        private final int[] starts;
+        private final int[] ends;
+        private int segment;
+        private int slot;
+
+        private Snapshot(Segment[] segments, int[] starts, int[] ends) {
+            this.segments = segments;
+            this.starts = starts;
+            this.ends = ends;
+            this.slot = segments.length == 0 ? 0 : starts[0];
+            skipExhausted();
+        }
+
+        boolean hasNext() {
+            return segment < segments.length;
+        }
+
+        long peekTimestamp() {
+            return segments[segment].timestamps[slot];
+        }
+
+        String renderNext() {
+            String entry = render(segments[segment], slot);
+            slot++;
+            skipExhausted();
+            return entry;
+        }
+
+        int remaining() {
+            int remaining = 0;
+            for (int i = segment; i < segments.length; i++) {
+                remaining += ends[i] - (i == segment ? slot : starts[i]);
+            }
+            return remaining;
+        }
+
+        // maps an index to (segment << 32 | slot) inside this snapshot
+        // only the first segment can be partially trimmed, so this is plain arithmetic
+        private long locate(int index) {
+            if (index >= 0 && segments.length > 0) {
+                int inFirst = ends[0] - starts[0];
+                if (index < inFirst) {
+                    return starts[0] + index;
+                }
+                int i = 1 + (index - inFirst) / SEGMENT_SIZE;
+                int slotInSegment = (index - inFirst) % SEGMENT_SIZE;
+                if (i < segments.length && slotInSegment < ends[i]) {
+                    return (long) i << 32 | slotInSegment;
+                }
+            }
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + remaining());
+        }
+
+        private void skipExhausted() {
+            while (segment < segments.length && slot >= ends[segment]) {
+                segment++;
+                if (segment < segments.length) {
+                    slot = starts[segment];
+                }
+            }
+        }
+    }
+}
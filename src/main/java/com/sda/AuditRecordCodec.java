@@ -0,0 +1,315 @@
+package com.sda;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Compact binary form of an audit entry, written and read straight in a ByteBuffer.
+//
+//   header        1 byte: bits 0-5 action code, 0x40 = action name follows, 0x80 = timestamp label follows
+//   timestamp     varint, millis since the previous record (since 0 for the first one)
+//   [label]       varint length + UTF-8, only when it differs from the previous record's
+//   [action name] varint length + UTF-8, only the first time a code is used
+//   order id      varint length + UTF-8
+//
+// A typical entry takes 1 + 1-2 + 1 + id bytes, against ~40 bytes of text.
+// Records depend on the ones before them, so the Encoder and Decoder are stateful and one pair
+// covers one stream of records; reset() starts a new self-contained stream
+public final class AuditRecordCodec {
+    static final int MAX_ACTIONS = 64;
+    private static final int ACTION_MASK = 0x3F;
+    private static final int ACTION_FOLLOWS = 0x40;
+    private static final int LABEL_FOLLOWS = 0x80;
+
+    private AuditRecordCodec() {
+    }
+
+    public static final class Encoder {
+        private String[] actions = new String[MAX_ACTIONS];
+        private int actionCount;
+        private long lastTimestamp;
+        private String lastLabel;
+
+        // timestamps must not go backwards within a stream
+        // returns false and writes nothing when the record doesn't fit in the remaining space
+        public boolean encode(ByteBuffer target, long timestamp, String label, String action, String orderId) {
+            if (timestamp < lastTimestamp) {
+                throw new IllegalArgumentException("Timestamps must not go backwards");
+            }
+            int code = codeOf(action);
+            boolean newAction = code == actionCount;
+            boolean newLabel = !label.equals(lastLabel);
+            long delta = timestamp - lastTimestamp;
+            int idLength = utf8Length(orderId);
+            int size = 1 + varintLength(delta) + varintLength(idLength) + idLength
+                    + (newLabel ? stringLength(label) : 0) + (newAction ? stringLength(action) : 0);
+            if (target.remaining() < size) {
+                return false;
+            }
+            if (newAction) {
+                if (code == MAX_ACTIONS) {
+                    throw new IllegalStateException("Too many distinct audit actions");
+                }
+                actions[actionCount++] = action;
+            }
+
+            target.put((byte) (code | (newAction ? ACTION_FOLLOWS : 0) | (newLabel ? LABEL_FOLLOWS : 0)));
+            putVarint(target, delta);
+            if (newLabel) {
+                putString(target, label, utf8Length(label));
+                lastLabel = label;
+            }
+            if (newAction) {
+                putString(target, action, utf8Length(action));
+            }
+            putString(target, orderId, idLength);
+            lastTimestamp = timestamp;
+            return true;
+        }
+
+        // exact number of bytes encode() would write for this record
+        public int sizeOf(long timestamp, String label, String action, String orderId) {
+            if (timestamp < lastTimestamp) {
+                throw new IllegalArgumentException("Timestamps must not go backwards");
+            }
+            int size = 1 + varintLength(timestamp - lastTimestamp) + stringLength(orderId);
+            if (!label.equals(lastLabel)) {
+                size += stringLength(label);
+            }
+            if (codeOf(action) == actionCount) {
+                size += stringLength(action);
+            }
+            return size;
+        }
+
+        // a decoder that continues after the last record encoded, so the stream can be read from here on
+        public Decoder checkpoint() {
+            return new Decoder(actions.clone(), lastTimestamp, lastLabel);
+        }
+
+        public void reset() {
+            actions = new String[MAX_ACTIONS];
+            actionCount = 0;
+            lastTimestamp = 0;
+            lastLabel = null;
+        }
+
+        // the vocabulary is a handful of actions, a linear scan beats hashing
+        private int codeOf(String action) {
+            for (int i = 0; i < actionCount; i++) {
+                if (actions[i].equals(action)) {
+                    return i;
+                }
+            }
+            return actionCount;
+        }
+    }
+
+    // Reads one record at a time. The fields describe the last record read by next(),
+    // the order id is only turned into a String when asked for
+    public static final class Decoder {
+        private String[] actions = new String[MAX_ACTIONS];
+        private long timestamp;
+        private String label;
+        private int code;
+        private ByteBuffer source;
+        private int idOffset;
+        private int idLength;
+        // state before the last record, see copyBeforeLast()
+        private long previousTimestamp;
+        private String previousLabel;
+
+        public Decoder() {
+        }
+
+        private Decoder(String[] actions, long timestamp, String label) {
+            this.actions = actions;
+            this.timestamp = timestamp;
+            this.label = label;
+        }
+
+        // returns false and leaves the position alone when the next record isn't complete,
+        // e.g. at the end of what was read so far, or after a write that was cut off
+        public boolean next(ByteBuffer buffer) {
+            int position = buffer.position();
+            int limit = buffer.limit();
+            if (position == limit) {
+                return false;
+            }
+            int header = buffer.get(position++) & 0xFF;
+            long delta = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (position == limit || shift > 63) {
+                    return false;
+                }
+                byte b = buffer.get(position++);
+                delta |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+
+            String newLabel = label;
+            if ((header & LABEL_FOLLOWS) != 0) {
+                long field = readField(buffer, position, limit);
+                if (field < 0) {
+                    return false;
+                }
+                newLabel = stringAt(buffer, (int) field, (int) (field >>> 32));
+                position = (int) field + (int) (field >>> 32);
+            }
+            String newAction = null;
+            if ((header & ACTION_FOLLOWS) != 0) {
+                long field = readField(buffer, position, limit);
+                if (field < 0) {
+                    return false;
+                }
+                newAction = stringAt(buffer, (int) field, (int) (field >>> 32));
+                position = (int) field + (int) (field >>> 32);
+            }
+            long id = readField(buffer, position, limit);
+            if (id < 0) {
+                return false;
+            }
+
+            // the record is complete, only now the state moves on
+            previousTimestamp = timestamp;
+            previousLabel = label;
+            code = header & ACTION_MASK;
+            if (newAction != null) {
+                actions[code] = newAction;
+            }
+            timestamp += delta;
+            label = newLabel;
+            source = buffer;
+            idOffset = (int) id;
+            idLength = (int) (id >>> 32);
+            buffer.position(idOffset + idLength);
+            return true;
+        }
+
+        public long timestamp() {
+            return timestamp;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        public String action() {
+            return actions[code];
+        }
+
+        // valid until the buffer given to next() is changed
+        public String orderId() {
+            return stringAt(source, idOffset, idLength);
+        }
+
+        // compares without building the String
+        public boolean orderIdEquals(String orderId) {
+            int length = utf8Length(orderId);
+            if (length != idLength) {
+                return false;
+            }
+            if (length != orderId.length()) {
+                return orderId.equals(orderId());
+            }
+            for (int i = 0; i < idLength; i++) {
+                if (source.get(idOffset + i) != (byte) orderId.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // the same "[timestamp] Order id: ACTION" text the service always returned
+        public String render() {
+            return "[" + label + "] Order " + orderId() + ": " + action();
+        }
+
+        // a decoder that continues at the start of the last record read, so reading can resume there later
+        public Decoder copyBeforeLast() {
+            return new Decoder(actions.clone(), previousTimestamp, previousLabel);
+        }
+
+        // a decoder that continues after the last record read
+        public Decoder copy() {
+            return new Decoder(actions.clone(), timestamp, label);
+        }
+
+        // offset of the value in the low 32 bits and its length in the high 32 bits, -1 when incomplete
+        private static long readField(ByteBuffer buffer, int position, int limit) {
+            int length = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (position == limit || shift > 28) {
+                    return -1;
+                }
+                byte b = buffer.get(position++);
+                length |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            if (length < 0 || limit - position < length) {
+                return -1;
+            }
+            return (long) length << 32 | position;
+        }
+
+        private static String stringAt(ByteBuffer buffer, int offset, int length) {
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    static void putVarint(ByteBuffer target, long value) {
+        while ((value & ~0x7FL) != 0) {
+            target.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+    }
+
+    static int varintLength(long value) {
+        return Math.max(1, (63 - Long.numberOfLeadingZeros(value)) / 7 + 1);
+    }
+
+    private static int stringLength(String value) {
+        int length = utf8Length(value);
+        return varintLength(length) + length;
+    }
+
+    // ASCII, which ids usually are, is copied char by char without an intermediate byte[]
+    private static void putString(ByteBuffer target, String value, int utf8Length) {
+        putVarint(target, utf8Length);
+        if (utf8Length == value.length()) {
+            for (int i = 0; i < utf8Length; i++) {
+                target.put((byte) value.charAt(i));
+            }
+        } else {
+            target.put(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    static int utf8Length(String value) {
+        int length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    length += 1;
+                } else if (!Character.isSurrogate(c)) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 2;
+                    i++;
+                }
+                // a lone surrogate is encoded as '?', one byte
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,35 @@
+package com.sda;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+// Storage behind OrderAuditService.
+// AuditLog is the default (one writing thread), ConcurrentAuditLog can be
+// used when many threads record audits at the same time
+public interface AuditStore {
+
+    void append(long epochMillis, String timestampLabel, String action, String orderId);
+
+    // the same with a microsecond timestamp, which OrderAuditService takes from its AuditClock.
+    // AuditLog and ConcurrentAuditLog keep the microseconds, so entries of one millisecond still merge
+    // in the order they were recorded. This default is for stores that keep milliseconds only
+    default void appendMicros(long epochMicros, String timestampLabel, String action, String orderId) {
+        append(Math.floorDiv(epochMicros, 1000), timestampLabel, action, orderId);
+    }
+
+    int size();
+
+    // renders every entry as "[timestamp] Order id: ACTION", oldest first
+    List<String> renderAll();
+
+    // same entries as renderAll(), stores that can read lazily don't copy them all first
+    default Stream<String> entries() {
+        return renderAll().stream();
+    }
+
+    // the entries of one order with fromMillis <= timestamp < toMillis, oldest first, rendered like renderAll()
+    List<String> trail(String orderId, long fromMillis, long toMillis);
+
+    // Returns number of deleted entries
+    int removeOlderThan(long cutoffMillis);
+}
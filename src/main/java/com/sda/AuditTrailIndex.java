@@ -0,0 +1,176 @@
+package com.sda;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// Secondary index of the in-memory audit stores: the audit entries of every order, grouped by order id,
+// so the trail of one order is found without scanning the whole log. It only holds the timestamp
+// and references to the label and action strings the store already keeps.
+//
+// - a trail keeps its entries in time order, a range is found by binary search, O(log n + k)
+// - orders are split over stripes, each a LinkedHashMap with its own lock; a new entry moves its order
+//   to the tail, so the orders audited longest ago are at the head. Queries don't change the order
+// - retention: orders whose newest entry is older than the cutoff are dropped from the head of their stripe;
+//   older entries of the orders that stay are skipped by queries and cut off when their trail grows,
+//   so a clear never walks the orders it keeps
+final class AuditTrailIndex {
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private volatile long retainedFrom = Long.MIN_VALUE;
+
+    AuditTrailIndex() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    void add(String orderId, long timestamp, String label, String action) {
+        Stripe stripe = stripeOf(orderId);
+        synchronized (stripe) {
+            // put() after remove() moves the order to the tail, the most recently audited end
+            Trail trail = stripe.trails.remove(orderId);
+            if (trail == null) {
+                trail = new Trail();
+            }
+            stripe.trails.put(orderId, trail);
+            trail.add(timestamp, label, action, retainedFrom);
+        }
+    }
+
+    // entries with from <= timestamp < to, oldest first, rendered like AuditStore.renderAll()
+    List<String> trail(String orderId, long from, long to) {
+        return find(orderId, from, to).entries;
+    }
+
+    // the same entries together with their timestamps, to merge the trails of several indexes
+    Found find(String orderId, long from, long to) {
+        Stripe stripe = stripeOf(orderId);
+        synchronized (stripe) {
+            Trail trail = stripe.trails.get(orderId);
+            if (trail == null) {
+                return Found.NONE;
+            }
+            int first = trail.firstFrom(Math.max(from, retainedFrom));
+            int last = trail.firstFrom(to);
+            if (first >= last) {
+                return Found.NONE;
+            }
+            List<String> entries = new ArrayList<>(last - first);
+            for (int i = first; i < last; i++) {
+                entries.add("[" + trail.labels[i] + "] Order " + orderId + ": " + trail.actions[i]);
+            }
+            return new Found(Arrays.copyOfRange(trail.timestamps, first, last), entries);
+        }
+    }
+
+    void removeOlderThan(long cutoff) {
+        if (cutoff <= retainedFrom) {
+            return;
+        }
+        retainedFrom = cutoff;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Trail> eldest = stripe.trails.values().iterator();
+                while (eldest.hasNext()) {
+                    Trail trail = eldest.next();
+                    if (trail.newest() >= cutoff) {
+                        break;
+                    }
+                    eldest.remove();
+                }
+            }
+        }
+    }
+
+    // orders that still have a trail, expired ones included until a clear drops them
+    int orderCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.trails.size();
+            }
+        }
+        return count;
+    }
+
+    private Stripe stripeOf(String orderId) {
+        int hash = orderId.hashCode();
+        // the high bits of a multiplicative hash pick it: the maps inside pick their buckets by the low bits
+        // of hashCode(), low bits shared by every id of a stripe would leave most of its buckets empty
+        return stripes[(int) (((hash * 0x9E3779B9L) & 0xFFFFFFFFL) * STRIPES >>> 32)];
+    }
+
+    static final class Found {
+        private static final Found NONE = new Found(new long[0], Collections.emptyList());
+
+        final long[] timestamps;
+        final List<String> entries;
+
+        Found(long[] timestamps, List<String> entries) {
+            this.timestamps = timestamps;
+            this.entries = entries;
+        }
+    }
+
+    private static final class Stripe {
+        // insertion ordered, add() reinserts an order on every entry
+        private final LinkedHashMap<String, Trail> trails = new LinkedHashMap<>();
+    }
+
+    // guarded by its stripe's monitor
+    private static final class Trail {
+        private long[] timestamps = new long[4];
+        private String[] labels = new String[4];
+        private String[] actions = new String[4];
+        private int size;
+
+        // a clock that jumps backwards must not break the ordering,
+        // so such an entry gets the timestamp of the previous one
+        private void add(long timestamp, String label, String action, long retainedFrom) {
+            if (size == timestamps.length) {
+                // make room by dropping what retention already removed before growing
+                int expired = firstFrom(retainedFrom);
+                if (expired > 0) {
+                    System.arraycopy(timestamps, expired, timestamps, 0, size - expired);
+                    System.arraycopy(labels, expired, labels, 0, size - expired);
+                    System.arraycopy(actions, expired, actions, 0, size - expired);
+                    Arrays.fill(labels, size - expired, size, null);
+                    Arrays.fill(actions, size - expired, size, null);
+                    size -= expired;
+                }
+                if (size == timestamps.length) {
+                    timestamps = Arrays.copyOf(timestamps, size * 2);
+                    labels = Arrays.copyOf(labels, size * 2);
+                    actions = Arrays.copyOf(actions, size * 2);
+                }
+            }
+            timestamps[size] = size == 0 ? timestamp : Math.max(timestamp, timestamps[size - 1]);
+            labels[size] = label;
+            actions[size] = action;
+            size++;
+        }
+
+        private long newest() {
+            return timestamps[size - 1];
+        }
+
+        private int firstFrom(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
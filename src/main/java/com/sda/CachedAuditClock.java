@@ -0,0 +1,115 @@
+package com.sda;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// AuditClock that doesn't read the system clock on the hot path.
+// A daemon ticker thread stores the wall clock time every tick, epochMicros() hands out that cached time
+// and one more microsecond than the previous value when the cache hasn't moved on, so timestamps are
+// increasing even when the wall clock jumps back. Neither method allocates,
+// the label is only formatted again when the second changes.
+//
+// The previous value is kept per stripe, two per CPU, and a thread always uses the stripe of its id.
+// So timestamps are unique and increasing per stripe (and per thread), and concurrent audit writers
+// don't all CAS one cache line; threads on different stripes may get the same value.
+// Under more than one call per microsecond of tick on a stripe its timestamps run ahead of the wall clock
+// until the ticker catches up
+public final class CachedAuditClock implements AuditClock, AutoCloseable {
+    private static final long MICROS_PER_SECOND = 1_000_000;
+    // longs between two stripes, so every stripe has a 128 byte block of its own
+    private static final int PADDING = 16;
+
+    private final ZoneId zone;
+    private final ScheduledExecutorService ticker;
+    private final int stripeShift;
+    private final AtomicLongArray lastIssued;
+    private volatile long tickMicros;
+    private volatile Label label;
+
+    public CachedAuditClock(Duration tickInterval, ZoneId zone) {
+        this.zone = zone;
+        // two per CPU rounded up to a power of two, at least 2
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+        this.stripeShift = 32 - Integer.numberOfTrailingZeros(stripes);
+        this.lastIssued = new AtomicLongArray(stripes * PADDING);
+        tick();
+        for (int i = 0; i < stripes; i++) {
+            lastIssued.set(i * PADDING, tickMicros);
+        }
+        this.ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "audit-clock-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long nanos = tickInterval.toNanos();
+        ticker.scheduleAtFixedRate(this::tick, nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // shared clock with a 1 ms tick in the system time zone, it is never closed
+    public static CachedAuditClock system() {
+        return SystemClock.INSTANCE;
+    }
+
+    @Override
+    public long epochMicros() {
+        long cached = tickMicros;
+        int stripe = stripe();
+        while (true) {
+            long last = lastIssued.get(stripe);
+            long next = Math.max(cached, last + 1);
+            if (lastIssued.compareAndSet(stripe, last, next)) {
+                return next;
+            }
+        }
+    }
+
+    // may already be the next second's label when another thread of the stripe just crossed it
+    @Override
+    public String currentLabel() {
+        long second = Math.floorDiv(lastIssued.get(stripe()), MICROS_PER_SECOND);
+        Label current = label;
+        if (current == null || current.second != second) {
+            String text = AuditClock.LABEL_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochSecond(second), zone));
+            current = new Label(second, text);
+            label = current;
+        }
+        return current.text;
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    // index of the calling thread's stripe, the high bits of a multiplicative hash of its id
+    private int stripe() {
+        int hash = (int) Thread.currentThread().getId() * 0x9E3779B9;
+        return (hash >>> stripeShift) * PADDING;
+    }
+
+    private void tick() {
+        Instant now = Instant.now();
+        tickMicros = now.getEpochSecond() * MICROS_PER_SECOND + now.getNano() / 1000;
+    }
+
+    // second and text are swapped together, so readers never see a mismatched pair
+    private static final class Label {
+        private final long second;
+        private final String text;
+
+        private Label(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+
+    private static final class SystemClock {
+        private static final CachedAuditClock INSTANCE = new CachedAuditClock(Duration.ofMillis(1), ZoneId.systemDefault());
+    }
+}
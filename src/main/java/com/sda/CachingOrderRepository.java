@@ -0,0 +1,343 @@
+package com.sda;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+// Read-through cache in front of another OrderRepository, for traffic that keeps hitting the same orders.
+//
+// - bounded: the entries are split over shards, each an access ordered (LRU) map with its own lock
+// - TinyLFU admission: when a shard is full, a new order only replaces the least recently used one
+//   if it was asked for more often recently (counted in a small count-min sketch), so a burst of
+//   one-off lookups can't flush the hot orders
+// - write-through: a write drops the cached order, goes to the repository without holding the shard
+//   lock, and then caches the written order unless another write to the shard happened meanwhile
+// - batches: saveAll/updateAll/existsAll are one call to the repository, the cache is filled around it
+// - negative caching: an id that doesn't exist is remembered as absent until it is saved
+//
+// All writes must go through this cache, changes made directly in the repository aren't seen
+public class CachingOrderRepository implements OrderRepository {
+    private static final int MAX_SHARDS = 16;
+    // cached "no such order", findById() and exists() answer from it without a round trip
+    private static final Optional<Order> ABSENT = Optional.empty();
+
+    private final OrderRepository delegate;
+    private final Shard[] shards;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingOrderRepository(OrderRepository delegate, int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        this.delegate = delegate;
+        // small caches get fewer shards, so every shard still holds a useful number of orders
+        int shardCount = Math.min(MAX_SHARDS, Integer.highestOneBit(Math.max(1, maximumSize / 64)));
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(Math.max(1, maximumSize / shardCount));
+        }
+    }
+
+    @Override
+    public Optional<Order> findById(String orderId) {
+        Shard shard = shardOf(orderId);
+        long generation;
+        synchronized (shard) {
+            shard.sketch.increment(orderId);
+            Optional<Order> cached = shard.entries.get(orderId);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            generation = shard.generation;
+        }
+        misses.increment();
+        // the round trip runs without the lock, a write that happens meanwhile wins over what we loaded
+        Optional<Order> loaded = delegate.findById(orderId);
+        synchronized (shard) {
+            if (shard.generation == generation) {
+                admit(shard, orderId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public boolean exists(String orderId) {
+        return findById(orderId).isPresent();
+    }
+
+    @Override
+    public void save(Order order) {
+        long ticket = startWrite(order.getOrderId());
+        try {
+            delegate.save(order);
+        } catch (RuntimeException e) {
+            finishWrite(order.getOrderId(), ticket, null);
+            throw e;
+        }
+        finishWrite(order.getOrderId(), ticket, order);
+    }
+
+    @Override
+    public void update(Order order) {
+        long ticket = startWrite(order.getOrderId());
+        try {
+            delegate.update(order);
+        } catch (RuntimeException e) {
+            finishWrite(order.getOrderId(), ticket, null);
+            throw e;
+        }
+        finishWrite(order.getOrderId(), ticket, order);
+    }
+
+    // a failed compare means our copy may be stale, it stays dropped so the caller's retry reads the repository
+    @Override
+    public boolean compareAndUpdate(Order order, int expectedVersion) {
+        long ticket = startWrite(order.getOrderId());
+        boolean updated = false;
+        try {
+            updated = delegate.compareAndUpdate(order, expectedVersion);
+        } finally {
+            finishWrite(order.getOrderId(), ticket, updated ? order : null);
+        }
+        return updated;
+    }
+
+    @Override
+    public void delete(String orderId) {
+        long ticket = startWrite(orderId);
+        try {
+            delegate.delete(orderId);
+        } finally {
+            finishWrite(orderId, ticket, null);
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<Order> orders) {
+        Order[] batch = orders.toArray(new Order[0]);
+        long[] tickets = startWrites(batch);
+        try {
+            delegate.saveAll(orders);
+        } catch (RuntimeException e) {
+            finishWrites(batch, tickets, false);
+            throw e;
+        }
+        finishWrites(batch, tickets, true);
+    }
+
+    // when the batch fails its orders stay dropped, the repository may have applied part of it
+    @Override
+    public void updateAll(Collection<Order> orders) {
+        Order[] batch = orders.toArray(new Order[0]);
+        long[] tickets = startWrites(batch);
+        try {
+            delegate.updateAll(orders);
+        } catch (RuntimeException e) {
+            finishWrites(batch, tickets, false);
+            throw e;
+        }
+        finishWrites(batch, tickets, true);
+    }
+
+    // cached ids are answered here, the rest in one existsAll() round trip
+    @Override
+    public Set<String> existsAll(Collection<String> orderIds) {
+        Set<String> existing = new HashSet<>();
+        List<String> uncached = new ArrayList<>();
+        for (String orderId : orderIds) {
+            Shard shard = shardOf(orderId);
+            Optional<Order> cached;
+            synchronized (shard) {
+                cached = shard.entries.get(orderId);
+            }
+            if (cached == null) {
+                uncached.add(orderId);
+            } else if (cached.isPresent()) {
+                existing.add(orderId);
+            }
+        }
+        hits.add(orderIds.size() - uncached.size());
+        if (!uncached.isEmpty()) {
+            misses.add(uncached.size());
+            existing.addAll(delegate.existsAll(uncached));
+        }
+        return existing;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.entries.size();
+            }
+        }
+        return size;
+    }
+
+    // Drops the cached order and marks the id as being written, the write itself runs without the lock.
+    // Returns the ticket of this write, see finishWrite()
+    private long startWrite(String orderId) {
+        Shard shard = shardOf(orderId);
+        synchronized (shard) {
+            shard.entries.remove(orderId);
+            long ticket = ++shard.generation;
+            shard.writing.put(orderId, ticket);
+            return ticket;
+        }
+    }
+
+    // Caches the written order, the most likely to be read next, when this was the last write to start on
+    // the id. Otherwise we can't tell which write the repository kept and the id stays uncached, a null
+    // order (failed write, delete) also leaves it uncached
+    private void finishWrite(String orderId, long ticket, Order written) {
+        Shard shard = shardOf(orderId);
+        synchronized (shard) {
+            // a load that started before this doesn't get cached
+            shard.generation++;
+            Long latest = shard.writing.get(orderId);
+            if (latest == null || latest != ticket || written == null) {
+                shard.entries.remove(orderId);
+            } else if (shard.entries.put(orderId, Optional.of(written)) == null) {
+                evictIfOverCapacity(shard);
+            }
+            if (latest != null && latest == ticket) {
+                shard.writing.remove(orderId);
+            }
+        }
+    }
+
+    private long[] startWrites(Order[] batch) {
+        long[] tickets = new long[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            tickets[i] = startWrite(batch[i].getOrderId());
+        }
+        return tickets;
+    }
+
+    private void finishWrites(Order[] batch, long[] tickets, boolean written) {
+        for (int i = 0; i < batch.length; i++) {
+            finishWrite(batch[i].getOrderId(), tickets[i], written ? batch[i] : null);
+        }
+    }
+
+    private void admit(Shard shard, String orderId, Optional<Order> loaded) {
+        if (shard.entries.size() >= shard.capacity) {
+            Iterator<Map.Entry<String, Optional<Order>>> eldest = shard.entries.entrySet().iterator();
+            Map.Entry<String, Optional<Order>> victim = eldest.next();
+            if (shard.sketch.frequency(orderId) <= shard.sketch.frequency(victim.getKey())) {
+                return;
+            }
+            eldest.remove();
+            evictions.increment();
+        }
+        shard.entries.put(orderId, loaded.isPresent() ? loaded : ABSENT);
+    }
+
+    private void evictIfOverCapacity(Shard shard) {
+        if (shard.entries.size() > shard.capacity) {
+            Iterator<Map.Entry<String, Optional<Order>>> eldest = shard.entries.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private Shard shardOf(String orderId) {
+        int hash = orderId.hashCode();
+        // the high bits of a multiplicative hash pick it: the maps inside pick their buckets by the low bits
+        // of hashCode(), low bits shared by every id of a shard would leave most of its buckets empty
+        return shards[(int) (((hash * 0x9E3779B9L) & 0xFFFFFFFFL) * shards.length >>> 32)];
+    }
+
+    // guarded by its own monitor
+    private static final class Shard {
+        private final int capacity;
+        private final LinkedHashMap<String, Optional<Order>> entries;
+        private final FrequencySketch sketch;
+        // bumped by every write, a load that started before it must not be cached
+        private long generation;
+        // id -> ticket of the last write that started on it and hasn't finished yet
+        private final Map<String, Long> writing = new HashMap<>();
+
+        private Shard(int capacity) {
+            this.capacity = capacity;
+            this.entries = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true);
+            this.sketch = new FrequencySketch(capacity);
+        }
+    }
+
+    // Count-min sketch with 4 rows of small saturating counters: how often an id was asked for recently.
+    // Every counter is halved after 10 x capacity increments, so old popularity fades away
+    private static final class FrequencySketch {
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+
+        private final byte[] counters;
+        private final int mask;
+        private final int resetAfter;
+        private int increments;
+
+        private FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1);
+            this.counters = new byte[width * ROWS];
+            this.mask = width - 1;
+            this.resetAfter = 10 * Math.max(16, capacity);
+        }
+
+        private void increment(String orderId) {
+            int hash = orderId.hashCode();
+            for (int row = 0; row < ROWS; row++) {
+                int index = indexOf(hash, row);
+                if (counters[index] < MAX_COUNT) {
+                    counters[index]++;
+                }
+            }
+            if (++increments == resetAfter) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>= 1;
+                }
+                increments /= 2;
+            }
+        }
+
+        private int frequency(String orderId) {
+            int hash = orderId.hashCode();
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < ROWS; row++) {
+                frequency = Math.min(frequency, counters[indexOf(hash, row)]);
+            }
+            return frequency;
+        }
+
+        // a differently seeded mix of the hash per row, every row is its own slice of the array
+        private int indexOf(int hash, int row) {
+            int h = (hash ^ (row * 0x85EBCA6B)) * 0x9E3779B9;
+            h ^= h >>> 16;
+            return row * (mask + 1) + (h & mask);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.sda;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Thread safe AuditStore for services that record audits from a worker pool.
+// Entries go into a fixed number of AuditLog stripes, two per CPU by default. A writer claims a stripe
+// with a CAS for the length of one append, starting at the stripe its thread was given, and moves on
+// to the next one when that is taken, so writers rarely wait for each other. The stripes don't grow
+// with the number of threads that ever wrote, short lived pool threads and virtual threads included.
+// renderAll() claims every stripe for as long as it takes to note where each one ends, so it sees one cut:
+// every append that finished before it and none that started after, merged by timestamp
+public class ConcurrentAuditLog implements AuditStore {
+    // full rounds over the stripes a writer spins before it parks between rounds
+    private static final int SPIN_ROUNDS = 16;
+    private static final long PARK_NANOS = 10_000;
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final AtomicInteger nextStripe = new AtomicInteger();
+
+    // threads are handed out the stripes round robin, so a few writers start on different ones
+    private final ThreadLocal<Integer> firstStripe = ThreadLocal.withInitial(() -> nextStripe.getAndIncrement());
+
+    public ConcurrentAuditLog() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public ConcurrentAuditLog(int stripeCount) {
+        this(stripeCount, true);
+    }
+
+    // the stripe count is rounded up to a power of two, see AuditLog for leaving out the trail index
+    public ConcurrentAuditLog(int stripeCount, boolean indexTrails) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("Stripe count must be positive");
+        }
+        this.stripes = new Stripe[Integer.highestOneBit(stripeCount * 2 - 1)];
+        this.mask = stripes.length - 1;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(new AuditLog(indexTrails));
+        }
+    }
+
+    @Override
+    public void append(long epochMillis, String timestampLabel, String action, String orderId) {
+        appendMicros(AuditLog.toMicros(epochMillis), timestampLabel, action, orderId);
+    }
+
+    // AuditLog allows one writer at a time, the claim is that writer's turn.
+    // Claim and release order one writer's entries before the next one's
+    @Override
+    public void appendMicros(long epochMicros, String timestampLabel, String action, String orderId) {
+        int first = firstStripe.get();
+        for (int attempt = 0; ; attempt++) {
+            Stripe stripe = stripes[(first + attempt) & mask];
+            if (!stripe.writing.get() && stripe.writing.compareAndSet(false, true)) {
+                try {
+                    stripe.log.appendMicros(epochMicros, timestampLabel, action, orderId);
+                } finally {
+                    stripe.writing.set(false);
+                }
+                return;
+            }
+            if ((attempt & mask) == mask) {
+                // every stripe was taken, more writers than stripes right now or a reader taking its cut
+                backOff(attempt / stripes.length);
+            }
+        }
+    }
+
+    // spin first, a claim is held for one append only, then park so a long wait doesn't burn a CPU
+    private static void backOff(int round) {
+        if (round < SPIN_ROUNDS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.log.size();
+        }
+        return size;
+    }
+
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    // k-way merge of the stripe snapshots, oldest entry first
+    @Override
+    public List<String> renderAll() {
+        PriorityQueue<StripeCursor> cursors = new PriorityQueue<>();
+        int total = 0;
+        int order = 0;
+        for (AuditLog.Snapshot snapshot : cut()) {
+            total += snapshot.remaining();
+            if (snapshot.hasNext()) {
+                cursors.add(new StripeCursor(snapshot, order++));
+            }
+        }
+
+        List<String> entries = new ArrayList<>(total);
+        while (!cursors.isEmpty()) {
+            StripeCursor cursor = cursors.poll();
+            entries.add(cursor.snapshot.renderNext());
+            if (cursor.snapshot.hasNext()) {
+                cursors.add(cursor);
+            }
+        }
+        return entries;
+    }
+
+    // Every stripe indexes its own entries, so writers never share the index locks.
+    // The trails of the stripes are merged by timestamp, the earlier stripe first on a tie.
+    // Unlike renderAll() the stripes are read one after another, an order audited while this runs may show
+    // a later entry without an earlier one that went to a stripe that was already read
+    @Override
+    public List<String> trail(String orderId, long fromMillis, long toMillis) {
+        AuditTrailIndex.Found[] parts = new AuditTrailIndex.Found[stripes.length];
+        int total = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            parts[i] = stripes[i].log.findTrail(orderId, fromMillis, toMillis);
+            total += parts[i].entries.size();
+        }
+        List<String> entries = new ArrayList<>(total);
+        int[] positions = new int[parts.length];
+        while (entries.size() < total) {
+            int oldest = -1;
+            for (int i = 0; i < parts.length; i++) {
+                if (positions[i] < parts[i].timestamps.length
+                        && (oldest < 0 || parts[i].timestamps[positions[i]] < parts[oldest].timestamps[positions[oldest]])) {
+                    oldest = i;
+                }
+            }
+            entries.add(parts[oldest].entries.get(positions[oldest]++));
+        }
+        return entries;
+    }
+
+    // Returns number of deleted entries
+    @Override
+    public int removeOlderThan(long cutoffMillis) {
+        int removed = 0;
+        for (Stripe stripe : stripes) {
+            removed += stripe.log.removeOlderThan(cutoffMillis);
+        }
+        return removed;
+    }
+
+    // Claims the stripes in index order, two readers can't deadlock and a writer never waits while it holds one.
+    // Writers wait for the snapshots, which only read where every stripe ends
+    private AuditLog.Snapshot[] cut() {
+        AuditLog.Snapshot[] snapshots = new AuditLog.Snapshot[stripes.length];
+        int claimed = 0;
+        try {
+            for (; claimed < stripes.length; claimed++) {
+                AtomicBoolean writing = stripes[claimed].writing;
+                for (int round = 0; !writing.compareAndSet(false, true); round++) {
+                    backOff(round);
+                }
+            }
+            for (int i = 0; i < stripes.length; i++) {
+                snapshots[i] = stripes[i].log.snapshot();
+            }
+        } finally {
+            for (int i = 0; i < claimed; i++) {
+                stripes[i].writing.set(false);
+            }
+        }
+        return snapshots;
+    }
+
+    private static final class Stripe {
+        private final AuditLog log;
+        private final AtomicBoolean writing = new AtomicBoolean();
+
+        private Stripe(AuditLog log) {
+            this.log = log;
+        }
+    }
+
+    private static final class StripeCursor implements Comparable<StripeCursor> {
+        private final AuditLog.Snapshot snapshot;
+        private final int order; // keeps the merge stable for equal timestamps
+
+        private StripeCursor(AuditLog.Snapshot snapshot, int order) {
+            this.snapshot = snapshot;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(StripeCursor other) {
+            int byTime = Long.compare(snapshot.peekTimestamp(), other.snapshot.peekTimestamp());
+            return byTime != 0 ? byTime : Integer.compare(order, other.order);
+        }
+    }
+}
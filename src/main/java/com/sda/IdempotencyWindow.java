@@ -0,0 +1,232 @@
+package com.sda;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// The create requests OrderService saw recently, so a retried request gets the order it already created
+// instead of "Order already exists". A request is remembered for the window, or until maxEntries newer ones
+// pushed it out, after that a retry is rejected like any duplicate.
+//
+// - a Bloom filter in front answers "never seen" without a lock, which is the common case of a new id;
+//   it has two generations that are swapped every window, so it forgets without deletes
+// - behind it the exact requests: shards of access ordered (LRU) maps, each with its own lock
+// - a request counts as a retry only if price, count and tax rate match the remembered one,
+//   a different request with the same id is a real conflict
+public class IdempotencyWindow {
+    private static final int SHARDS = 16;
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASHES = 5;
+
+    private final long windowMillis;
+    private final int maxEntries;
+    private final AuditClock clock;
+    private final Shard[] shards = new Shard[SHARDS];
+    private final LongAdder replays = new LongAdder();
+    private volatile Filters filters;
+
+    public IdempotencyWindow(Duration window, int maxEntries) {
+        this(window, maxEntries, null);
+    }
+
+    // a null clock falls back to the shared CachedAuditClock
+    public IdempotencyWindow(Duration window, int maxEntries, AuditClock clock) {
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("Window must be positive");
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Max entries must be positive");
+        }
+        this.windowMillis = window.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock != null ? clock : CachedAuditClock.system();
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard(Math.max(1, maxEntries / SHARDS));
+        }
+        this.filters = new Filters(new BloomFilter(maxEntries), new BloomFilter(maxEntries), nowMillis());
+    }
+
+    // the earlier request with this id within the window, null when there is none
+    Entry find(String orderId) {
+        long hash = hash(orderId);
+        Filters current = filters;
+        if (!current.newer.mightContain(hash) && !current.older.mightContain(hash)) {
+            return null;
+        }
+        Shard shard = shardOf(hash);
+        long now = nowMillis();
+        synchronized (shard) {
+            Entry entry = shard.entries.get(orderId);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.createdAt >= windowMillis) {
+                shard.entries.remove(orderId);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    void remember(String orderId, double itemPrice, int itemCount, double taxRate, Order order) {
+        long now = nowMillis();
+        rotateIfDue(now);
+        long hash = hash(orderId);
+        filters.newer.add(hash);
+        Shard shard = shardOf(hash);
+        synchronized (shard) {
+            shard.entries.put(orderId, new Entry(itemPrice, itemCount, taxRate, order, now));
+            if (shard.entries.size() > shard.capacity) {
+                Iterator<Entry> eldest = shard.entries.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    void countReplay() {
+        replays.increment();
+    }
+
+    // retried requests that got their earlier order back
+    public long replayCount() {
+        return replays.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.entries.size();
+            }
+        }
+        return size;
+    }
+
+    // Every window, or when the newer filter took maxEntries ids, it becomes the older one and the older one
+    // is dropped. So an id stays in a filter for its whole window, unless maxEntries newer ids pushed it out
+    private void rotateIfDue(long now) {
+        Filters current = filters;
+        if (now - current.since < windowMillis && current.newer.added.sum() < maxEntries) {
+            return;
+        }
+        synchronized (this) {
+            if (filters == current) {
+                filters = new Filters(new BloomFilter(maxEntries), current.newer, now);
+            }
+        }
+    }
+
+    private long nowMillis() {
+        return clock.epochMicros() / 1000;
+    }
+
+    // the top bits pick the shard: the maps inside pick their buckets by the low bits of hashCode(),
+    // low bits shared by every id of a shard would leave most of its buckets empty
+    private Shard shardOf(long hash) {
+        return shards[(int) (hash >>> (64 - Integer.numberOfTrailingZeros(SHARDS)))];
+    }
+
+    // String.hashCode() spread over 64 bits by the murmur3 finalizer
+    private static long hash(String orderId) {
+        long hash = orderId.hashCode() * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    static final class Entry {
+        private final double itemPrice;
+        private final int itemCount;
+        private final double taxRate;
+        private final Order order;
+        private final long createdAt;
+
+        private Entry(double itemPrice, int itemCount, double taxRate, Order order, long createdAt) {
+            this.itemPrice = itemPrice;
+            this.itemCount = itemCount;
+            this.taxRate = taxRate;
+            this.order = order;
+            this.createdAt = createdAt;
+        }
+
+        boolean matches(double itemPrice, int itemCount, double taxRate) {
+            return Double.compare(this.itemPrice, itemPrice) == 0 && this.itemCount == itemCount
+                    && Double.compare(this.taxRate, taxRate) == 0;
+        }
+
+        // the order as it was created
+        Order order() {
+            return order;
+        }
+    }
+
+    // guarded by its own monitor
+    private static final class Shard {
+        private final int capacity;
+        private final LinkedHashMap<String, Entry> entries;
+
+        private Shard(int capacity) {
+            this.capacity = capacity;
+            this.entries = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true);
+        }
+    }
+
+    private static final class Filters {
+        private final BloomFilter newer;
+        private final BloomFilter older;
+        private final long since; // when newer started
+
+        private Filters(BloomFilter newer, BloomFilter older, long since) {
+            this.newer = newer;
+            this.older = older;
+            this.since = since;
+        }
+    }
+
+    // 10 bits and 5 probes per id, ~1% false positives at maxEntries ids. Lock-free, bits are only ever set
+    private static final class BloomFilter {
+        private final AtomicLongArray words;
+        private final long bits;
+        private final LongAdder added = new LongAdder();
+
+        private BloomFilter(int expectedEntries) {
+            int wordCount = (int) Math.max(1, ((long) expectedEntries * BITS_PER_ENTRY + 63) / 64);
+            this.words = new AtomicLongArray(wordCount);
+            this.bits = wordCount * 64L;
+        }
+
+        private void add(long hash) {
+            for (int i = 0; i < HASHES; i++) {
+                long bit = bitOf(hash, i);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                while (((current = words.get(word)) & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                    // another bit of the word was set meanwhile, try again
+                }
+            }
+            added.increment();
+        }
+
+        private boolean mightContain(long hash) {
+            for (int i = 0; i < HASHES; i++) {
+                long bit = bitOf(hash, i);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // double hashing: the two halves of the hash give the probes h1 + i * h2
+        private long bitOf(long hash, int i) {
+            long combined = (hash >>> 32) + i * (hash & 0xFFFFFFFFL);
+            return Math.floorMod(combined, bits);
+        }
+    }
+}
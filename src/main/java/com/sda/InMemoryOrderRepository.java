@@ -0,0 +1,127 @@
+package com.sda;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// A real (in-memory) OrderRepository, so OrderService can be load tested without mocks.
+// Orders are indexed by id in a ConcurrentHashMap and additionally by status,
+// so "all confirmed orders" does not need a full scan.
+// Writes to the same order are serialized by the map, writes to different orders run in parallel
+public class InMemoryOrderRepository implements OrderRepository {
+    private final ConcurrentHashMap<String, Slot> orders;
+    private final Map<OrderStatus, Set<String>> idsByStatus = new EnumMap<>(OrderStatus.class);
+
+    public InMemoryOrderRepository() {
+        this(16);
+    }
+
+    // pre-sizing avoids rehashing when we already know roughly how many orders will be stored
+    public InMemoryOrderRepository(int expectedOrders) {
+        this.orders = new ConcurrentHashMap<>(expectedOrders);
+        for (OrderStatus status : OrderStatus.values()) {
+            idsByStatus.put(status, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    // saving an id that is already stored replaces the stored order
+    @Override
+    public void save(Order order) {
+        orders.compute(order.getOrderId(), (id, slot) -> {
+            if (slot == null) {
+                slot = new Slot();
+            }
+            store(slot, order);
+            return slot;
+        });
+    }
+
+    @Override
+    public Optional<Order> findById(String orderId) {
+        Slot slot = orders.get(orderId);
+        return slot == null ? Optional.empty() : Optional.of(slot.order);
+    }
+
+    @Override
+    public void update(Order order) {
+        Slot updated = orders.computeIfPresent(order.getOrderId(), (id, slot) -> {
+            store(slot, order);
+            return slot;
+        });
+        if (updated == null) {
+            throw new IllegalArgumentException("Order not found");
+        }
+    }
+
+    @Override
+    public void delete(String orderId) {
+        orders.computeIfPresent(orderId, (id, slot) -> {
+            idsByStatus.get(slot.indexedStatus).remove(id);
+            return null;
+        });
+    }
+
+    // the version check and the write happen under the map's lock for this id
+    @Override
+    public boolean compareAndUpdate(Order order, int expectedVersion) {
+        boolean[] swapped = new boolean[1];
+        orders.computeIfPresent(order.getOrderId(), (id, slot) -> {
+            if (slot.order.getVersion() == expectedVersion) {
+                store(slot, order);
+                swapped[0] = true;
+            }
+            return slot;
+        });
+        return swapped[0];
+    }
+
+    // plain map lookup, no Optional on the fast path
+    @Override
+    public boolean exists(String orderId) {
+        return orders.containsKey(orderId);
+    }
+
+    public int size() {
+        return orders.size();
+    }
+
+    public int countByStatus(OrderStatus status) {
+        return idsByStatus.get(status).size();
+    }
+
+    public List<Order> findByStatus(OrderStatus status) {
+        List<Order> result = new ArrayList<>();
+        for (String orderId : idsByStatus.get(status)) {
+            Slot slot = orders.get(orderId);
+            // the order may have moved to another status since we read the index
+            if (slot != null && slot.indexedStatus == status) {
+                result.add(slot.order);
+            }
+        }
+        return result;
+    }
+
+    // called while the map holds the lock of this id, so the status index can't race
+    private void store(Slot slot, Order order) {
+        OrderStatus newStatus = order.getStatus();
+        if (slot.indexedStatus != newStatus) {
+            if (slot.indexedStatus != null) {
+                idsByStatus.get(slot.indexedStatus).remove(order.getOrderId());
+            }
+            idsByStatus.get(newStatus).add(order.getOrderId());
+            slot.indexedStatus = newStatus;
+        }
+        slot.order = order;
+    }
+
+    // we remember the status we indexed the order under, because callers usually
+    // change the status on the very same Order object before they call update()
+    private static final class Slot {
+        private volatile Order order;
+        private volatile OrderStatus indexedStatus;
+    }
+}
@@ -0,0 +1,106 @@
+package com.sda;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
+// Times the calls into the wrapped repository, as often as the OrderMetrics samples, see OrderMetrics.instrument()
+class InstrumentedOrderRepository implements OrderRepository {
+    private final OrderRepository delegate;
+    private final OrderMetrics metrics;
+
+    InstrumentedOrderRepository(OrderRepository delegate, OrderMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void save(Order order) {
+        long start = metrics.startTimer();
+        try {
+            delegate.save(order);
+        } finally {
+            metrics.stopTimer(OrderMetrics.RepositoryCall.SAVE, start);
+        }
+    }
+
+    @Override
+    public Optional<Order> findById(String orderId) {
+        long start = metrics.startTimer();
+        try {
+            return delegate.findById(orderId);
+        } finally {
+            metrics.stopTimer(OrderMetrics.RepositoryCall.FIND_BY_ID, start);
+        }
+    }
+
+    @Override
+    public void update(Order order) {
+        long start = metrics.startTimer();
+        try {
+            delegate.update(order);
+        } finally {
+            metrics.stopTimer(OrderMetrics.RepositoryCall.UPDATE, start);
+        }
+    }
+
+    @Override
+    public boolean exists(String orderId) {
+        long start = metrics.startTimer();
+        try {
+            return delegate.exists(orderId);
+        } finally {
+            metrics.stopTimer(OrderMetrics.RepositoryCall.EXISTS, start);
+        }
+    }
+
+    @Override
+    public boolean compareAndUpdate(Order order, int expectedVersion) {
+        long start = metrics.startTimer();
+        try {
+            return delegate.compareAndUpdate(order, expectedVersion);
+        } finally {
+            metrics.stopTimer(OrderMetrics.RepositoryCall.COMPARE_AND_UPDATE, start);
+        }
+    }
+
+    @Override
+    public void delete(String orderId) {
+        long start = metrics.startTimer();
+        try {
+            delegate.delete(orderId);
+        } finally {
+            metrics.stopTimer(OrderMetrics.RepositoryCall.DELETE, start);
+        }
+    }
+
+    @Override
+    public Set<String> existsAll(Collection<String> orderIds) {
+        long start = metrics.startTimer();
+        try {
+            return delegate.existsAll(orderIds);
+        } finally {
+            metrics.stopTimer(OrderMetrics.RepositoryCall.EXISTS_ALL, start);
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<Order> orders) {
+        long start = metrics.startTimer();
+        try {
+            delegate.saveAll(orders);
+        } finally {
+            metrics.stopTimer(OrderMetrics.RepositoryCall.SAVE_ALL, start);
+        }
+    }
+
+    @Override
+    public void updateAll(Collection<Order> orders) {
+        long start = metrics.startTimer();
+        try {
+            delegate.updateAll(orders);
+        } finally {
+            metrics.stopTimer(OrderMetrics.RepositoryCall.UPDATE_ALL, start);
+        }
+    }
+}
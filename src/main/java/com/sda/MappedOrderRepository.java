@@ -0,0 +1,294 @@
+package com.sda;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+// OrderRepository that survives restarts without a database.
+// Orders are appended to a memory-mapped file as fixed width records:
+//
+//   offset 0   status    (1 byte, ordinal + 1, 0 marks the end of the log)
+//   offset 1   id length (1 byte)
+//   offset 2   scale     (1 byte, scale + 1, 0 = no exact amount and in files written before it existed)
+//   offset 4   version   (4 byte int, 0 in files written before versions existed)
+//   offset 8   amount    (8 byte double, or the long amount in minor units when the scale is set)
+//   offset 16  id        (up to 48 bytes UTF-8)
+//
+// An exact amount is stored as amount minor / scale only, the double is derived from it like Order does
+//
+// update() only rewrites the status byte and the version in place. On startup the file is scanned once
+// to rebuild the in-memory index, an open addressing table of record numbers.
+// Writes are serialized, reads don't take any lock
+public class MappedOrderRepository implements OrderRepository, AutoCloseable {
+    static final int RECORD_SIZE = 64;
+    static final int MAX_ID_BYTES = RECORD_SIZE - 16;
+    private static final int CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int RECORDS_PER_CHUNK = CHUNK_SIZE / RECORD_SIZE;
+
+    private static final int STATUS_OFFSET = 0;
+    private static final int ID_LENGTH_OFFSET = 1;
+    private static final int SCALE_OFFSET = 2;
+    private static final int VERSION_OFFSET = 4;
+    private static final int AMOUNT_OFFSET = 8;
+    private static final int ID_OFFSET = 16;
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(int[].class);
+    // the version is written after the status and read before it, see findById()
+    private static final VarHandle VERSION = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private volatile MappedByteBuffer[] chunkArray = new MappedByteBuffer[0];
+
+    // index: slot -> record number + 1 (0 = free), a record is found by probing from its id hash
+    private volatile int[] slots = new int[1024];
+    private int indexedIds;
+    private volatile int records;
+
+    public MappedOrderRepository(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long existingChunks = (channel.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        for (int i = 0; i < existingChunks; i++) {
+            mapChunk();
+        }
+        rebuildIndex();
+    }
+
+    @Override
+    public synchronized void save(Order order) {
+        byte[] id = order.getOrderId().getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Order id is too long");
+        }
+        int record = records;
+        if (record / RECORDS_PER_CHUNK == chunks.size()) {
+            mapChunkUnchecked();
+        }
+        MappedByteBuffer chunk = chunkOf(record);
+        int offset = offsetOf(record);
+        chunk.put(offset + ID_LENGTH_OFFSET, (byte) id.length);
+        chunk.putInt(offset + VERSION_OFFSET, order.getVersion());
+        if (order.hasExactAmount()) {
+            chunk.put(offset + SCALE_OFFSET, (byte) (order.getScale() + 1));
+            chunk.putLong(offset + AMOUNT_OFFSET, order.getAmountMinor());
+        } else {
+            chunk.put(offset + SCALE_OFFSET, (byte) 0);
+            chunk.putDouble(offset + AMOUNT_OFFSET, order.getAmount());
+        }
+        chunk.put(offset + ID_OFFSET, id);
+        // the status goes last, it marks the record as complete
+        chunk.put(offset + STATUS_OFFSET, (byte) (order.getStatus().ordinal() + 1));
+
+        // saving an id twice appends a new record, the index points at the newest one
+        index(order.getOrderId(), record);
+        records = record + 1;
+    }
+
+    // one lock for the whole batch
+    @Override
+    public synchronized void saveAll(Collection<Order> orders) {
+        for (Order order : orders) {
+            save(order);
+        }
+    }
+
+    @Override
+    public Optional<Order> findById(String orderId) {
+        int record = find(orderId);
+        if (record < 0) {
+            return Optional.empty();
+        }
+        MappedByteBuffer chunk = chunkOf(record);
+        int offset = offsetOf(record);
+        // a status newer than the version read first only makes a later compareAndUpdate() fail
+        int version = (int) VERSION.getAcquire(chunk, offset + VERSION_OFFSET);
+        OrderStatus status = STATUSES[chunk.get(offset + STATUS_OFFSET) - 1];
+        int scale = chunk.get(offset + SCALE_OFFSET) - 1;
+        if (scale < 0) {
+            return Optional.of(new Order(orderId, chunk.getDouble(offset + AMOUNT_OFFSET), 0, -1, status, version));
+        }
+        long amountMinor = chunk.getLong(offset + AMOUNT_OFFSET);
+        return Optional.of(new Order(orderId, amountMinor / Math.pow(10, scale), amountMinor, scale, status, version));
+    }
+
+    // the amount of an order never changes, so an update only rewrites status and version
+    @Override
+    public synchronized void update(Order order) {
+        int record = find(order.getOrderId());
+        if (record < 0) {
+            throw new IllegalArgumentException("Order not found");
+        }
+        writeStatus(record, order);
+    }
+
+    @Override
+    public synchronized boolean compareAndUpdate(Order order, int expectedVersion) {
+        int record = find(order.getOrderId());
+        if (record < 0 || chunkOf(record).getInt(offsetOf(record) + VERSION_OFFSET) != expectedVersion) {
+            return false;
+        }
+        writeStatus(record, order);
+        return true;
+    }
+
+    @Override
+    public boolean exists(String orderId) {
+        return find(orderId) >= 0;
+    }
+
+    public int size() {
+        return records;
+    }
+
+    // writes the dirty pages to disk
+    public synchronized void flush() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private void writeStatus(int record, Order order) {
+        MappedByteBuffer chunk = chunkOf(record);
+        int offset = offsetOf(record);
+        chunk.put(offset + STATUS_OFFSET, (byte) (order.getStatus().ordinal() + 1));
+        VERSION.setRelease(chunk, offset + VERSION_OFFSET, order.getVersion());
+    }
+
+    private void rebuildIndex() {
+        int capacity = chunks.size() * RECORDS_PER_CHUNK;
+        int record = 0;
+        while (record < capacity && chunkOf(record).get(offsetOf(record) + STATUS_OFFSET) != 0) {
+            index(readId(record), record);
+            record++;
+        }
+        records = record;
+    }
+
+    private int find(String orderId) {
+        int[] table = slots;
+        int mask = table.length - 1;
+        for (int slot = spread(orderId.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int entry = (int) SLOTS.getAcquire(table, slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (idMatches(entry - 1, orderId)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    // only called by writers (or during startup), readers see a slot once the record is complete
+    private void index(String orderId, int record) {
+        // keep the table at most half full, so probe sequences stay short
+        if ((indexedIds + 1) * 2 > slots.length) {
+            resize();
+        }
+        int[] table = slots;
+        int mask = table.length - 1;
+        for (int slot = spread(orderId.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                indexedIds++;
+            }
+            if (entry == 0 || idMatches(entry - 1, orderId)) {
+                SLOTS.setRelease(table, slot, record + 1);
+                return;
+            }
+        }
+    }
+
+    // readers keep using the old table until the new one is published
+    private void resize() {
+        int[] table = new int[slots.length * 2];
+        int mask = table.length - 1;
+        for (int entry : slots) {
+            if (entry != 0) {
+                int slot = spread(readId(entry - 1).hashCode()) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = entry;
+            }
+        }
+        slots = table;
+    }
+
+    // compares without decoding the stored id, ASCII ids don't allocate at all
+    private boolean idMatches(int record, String orderId) {
+        MappedByteBuffer chunk = chunkOf(record);
+        int offset = offsetOf(record);
+        int length = chunk.get(offset + ID_LENGTH_OFFSET);
+        if (length != orderId.length()) {
+            return isNonAscii(orderId) && readId(record).equals(orderId);
+        }
+        for (int i = 0; i < length; i++) {
+            if (chunk.get(offset + ID_OFFSET + i) != orderId.charAt(i)) {
+                return isNonAscii(orderId) && readId(record).equals(orderId);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNonAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String readId(int record) {
+        MappedByteBuffer chunk = chunkOf(record);
+        int offset = offsetOf(record);
+        byte[] id = new byte[chunk.get(offset + ID_LENGTH_OFFSET)];
+        chunk.get(offset + ID_OFFSET, id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private MappedByteBuffer chunkOf(int record) {
+        return chunkArray[record / RECORDS_PER_CHUNK];
+    }
+
+    private static int offsetOf(int record) {
+        return (record % RECORDS_PER_CHUNK) * RECORD_SIZE;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void mapChunkUnchecked() {
+        try {
+            mapChunk();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // mapping past the end of the file grows it, the new pages read as zeros
+    private void mapChunk() throws IOException {
+        long position = (long) chunks.size() * CHUNK_SIZE;
+        chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, position, CHUNK_SIZE));
+        chunkArray = chunks.toArray(new MappedByteBuffer[0]);
+    }
+}
@@ -0,0 +1,112 @@
+package com.sda;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+// Exact order pricing on scaled longs instead of double or BigDecimal.
+// Amounts are minor units of a currency with `scale` decimals (1999 with scale 2 is 19.99),
+// tax rates are millionths (0.23 is 230_000). Same rules as OrderCalculatorV2: the discount is
+// taken off when price * count is above the threshold, then tax is added and the result is
+// rounded with the configured RoundingMode and clamped at zero. Pricing never allocates
+public final class MoneyCalculator {
+    public static final int RATE_SCALE = 6;
+    private static final long RATE_ONE = 1_000_000;
+    private static final int MAX_SCALE = 9;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+
+    private final int scale;
+    private final RoundingMode roundingMode;
+
+    public MoneyCalculator(int scale, RoundingMode roundingMode) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("Scale must be between 0 and " + MAX_SCALE);
+        }
+        this.scale = scale;
+        this.roundingMode = Objects.requireNonNull(roundingMode, "roundingMode");
+    }
+
+    // 2 decimals, rounding half up like Math.round() does for positive totals
+    public static MoneyCalculator ofCents() {
+        return new MoneyCalculator(2, RoundingMode.HALF_UP);
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public RoundingMode getRoundingMode() {
+        return roundingMode;
+    }
+
+    // throws ArithmeticException when the total doesn't fit in a long,
+    // or when the rounding mode is UNNECESSARY and the tax leaves a fraction of a minor unit
+    public long calculateTotal(long itemPrice, int count, long taxRate, long discount, long discountThreshold) {
+        if (itemPrice < 0 || count < 0 || taxRate < 0 || discount < 0 || discountThreshold < 0) {
+            throw new IllegalArgumentException("Negative values are not allowed");
+        }
+
+        long totalPrice = Math.multiplyExact(itemPrice, count);
+
+        if (totalPrice > discountThreshold) {
+            totalPrice -= discount;
+        }
+        if (totalPrice <= 0) {
+            return 0;
+        }
+
+        // totalPrice * (1 + taxRate), split so that only the whole part can overflow:
+        // (q * ONE + r) * factor / ONE = q * factor + r * factor / ONE
+        long factor = Math.addExact(RATE_ONE, taxRate);
+        long fraction = Math.multiplyExact(totalPrice % RATE_ONE, factor);
+        long quotient = Math.addExact(Math.multiplyExact(totalPrice / RATE_ONE, factor), fraction / RATE_ONE);
+        return round(quotient, fraction % RATE_ONE, RATE_ONE);
+    }
+
+    public long toMinorUnits(double amount) {
+        return toScaled(amount, scale);
+    }
+
+    public long toRate(double rate) {
+        return toScaled(rate, RATE_SCALE);
+    }
+
+    public double toDouble(long minorUnits) {
+        return minorUnits / POWERS_OF_TEN[scale];
+    }
+
+    // prices and rates usually have no more decimals than the scale, so the scaled value
+    // converts back to exactly the same double and BigDecimal is only needed for the rest
+    private long toScaled(double value, int digits) {
+        double factor = POWERS_OF_TEN[digits];
+        long scaled = Math.round(value * factor);
+        if (Math.abs(scaled) < (1L << 53) && scaled / factor == value) {
+            return scaled;
+        }
+        return BigDecimal.valueOf(value).setScale(digits, roundingMode).unscaledValue().longValueExact();
+    }
+
+    // rounds the non-negative quotient + remainder / divisor to a whole number
+    private long round(long quotient, long remainder, long divisor) {
+        if (remainder == 0) {
+            return quotient;
+        }
+        long twice = remainder * 2;
+        switch (roundingMode) {
+            case UP:
+            case CEILING:
+                return quotient + 1;
+            case DOWN:
+            case FLOOR:
+                return quotient;
+            case HALF_UP:
+                return twice >= divisor ? quotient + 1 : quotient;
+            case HALF_DOWN:
+                return twice > divisor ? quotient + 1 : quotient;
+            case HALF_EVEN:
+                return twice > divisor || (twice == divisor && (quotient & 1) == 1) ? quotient + 1 : quotient;
+            default:
+                throw new ArithmeticException("Rounding necessary");
+        }
+    }
+}
@@ -3,12 +3,44 @@ package com.sda;
 public class Order {
     private final String orderId;
     private final double amount;
+    // exact amount in minor units of a currency with `scale` decimals,
+    // scale is -1 when the order was created from a double amount only
+    private final long amountMinor;
+    private final int scale;
     private OrderStatus status;
+    // bumped by every withStatus() copy, repositories use it for compareAndUpdate()
+    private final int version;
 
     public Order(String orderId, double amount) {
         this.orderId = orderId;
         this.amount = amount;
+        this.amountMinor = 0;
+        this.scale = -1;
         this.status = OrderStatus.CREATED;
+        this.version = 0;
+    }
+
+    // e.g. new Order("1", 1999, 2) is an order of exactly 19.99
+    public Order(String orderId, long amountMinor, int scale) {
+        if (scale < 0) {
+            throw new IllegalArgumentException("Scale must not be negative");
+        }
+        this.orderId = orderId;
+        this.amount = amountMinor / Math.pow(10, scale);
+        this.amountMinor = amountMinor;
+        this.scale = scale;
+        this.status = OrderStatus.CREATED;
+        this.version = 0;
+    }
+
+    // for repositories that rebuild an order from what they stored
+    Order(String orderId, double amount, long amountMinor, int scale, OrderStatus status, int version) {
+        this.orderId = orderId;
+        this.amount = amount;
+        this.amountMinor = amountMinor;
+        this.scale = scale;
+        this.status = status != null ? status : OrderStatus.CREATED;
+        this.version = version;
     }
 
     public String getOrderId() {
@@ -19,11 +51,34 @@ public class Order {
         return amount;
     }
 
+    public long getAmountMinor() {
+        return amountMinor;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public boolean hasExactAmount() {
+        return scale >= 0;
+    }
+
     public OrderStatus getStatus() {
         return status;
     }
 
+    // a null status falls back to CREATED, so every status rule and repository column can rely on one
     public void setStatus(OrderStatus status) {
-        this.status = status;
+        this.status = status != null ? status : OrderStatus.CREATED;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    // a copy in the new status with the next version, this order stays untouched.
+    // Goes through the getters so it also works for orders that are views of a repository
+    public Order withStatus(OrderStatus status) {
+        return new Order(getOrderId(), getAmount(), getAmountMinor(), getScale(), status, getVersion() + 1);
     }
 }
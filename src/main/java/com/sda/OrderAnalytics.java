@@ -0,0 +1,192 @@
+package com.sda;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+// Running figures of order amounts per status, kept up to date by OrderService:
+// the count, the total and an approximate distribution of the amounts of every status.
+//
+// - O(1) and lock-free per change: a new order is added to its status, a transition moves
+//   its amount from the old status to the new one
+// - amounts are counted in cents, so totals stay exact while orders move between statuses
+// - the distribution uses the buckets of LatencyHistogram, a percentile is at most ~6% above the real amount
+// - a dashboard query copies the counters of one status, microseconds however many orders there are
+//
+// It only sees the changes made through the OrderService it was given to. of() starts it from the orders
+// already in an OrderStore, scan() computes the same figures from scratch over a snapshot of the store
+public class OrderAnalytics {
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+    private static final int SCAN_CHUNK = 1 << 16;
+
+    // indexed by ordinal
+    private final Aggregate[] aggregates = new Aggregate[STATUSES.length];
+
+    public OrderAnalytics() {
+        for (int i = 0; i < aggregates.length; i++) {
+            aggregates[i] = new Aggregate();
+        }
+    }
+
+    public static OrderAnalytics of(OrderStore store) {
+        OrderAnalytics analytics = new OrderAnalytics();
+        Totals totals = scanColumns(store.columns());
+        for (int i = 0; i < STATUSES.length; i++) {
+            analytics.aggregates[i].addAll(totals, i);
+        }
+        return analytics;
+    }
+
+    public void recordCreated(Order order) {
+        aggregates[order.getStatus().ordinal()].add(centsOf(order.getAmount()), 1);
+    }
+
+    public void recordTransition(double amount, OrderStatus from, OrderStatus to) {
+        long cents = centsOf(amount);
+        aggregates[from.ordinal()].add(cents, -1);
+        aggregates[to.ordinal()].add(cents, 1);
+    }
+
+    public StatusSummary summary(OrderStatus status) {
+        return aggregates[status.ordinal()].summary();
+    }
+
+    public Map<OrderStatus, StatusSummary> summaries() {
+        Map<OrderStatus, StatusSummary> summaries = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : STATUSES) {
+            summaries.put(status, summary(status));
+        }
+        return Collections.unmodifiableMap(summaries);
+    }
+
+    // Exact counts and totals straight from the store, for ad-hoc questions and to check the running figures.
+    // Scans a copy of the columns in parallel chunks, the store's writers only wait for the copy
+    public static Map<OrderStatus, StatusSummary> scan(OrderStore store) {
+        Totals totals = scanColumns(store.columns());
+        Map<OrderStatus, StatusSummary> summaries = new EnumMap<>(OrderStatus.class);
+        for (int i = 0; i < STATUSES.length; i++) {
+            summaries.put(STATUSES[i], new StatusSummary(totals.counts[i], totals.cents[i], totals.buckets[i]));
+        }
+        return Collections.unmodifiableMap(summaries);
+    }
+
+    private static Totals scanColumns(OrderStore.Columns columns) {
+        int rows = columns.amounts.length;
+        return IntStream.range(0, (rows + SCAN_CHUNK - 1) / SCAN_CHUNK)
+                .parallel()
+                .mapToObj(chunk -> {
+                    Totals totals = new Totals();
+                    int end = Math.min(rows, (chunk + 1) * SCAN_CHUNK);
+                    for (int row = chunk * SCAN_CHUNK; row < end; row++) {
+                        totals.add(columns.statuses[row], centsOf(columns.amounts[row]));
+                    }
+                    return totals;
+                })
+                .reduce(Totals::merge)
+                .orElseGet(Totals::new);
+    }
+
+    // negative amounts count as 0 in the distribution, but are kept in the total
+    static long centsOf(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    // A copy of the figures of one status. Changes recorded while it is taken may be partly included
+    public static class StatusSummary {
+        private final long count;
+        private final long cents;
+        private final long[] buckets;
+
+        private StatusSummary(long count, long cents, long[] buckets) {
+            this.count = count;
+            this.cents = cents;
+            this.buckets = buckets;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getTotal() {
+            return cents / 100.0;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : cents / 100.0 / count;
+        }
+
+        // e.g. amountAtPercentile(50.0) is the median amount
+        public double amountAtPercentile(double percentile) {
+            if (count <= 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return LatencyHistogram.highestValueIn(i) / 100.0;
+                }
+            }
+            return LatencyHistogram.highestValueIn(buckets.length - 1) / 100.0;
+        }
+    }
+
+    private static final class Aggregate {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder cents = new LongAdder();
+        private final AtomicLongArray buckets = new AtomicLongArray(LatencyHistogram.BUCKETS);
+
+        // delta is 1 when an order arrives in this status, -1 when it leaves
+        private void add(long amountCents, int delta) {
+            count.add(delta);
+            cents.add(delta * amountCents);
+            buckets.addAndGet(LatencyHistogram.bucketOf(Math.max(amountCents, 0)), delta);
+        }
+
+        private void addAll(Totals totals, int status) {
+            count.add(totals.counts[status]);
+            cents.add(totals.cents[status]);
+            for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+                if (totals.buckets[status][i] != 0) {
+                    buckets.addAndGet(i, totals.buckets[status][i]);
+                }
+            }
+        }
+
+        private StatusSummary summary() {
+            long[] copy = new long[LatencyHistogram.BUCKETS];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = buckets.get(i);
+            }
+            return new StatusSummary(count.sum(), cents.sum(), copy);
+        }
+    }
+
+    // the figures of one chunk of a scan, plain arrays since a chunk is scanned by one thread
+    private static final class Totals {
+        private final long[] counts = new long[STATUSES.length];
+        private final long[] cents = new long[STATUSES.length];
+        private final long[][] buckets = new long[STATUSES.length][LatencyHistogram.BUCKETS];
+
+        private void add(int status, long amountCents) {
+            counts[status]++;
+            cents[status] += amountCents;
+            buckets[status][LatencyHistogram.bucketOf(Math.max(amountCents, 0))]++;
+        }
+
+        private Totals merge(Totals other) {
+            for (int status = 0; status < STATUSES.length; status++) {
+                counts[status] += other.counts[status];
+                cents[status] += other.cents[status];
+                for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+                    buckets[status][i] += other.buckets[status][i];
+                }
+            }
+            return this;
+        }
+    }
+}
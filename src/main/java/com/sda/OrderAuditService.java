@@ -1,33 +1,75 @@
 package com.sda;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeParseException;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 public class OrderAuditService {
-    private final List<String> auditLogs = new ArrayList<>();
+    private static final byte UPDATED = 1;
+    private static final byte UPDATE_FAILED = 2;
+
+    private final AuditStore auditLogs;
     private final OrderRepository repository;
+    // when set, recordAudit() and processOrderUpdate() are timed and UPDATED_FAILED is counted
+    private final OrderMetrics metrics;
+    private final AuditClock clock;
 
     public OrderAuditService(OrderRepository repository) {
+        this(repository, new AuditLog());
+    }
+
+    // pass a ConcurrentAuditLog to record audits from several threads at once
+    // a null store falls back to the single writer AuditLog
+    public OrderAuditService(OrderRepository repository, AuditStore auditStore) {
+        this(repository, auditStore, null);
+    }
+
+    public OrderAuditService(OrderRepository repository, AuditStore auditStore, OrderMetrics metrics) {
+        this(repository, auditStore, metrics, null);
+    }
+
+    // a null clock falls back to the shared CachedAuditClock
+    public OrderAuditService(OrderRepository repository, AuditStore auditStore, OrderMetrics metrics, AuditClock clock) {
         this.repository = repository;
+        this.auditLogs = Objects.requireNonNullElseGet(auditStore, AuditLog::new);
+        this.metrics = metrics;
+        this.clock = Objects.requireNonNullElseGet(clock, CachedAuditClock::system);
     }
 
     // records an audit entry with current timestamp
+    // the entry is stored as structured fields, the text is only built in getAuditLogs()
     public void recordAudit(String action, String orderId) {
+        long start = metrics != null ? metrics.startTimer() : 0;
+        long now = currentTimeMicros();
         String timestamp = getFormattedTimeStamp();
-        String entry = String.format("[%s] Order %s: %s", timestamp, orderId, action);
-        auditLogs.add(entry);
+        auditLogs.appendMicros(now, timestamp, action, orderId);
+        if (metrics != null) {
+            metrics.stopTimer(OrderMetrics.Operation.RECORD_AUDIT, start);
+        }
+    }
+
+    // this method is used in tests to allow spying and stubbing
+    // pass an AuditClock to control the time instead
+    // epoch micros, stores that keep them order entries of the same millisecond by them
+    protected long currentTimeMicros() {
+        return clock.epochMicros();
     }
 
     // this method is used in tests to allow spying and stubbing
+    // the second of the timestamp just taken, e.g. 2024-01-31T23:59:59
     protected String getFormattedTimeStamp() {
-        return LocalDate.now().toString();
+        return clock.currentLabel();
     }
 
     // Processes order updates with VERY complex business logic
     public void processOrderUpdate(List<Order> orders) {
+        long start = metrics != null ? metrics.startTimer() : 0;
         for (Order order : orders) {
             try {
                 if (shouldProcessOrder(order)) {
@@ -35,28 +77,134 @@ public class OrderAuditService {
                     recordAudit("UPDATED", order.getOrderId());
                 }
             } catch (Exception e) {
-                recordAudit("UPDATED_FAILED", order.getOrderId());
+                recordUpdateFailed(order.getOrderId());
+            }
+        }
+        stopTimer(start);
+    }
+
+    // Same audit results as processOrderUpdate(orders), but the repository is called
+    // with updateAll() for every batch of at most batchSize orders
+    public void processOrderUpdate(List<Order> orders, int batchSize) {
+        processOrderUpdate(orders, batchSize, Runnable::run);
+    }
+
+    // batches are written on the given executor (e.g. a ForkJoinPool or a virtual thread executor)
+    // audits are still recorded by the calling thread, in the order of the list
+    public void processOrderUpdate(List<Order> orders, int batchSize, Executor executor) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        long start = metrics != null ? metrics.startTimer() : 0;
+
+        byte[] outcomes = new byte[orders.size()];
+        int[] pending = new int[orders.size()];
+        int pendingCount = 0;
+        for (int i = 0; i < orders.size(); i++) {
+            try {
+                if (shouldProcessOrder(orders.get(i))) {
+                    pending[pendingCount++] = i;
+                }
+            } catch (Exception e) {
+                outcomes[i] = UPDATE_FAILED;
+            }
+        }
+
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        for (int from = 0; from < pendingCount; from += batchSize) {
+            int[] batch = Arrays.copyOfRange(pending, from, Math.min(from + batchSize, pendingCount));
+            batches.add(CompletableFuture.runAsync(() -> updateBatch(orders, batch, outcomes), executor));
+        }
+        CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).join();
+
+        for (int i = 0; i < outcomes.length; i++) {
+            if (outcomes[i] == UPDATED) {
+                recordAudit("UPDATED", orders.get(i).getOrderId());
+            } else if (outcomes[i] == UPDATE_FAILED) {
+                recordUpdateFailed(orders.get(i).getOrderId());
+            }
+        }
+        stopTimer(start);
+    }
+
+    private void recordUpdateFailed(String orderId) {
+        if (metrics != null) {
+            metrics.recordFailure(OrderMetrics.FailureReason.UPDATE_FAILED);
+        }
+        recordAudit("UPDATED_FAILED", orderId);
+    }
+
+    private void stopTimer(long start) {
+        if (metrics != null) {
+            metrics.stopTimer(OrderMetrics.Operation.PROCESS_ORDER_UPDATE, start);
+        }
+    }
+
+    // every batch owns its own indexes of the outcomes array, so batches don't interfere
+    private void updateBatch(List<Order> orders, int[] batch, byte[] outcomes) {
+        List<Order> batchOrders = new ArrayList<>(batch.length);
+        for (int index : batch) {
+            batchOrders.add(orders.get(index));
+        }
+        try {
+            repository.updateAll(batchOrders);
+            for (int index : batch) {
+                outcomes[index] = UPDATED;
+            }
+        } catch (Exception batchFailure) {
+            // we don't know which order broke the batch, so we retry them one by one
+            // to keep the per order UPDATED / UPDATED_FAILED audit
+            for (int index : batch) {
+                try {
+                    repository.update(orders.get(index));
+                    outcomes[index] = UPDATED;
+                } catch (Exception e) {
+                    outcomes[index] = UPDATE_FAILED;
+                }
             }
         }
     }
 
     public boolean shouldProcessOrder(Order order) {
-        return (order != null && order.getStatus() != OrderStatus.CANCELLED && order.getAmount() > 0);
+        return (order != null && order.getStatus().acceptsUpdates() && order.getAmount() > 0);
     }
 
     public List<String> getAuditLogs() {
-        return new ArrayList<>(auditLogs);
+        return auditLogs.renderAll();
+    }
+
+    // same entries as getAuditLogs() without copying them into a list first
+    // close the stream when the store reads from files (StreamingAuditLog)
+    public Stream<String> streamAuditLogs() {
+        return auditLogs.entries();
+    }
+
+    // the audit entries of one order, oldest first, in the format of getAuditLogs()
+    // the store looks them up in its own index, the rest of the log isn't read.
+    // This is the service's own audit, whatever the repository is. An OrderJournal keeps a separate
+    // history of the order's states (CREATED, CONFIRMED, ...), read it with OrderJournal.auditTrail()
+    public List<String> getAuditTrail(String orderId) {
+        return auditLogs.trail(orderId, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // entries recorded at or after from and before to
+    public List<String> getAuditTrail(String orderId, LocalDateTime from, LocalDateTime to) {
+        return auditLogs.trail(orderId, toEpochMillis(from), toEpochMillis(to));
     }
 
-    // Clears old audit entries based on complex criteria
+    // Clears audit entries recorded before the given time
+    // entries are kept in time order, so this cuts off whole segments instead of parsing every entry
     // Returns number of deleted entries
     public int clearOldEntries(LocalDateTime before) {
-        int initialSize = auditLogs.size();
-        auditLogs.removeIf(entry -> isEntryOlderThan(entry, before));
-        return initialSize - auditLogs.size();
+        return auditLogs.removeOlderThan(toEpochMillis(before));
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 
     // Complex parsing logic
+    // kept for callers that still work with the rendered text entries
     public boolean isEntryOlderThan(String entry, LocalDateTime before) {
         try {
             String dateStr = entry.substring(1, entry.indexOf("]"));
@@ -66,5 +214,4 @@ public class OrderAuditService {
             return false;
         }
     }
-
 }
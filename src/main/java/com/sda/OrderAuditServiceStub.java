@@ -24,7 +24,7 @@ public class OrderAuditServiceStub {
     }
 
     public boolean shouldProcessOrder(Order order) {
-        return (order != null && order.getStatus() != OrderStatus.CANCELLED && order.getAmount() > 0);
+        return (order != null && order.getStatus().acceptsUpdates() && order.getAmount() > 0);
     }
 
     public List<String> getAuditLogs() {
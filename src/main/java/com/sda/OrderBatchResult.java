@@ -0,0 +1,54 @@
+package com.sda;
+
+import java.util.Collections;
+import java.util.List;
+
+// What createOrders() did with every request: the orders it created (in request order)
+// and one Failure per request it rejected. The lists are handed over, not copied
+public class OrderBatchResult {
+    private final List<Order> created;
+    private final List<Failure> failures;
+
+    public OrderBatchResult(List<Order> created, List<Failure> failures) {
+        this.created = Collections.unmodifiableList(created);
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    public List<Order> getCreated() {
+        return created;
+    }
+
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    public static class Failure {
+        private final int index;
+        private final String orderId;
+        private final String reason;
+
+        public Failure(int index, String orderId, String reason) {
+            this.index = index;
+            this.orderId = orderId;
+            this.reason = reason;
+        }
+
+        // position of the request in the list passed to createOrders()
+        public int getIndex() {
+            return index;
+        }
+
+        public String getOrderId() {
+            return orderId;
+        }
+
+        // the message createOrder() would have thrown with
+        public String getReason() {
+            return reason;
+        }
+    }
+}
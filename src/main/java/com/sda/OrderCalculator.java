@@ -19,4 +19,30 @@ public class OrderCalculator {
         // instead we'd better use BigDecimal
         return Math.max(Math.round(totalPrice), 0);
     }
+
+    // Bulk version of calculateTotal(): line item i is described by index i of every input array
+    // and its total is written to totals[i]. The results are exactly the same as calling
+    // calculateTotal() per line item, without the call overhead and with the arrays' bounds checked once.
+    // The whole batch is checked first, so a negative value anywhere leaves totals untouched.
+    // That costs one more read of the inputs, in return the pricing loop is plain arithmetic without branches
+    public void calculateTotals(double[] itemPrices, int[] itemCounts, double[] taxRates, double[] discounts, double[] totals) {
+        int size = itemPrices.length;
+        if (itemCounts.length != size || taxRates.length != size || discounts.length != size || totals.length != size) {
+            throw new IllegalArgumentException("All arrays must have the same length");
+        }
+
+        // non short-circuit | so the check is one pass without branches as well
+        boolean negative = false;
+        for (int i = 0; i < size; i++) {
+            negative |= itemPrices[i] < 0 | itemCounts[i] < 0 | taxRates[i] < 0 | discounts[i] < 0;
+        }
+        if (negative) {
+            throw new IllegalArgumentException("Negative values are not allowed");
+        }
+
+        for (int i = 0; i < size; i++) {
+            double totalPrice = itemPrices[i] * itemCounts[i] * (1 + taxRates[i]) - discounts[i];
+            totals[i] = Math.max(Math.round(totalPrice), 0);
+        }
+    }
 }
@@ -0,0 +1,69 @@
+package com.sda;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+// One entry of the OrderJournal: what happened to an order and the order's state right after it.
+// Carrying the whole state makes replay a plain overwrite, no event depends on the ones before it
+public final class OrderEvent {
+
+    public enum Type {
+        CREATED,
+        CONFIRMED,
+        CANCELLED,
+        UPDATED
+    }
+
+    private final Type type;
+    private final long timestamp; // epoch millis
+    private final String orderId;
+    private final OrderStatus status;
+    private final double amount;
+    private final long amountMinor;
+    private final int scale;
+    private final int version;
+
+    OrderEvent(Type type, long timestamp, String orderId, OrderStatus status, double amount, long amountMinor,
+               int scale, int version) {
+        this.type = type;
+        this.timestamp = timestamp;
+        this.orderId = orderId;
+        this.status = status;
+        this.amount = amount;
+        this.amountMinor = amountMinor;
+        this.scale = scale;
+        this.version = version;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    // the order as it was right after this event
+    public Order toOrder() {
+        return new Order(orderId, amount, amountMinor, scale, status, version);
+    }
+
+    // same "[timestamp] Order id: ACTION" text as the audit log, the action is the event type
+    public String render() {
+        String label = AuditClock.LABEL_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()));
+        return "[" + label + "] Order " + orderId + ": " + type;
+    }
+}
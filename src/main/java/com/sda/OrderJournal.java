@@ -0,0 +1,580 @@
+package com.sda;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Event sourced OrderRepository: every save/update appends an OrderEvent to an append-only journal,
+// which is the only thing on disk. The current orders are a ConcurrentHashMap rebuilt from it on startup,
+// and the history of an order is read back from it.
+//
+// Event record, 40 bytes + id:
+//
+//   offset 0   type            (1 byte, OrderEvent.Type ordinal)
+//   offset 1   status          (1 byte, ordinal)
+//   offset 2   scale           (1 byte, -1 = no exact amount)
+//   offset 3   id length       (1 byte)
+//   offset 4   version         (4 byte int)
+//   offset 8   timestamp       (8 byte epoch millis)
+//   offset 16  amount          (8 byte double)
+//   offset 24  amount minor    (8 byte long)
+//   offset 32  previous event  (8 byte journal offset of the order's previous event, -1 for the first)
+//   offset 40  id              (up to 255 bytes UTF-8)
+//
+// - group commit: events collect in a buffer that is written and forced when full, by the first write
+//   after its oldest event is 100 ms old, on flush() and on close(); a crash loses at most the buffered events
+// - snapshots: every snapshotEvery events all current orders are written to snapshot-<journal offset>.bin,
+//   startup loads the newest one and only replays the journal after that offset. The writer only copies the
+//   slot references at that offset, the file is written in the background
+// - history: the previous event offsets chain the events of an order, so history() reads only its k events
+// - an event cut off by a crash at the end of the journal is dropped on startup
+//
+// Writes are serialized, findById() and exists() don't take any lock.
+// The journal keeps its own copy of every order and findById() hands out copies, so a caller that changes
+// the status of its Order before update() is journaled as CONFIRMED / CANCELLED, not as UPDATED
+public class OrderJournal implements OrderRepository, AutoCloseable {
+    static final int HEADER_SIZE = 40;
+    static final int MAX_ID_BYTES = 255;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long COMMIT_INTERVAL_MILLIS = 100;
+    private static final long DEFAULT_SNAPSHOT_EVERY = 1_000_000;
+    private static final String JOURNAL_FILE = "orders.journal";
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final int SNAPSHOT_MAGIC = 0x4F534E50;
+    private static final int SNAPSHOT_HEADER_SIZE = 24;
+    private static final OrderEvent.Type[] TYPES = OrderEvent.Type.values();
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+    private static final Executor SNAPSHOT_EXECUTOR = AsyncOrderService.newDefaultExecutor("order-journal-snapshot");
+
+    private final Path directory;
+    private final AuditClock clock;
+    private final long snapshotEvery;
+    private final FileChannel channel;
+    private final ConcurrentHashMap<String, Slot> orders = new ConcurrentHashMap<>();
+    private final ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+    private final long replayedEvents;
+    // one snapshot file is written at a time, guards lastSnapshotOffset
+    private final Object snapshotLock = new Object();
+    private long lastSnapshotOffset = -1;
+
+    // guarded by this
+    private long committed; // journal bytes on disk
+    private long oldestPending;
+    private long eventCount;
+    private long eventsSinceSnapshot;
+    private CompletableFuture<Void> scheduledSnapshot = CompletableFuture.completedFuture(null);
+
+    public OrderJournal(Path directory) throws IOException {
+        this(directory, null, DEFAULT_SNAPSHOT_EVERY);
+    }
+
+    // a null clock falls back to the shared CachedAuditClock
+    public OrderJournal(Path directory, AuditClock clock, long snapshotEvery) throws IOException {
+        if (snapshotEvery < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be positive");
+        }
+        this.directory = directory;
+        this.clock = clock != null ? clock : CachedAuditClock.system();
+        this.snapshotEvery = snapshotEvery;
+        Files.createDirectories(directory);
+        this.channel = FileChannel.open(directory.resolve(JOURNAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long journalSize = channel.size();
+        long replayFrom = 0;
+        ReplayTable table = new ReplayTable();
+        for (Path snapshot : snapshots()) {
+            long offset = offsetOf(snapshot);
+            if (offset <= journalSize && loadSnapshot(snapshot, table)) {
+                replayFrom = offset;
+                break;
+            }
+            table = new ReplayTable();
+        }
+        ReplayTable replayTable = table;
+        long[] replayed = new long[1];
+        long end = forEachRecord(channel, replayFrom, journalSize, (buffer, position, offset) -> {
+            replayTable.put(buffer, position, offset);
+            replayed[0]++;
+        });
+        replayTable.drainTo(orders);
+        if (end < journalSize) {
+            channel.truncate(end);
+        }
+        this.committed = end;
+        this.replayedEvents = replayed[0];
+        this.eventCount += replayed[0];
+        this.eventsSinceSnapshot = replayed[0];
+    }
+
+    // saving an id that is already stored replaces the stored order, as an UPDATED event
+    @Override
+    public synchronized void save(Order order) {
+        Slot current = orders.get(order.getOrderId());
+        append(current == null ? OrderEvent.Type.CREATED : OrderEvent.Type.UPDATED, order, current);
+    }
+
+    @Override
+    public Optional<Order> findById(String orderId) {
+        Slot slot = orders.get(orderId);
+        return slot == null ? Optional.empty() : Optional.of(copyOf(slot.order));
+    }
+
+    @Override
+    public synchronized void update(Order order) {
+        Slot current = orders.get(order.getOrderId());
+        if (current == null) {
+            throw new IllegalArgumentException("Order not found");
+        }
+        append(typeOf(current.order, order), order, current);
+    }
+
+    @Override
+    public boolean exists(String orderId) {
+        return orders.containsKey(orderId);
+    }
+
+    @Override
+    public synchronized boolean compareAndUpdate(Order order, int expectedVersion) {
+        Slot current = orders.get(order.getOrderId());
+        if (current == null || current.order.getVersion() != expectedVersion) {
+            return false;
+        }
+        append(typeOf(current.order, order), order, current);
+        return true;
+    }
+
+    // every event of the order, oldest first, read by following the chain back from its last event
+    public synchronized List<OrderEvent> history(String orderId) {
+        Slot slot = orders.get(orderId);
+        if (slot == null) {
+            return Collections.emptyList();
+        }
+        List<OrderEvent> events = new ArrayList<>();
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + MAX_ID_BYTES);
+        try {
+            for (long offset = slot.lastOffset; offset >= 0; offset = record.getLong(32)) {
+                readRecord(offset, record);
+                events.add(decodeEvent(record, 0));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Collections.reverse(events);
+        return events;
+    }
+
+    // the history rendered like the audit log, e.g. "[2024-01-31T10:15:30] Order 1: CONFIRMED".
+    // It is separate from the audit log of OrderAuditService, which records the service's actions (UPDATED, ...)
+    public List<String> auditTrail(String orderId) {
+        return auditTrail(orderId, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // the events with fromMillis <= timestamp < toMillis
+    public List<String> auditTrail(String orderId, long fromMillis, long toMillis) {
+        return history(orderId).stream()
+                .filter(event -> event.getTimestamp() >= fromMillis && event.getTimestamp() < toMillis)
+                .map(OrderEvent::render)
+                .collect(Collectors.toList());
+    }
+
+    // Writes all current orders to a new snapshot and deletes the older ones.
+    // Writers only wait while the buffered events are committed and the slots are copied,
+    // the file only gets its final name once it is complete
+    public void snapshot() {
+        try {
+            writeSnapshot(captureSnapshot());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the slots are immutable, so the copy of the references is the state at the committed offset
+    private synchronized SnapshotState captureSnapshot() throws IOException {
+        commit();
+        eventsSinceSnapshot = 0;
+        return new SnapshotState(new ArrayList<>(orders.values()), committed, eventCount);
+    }
+
+    private void writeSnapshot(SnapshotState state) throws IOException {
+        synchronized (snapshotLock) {
+            // a snapshot taken later was written first
+            if (state.offset <= lastSnapshotOffset) {
+                return;
+            }
+            Path temporary = directory.resolve("snapshot.tmp");
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                buffer.putInt(SNAPSHOT_MAGIC).putLong(state.eventCount).putInt(state.slots.size()).putLong(state.offset);
+                for (Slot slot : state.slots) {
+                    if (buffer.remaining() < HEADER_SIZE + MAX_ID_BYTES) {
+                        writeFully(out, buffer.flip());
+                        buffer.clear();
+                    }
+                    // a snapshot record is the order's state, the type and timestamp are not used
+                    encode(buffer, OrderEvent.Type.UPDATED, 0, slot.order, idBytes(slot.order), slot.lastOffset);
+                }
+                writeFully(out, buffer.flip());
+                out.force(true);
+            }
+            Path snapshot = directory.resolve(String.format("snapshot-%016d.bin", state.offset));
+            Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (Path older : snapshots()) {
+                if (!older.equals(snapshot)) {
+                    Files.deleteIfExists(older);
+                }
+            }
+            lastSnapshotOffset = state.offset;
+        }
+    }
+
+    // writes and forces the buffered events to disk now
+    public synchronized void flush() {
+        try {
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized long eventCount() {
+        return eventCount;
+    }
+
+    // events replayed from the journal on startup, the ones after the snapshot that was loaded
+    public long replayedEvents() {
+        return replayedEvents;
+    }
+
+    public int size() {
+        return orders.size();
+    }
+
+    // waits for a snapshot that is still being written
+    @Override
+    public void close() throws IOException {
+        CompletableFuture<Void> snapshot;
+        synchronized (this) {
+            snapshot = scheduledSnapshot;
+        }
+        snapshot.exceptionally(failure -> null).join();
+        synchronized (this) {
+            if (channel.isOpen()) {
+                commit();
+                channel.close();
+            }
+        }
+    }
+
+    private void append(OrderEvent.Type type, Order update, Slot previous) {
+        Order order = copyOf(update);
+        byte[] id = idBytes(order);
+        try {
+            if (pending.remaining() < HEADER_SIZE + id.length) {
+                commit();
+            }
+            long timestamp = clock.epochMicros() / 1000;
+            long offset = committed + pending.position();
+            if (pending.position() == 0) {
+                oldestPending = timestamp;
+            }
+            encode(pending, type, timestamp, order, id, previous == null ? -1 : previous.lastOffset);
+            orders.put(order.getOrderId(), new Slot(order, offset));
+            eventCount++;
+            // while the previous snapshot is still being written the next write tries again
+            if (++eventsSinceSnapshot >= snapshotEvery && scheduledSnapshot.isDone()) {
+                SnapshotState state = captureSnapshot();
+                // a failed snapshot only makes the next startup replay more of the journal
+                scheduledSnapshot = CompletableFuture.runAsync(() -> {
+                    try {
+                        writeSnapshot(state);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, SNAPSHOT_EXECUTOR);
+            } else if (timestamp - oldestPending >= COMMIT_INTERVAL_MILLIS) {
+                commit();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void commit() throws IOException {
+        if (pending.position() == 0) {
+            return;
+        }
+        pending.flip();
+        int bytes = pending.remaining();
+        while (pending.hasRemaining()) {
+            channel.write(pending, committed + bytes - pending.remaining());
+        }
+        channel.force(false);
+        pending.clear();
+        committed += bytes;
+    }
+
+    // the record at offset, from the file or from the buffer when it isn't written yet
+    private void readRecord(long offset, ByteBuffer record) throws IOException {
+        record.clear();
+        if (offset >= committed) {
+            int start = (int) (offset - committed);
+            int length = HEADER_SIZE + (pending.get(start + 3) & 0xFF);
+            record.put(0, pending, start, length);
+            return;
+        }
+        while (record.hasRemaining()) {
+            if (channel.read(record, offset + record.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    private static OrderEvent.Type typeOf(Order current, Order next) {
+        if (next.getStatus() != current.getStatus()) {
+            if (next.getStatus() == OrderStatus.CONFIRMED) {
+                return OrderEvent.Type.CONFIRMED;
+            }
+            if (next.getStatus() == OrderStatus.CANCELLED) {
+                return OrderEvent.Type.CANCELLED;
+            }
+        }
+        return OrderEvent.Type.UPDATED;
+    }
+
+    private static Order copyOf(Order order) {
+        return new Order(order.getOrderId(), order.getAmount(), order.getAmountMinor(), order.getScale(),
+                order.getStatus(), order.getVersion());
+    }
+
+    private static byte[] idBytes(Order order) {
+        byte[] id = order.getOrderId().getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Order id is too long");
+        }
+        return id;
+    }
+
+    private static void encode(ByteBuffer buffer, OrderEvent.Type type, long timestamp, Order order, byte[] id,
+                               long previousOffset) {
+        buffer.put((byte) type.ordinal())
+                .put((byte) order.getStatus().ordinal())
+                .put((byte) order.getScale())
+                .put((byte) id.length)
+                .putInt(order.getVersion())
+                .putLong(timestamp)
+                .putDouble(order.getAmount())
+                .putLong(order.getAmountMinor())
+                .putLong(previousOffset)
+                .put(id);
+    }
+
+    private static Order decode(ByteBuffer buffer, int position) {
+        String id = new String(buffer.array(), position + HEADER_SIZE, buffer.get(position + 3) & 0xFF, StandardCharsets.UTF_8);
+        return new Order(id, buffer.getDouble(position + 16), buffer.getLong(position + 24), buffer.get(position + 2),
+                STATUSES[buffer.get(position + 1)], buffer.getInt(position + 4));
+    }
+
+    private static OrderEvent decodeEvent(ByteBuffer buffer, int position) {
+        String id = new String(buffer.array(), position + HEADER_SIZE, buffer.get(position + 3) & 0xFF, StandardCharsets.UTF_8);
+        return new OrderEvent(TYPES[buffer.get(position)], buffer.getLong(position + 8), id, STATUSES[buffer.get(position + 1)],
+                buffer.getDouble(position + 16), buffer.getLong(position + 24), buffer.get(position + 2), buffer.getInt(position + 4));
+    }
+
+    // a snapshot that is cut off or doesn't match its header is skipped, startup then tries an older one
+    private boolean loadSnapshot(Path file, ReplayTable table) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE);
+            while (header.hasRemaining() && in.read(header) >= 0) {
+                // read the whole header
+            }
+            if (header.hasRemaining() || header.getInt(0) != SNAPSHOT_MAGIC || header.getLong(16) != offsetOf(file)) {
+                return false;
+            }
+            int expected = header.getInt(12);
+            int[] loaded = new int[1];
+            long size = in.size();
+            long end = forEachRecord(in, SNAPSHOT_HEADER_SIZE, size, (buffer, position, offset) -> {
+                table.put(buffer, position, buffer.getLong(position + 32));
+                loaded[0]++;
+            });
+            if (end != size || loaded[0] != expected) {
+                return false;
+            }
+            eventCount = header.getLong(4);
+            return true;
+        }
+    }
+
+    // calls the visitor for every complete record in [from, to) of the file, returns the offset after the last one
+    private static long forEachRecord(FileChannel in, long from, long to, RecordVisitor visitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = from; // file offset of buffer[0]
+        long read = from;
+        while (true) {
+            int bytes = read < to ? in.read(buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + to - read)), read) : -1;
+            if (bytes > 0) {
+                read += bytes;
+            }
+            buffer.flip();
+            int start = 0;
+            while (buffer.limit() - start >= HEADER_SIZE
+                    && buffer.limit() - start >= HEADER_SIZE + (buffer.get(start + 3) & 0xFF)) {
+                visitor.visit(buffer, start, position + start);
+                start += HEADER_SIZE + (buffer.get(start + 3) & 0xFF);
+            }
+            position += start;
+            buffer.position(start);
+            buffer.compact();
+            if (bytes <= 0) {
+                return position;
+            }
+        }
+    }
+
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> SNAPSHOT_NAME.matcher(file.getFileName().toString()).matches())
+                    .sorted((a, b) -> Long.compare(offsetOf(b), offsetOf(a)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long offsetOf(Path snapshot) {
+        Matcher matcher = SNAPSHOT_NAME.matcher(snapshot.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private interface RecordVisitor {
+        void visit(ByteBuffer buffer, int position, long offset);
+    }
+
+    // The latest record of every order while replaying on startup, under an open addressing table keyed by
+    // the id bytes. An event of a known order only overwrites the state bytes of its record, so replay
+    // allocates per order instead of per event and the Orders are built once at the end
+    private static final class ReplayTable {
+        private static final int STATE_SIZE = 32;
+
+        private int[] table = new int[1 << 10]; // record index + 1, 0 = empty
+        private byte[][] records = new byte[512][];
+        private int[] hashes = new int[512];
+        private long[] lastOffsets = new long[512];
+        private int size;
+
+        private void put(ByteBuffer buffer, int position, long lastOffset) {
+            byte[] source = buffer.array();
+            int idStart = position + HEADER_SIZE;
+            int idEnd = idStart + (source[position + 3] & 0xFF);
+            int hash = hash(source, idStart, idEnd);
+            int mask = table.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int entry = table[slot];
+                if (entry == 0) {
+                    table[slot] = add(Arrays.copyOfRange(source, position, idEnd), hash, lastOffset) + 1;
+                    if (size * 2 > table.length) {
+                        rehash();
+                    }
+                    return;
+                }
+                byte[] record = records[entry - 1];
+                if (hashes[entry - 1] == hash
+                        && Arrays.equals(record, HEADER_SIZE, record.length, source, idStart, idEnd)) {
+                    System.arraycopy(source, position, record, 0, STATE_SIZE);
+                    lastOffsets[entry - 1] = lastOffset;
+                    return;
+                }
+            }
+        }
+
+        private void drainTo(Map<String, Slot> orders) {
+            for (int i = 0; i < size; i++) {
+                Order order = decode(ByteBuffer.wrap(records[i]), 0);
+                orders.put(order.getOrderId(), new Slot(order, lastOffsets[i]));
+                records[i] = null;
+            }
+        }
+
+        private int add(byte[] record, int hash, long lastOffset) {
+            if (size == records.length) {
+                records = Arrays.copyOf(records, size * 2);
+                hashes = Arrays.copyOf(hashes, size * 2);
+                lastOffsets = Arrays.copyOf(lastOffsets, size * 2);
+            }
+            records[size] = record;
+            hashes[size] = hash;
+            lastOffsets[size] = lastOffset;
+            return size++;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int i = 0; i < size; i++) {
+                int slot = hashes[i] & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = i + 1;
+            }
+        }
+
+        private static int hash(byte[] bytes, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            return hash * 0x9E3779B9 ^ (hash >>> 16);
+        }
+    }
+
+    // the slots of all orders at a committed journal offset
+    private static final class SnapshotState {
+        private final List<Slot> slots;
+        private final long offset;
+        private final long eventCount;
+
+        private SnapshotState(List<Slot> slots, long offset, long eventCount) {
+            this.slots = slots;
+            this.offset = offset;
+            this.eventCount = eventCount;
+        }
+    }
+
+    // the order and the journal offset of its last event, replaced as a whole on every write
+    // the order is the journal's own copy and is never handed out
+    private static final class Slot {
+        private final Order order;
+        private final long lastOffset;
+
+        private Slot(Order order, long lastOffset) {
+            this.order = order;
+            this.lastOffset = lastOffset;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.sda;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histograms per service operation and per repository call, plus failure counters by reason.
+// Hand one instance to OrderService, OrderAuditService and instrument() the repository they share.
+// The time of an operation includes its repository calls, the business logic is the difference.
+// A clock read costs about as much as a cheap operation, so on hot paths pass sampleEvery to time
+// only about one call in sampleEvery, each sample then counts sampleEvery times
+public class OrderMetrics {
+
+    public enum Operation {
+        CREATE_ORDER,
+        CONFIRM_ORDER,
+        CANCEL_ORDER,
+        PROCESS_ORDER_UPDATE,
+        RECORD_AUDIT
+    }
+
+    public enum RepositoryCall {
+        SAVE,
+        FIND_BY_ID,
+        UPDATE,
+        EXISTS,
+        COMPARE_AND_UPDATE,
+        EXISTS_ALL,
+        SAVE_ALL,
+        UPDATE_ALL,
+        DELETE
+    }
+
+    public enum FailureReason {
+        DUPLICATE,
+        NOT_FOUND,
+        INVALID_INPUT,
+        INVALID_TRANSITION,
+        CONCURRENT_CONFLICT,
+        UPDATE_FAILED
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final RepositoryCall[] REPOSITORY_CALLS = RepositoryCall.values();
+    private static final FailureReason[] FAILURE_REASONS = FailureReason.values();
+    // returned by startTimer() for a call that isn't timed
+    private static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    // indexed by ordinal, so recording is an array access and no map lookup
+    private final LatencyHistogram[] operations = new LatencyHistogram[OPERATIONS.length];
+    private final LatencyHistogram[] repositoryCalls = new LatencyHistogram[REPOSITORY_CALLS.length];
+    private final LongAdder[] failures = new LongAdder[FAILURE_REASONS.length];
+    private final int sampleEvery;
+    private final int sampleMask;
+
+    // times every call
+    public OrderMetrics() {
+        this(1);
+    }
+
+    // sampleEvery is rounded up to a power of two, failures are always counted exactly
+    public OrderMetrics(int sampleEvery) {
+        if (sampleEvery < 1 || sampleEvery > 1 << 30) {
+            throw new IllegalArgumentException("Sample interval must be between 1 and 2^30");
+        }
+        this.sampleEvery = sampleEvery == 1 ? 1 : Integer.highestOneBit(sampleEvery - 1) << 1;
+        this.sampleMask = this.sampleEvery - 1;
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < repositoryCalls.length; i++) {
+            repositoryCalls[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < failures.length; i++) {
+            failures[i] = new LongAdder();
+        }
+    }
+
+    public OrderRepository instrument(OrderRepository repository) {
+        return new InstrumentedOrderRepository(repository, this);
+    }
+
+    // System.nanoTime() when this call is sampled, pass it on to stopTimer()
+    public long startTimer() {
+        if (sampleMask != 0 && (ThreadLocalRandom.current().nextInt() & sampleMask) != 0) {
+            return NOT_SAMPLED;
+        }
+        return System.nanoTime();
+    }
+
+    public void stopTimer(Operation operation, long start) {
+        if (start != NOT_SAMPLED) {
+            operations[operation.ordinal()].record(System.nanoTime() - start, sampleEvery);
+        }
+    }
+
+    public void stopTimer(RepositoryCall call, long start) {
+        if (start != NOT_SAMPLED) {
+            repositoryCalls[call.ordinal()].record(System.nanoTime() - start, sampleEvery);
+        }
+    }
+
+    public void record(Operation operation, long nanos) {
+        operations[operation.ordinal()].record(nanos);
+    }
+
+    public void record(RepositoryCall call, long nanos) {
+        repositoryCalls[call.ordinal()].record(nanos);
+    }
+
+    public void recordFailure(FailureReason reason) {
+        failures[reason.ordinal()].increment();
+    }
+
+    public Snapshot snapshot() {
+        Map<Operation, LatencyHistogram.Snapshot> operationSnapshots = new EnumMap<>(Operation.class);
+        for (Operation operation : OPERATIONS) {
+            operationSnapshots.put(operation, operations[operation.ordinal()].snapshot());
+        }
+        Map<RepositoryCall, LatencyHistogram.Snapshot> callSnapshots = new EnumMap<>(RepositoryCall.class);
+        for (RepositoryCall call : REPOSITORY_CALLS) {
+            callSnapshots.put(call, repositoryCalls[call.ordinal()].snapshot());
+        }
+        Map<FailureReason, Long> failureCounts = new EnumMap<>(FailureReason.class);
+        for (FailureReason reason : FAILURE_REASONS) {
+            failureCounts.put(reason, failures[reason.ordinal()].sum());
+        }
+        return new Snapshot(operationSnapshots, callSnapshots, failureCounts);
+    }
+
+    public static class Snapshot {
+        private final Map<Operation, LatencyHistogram.Snapshot> operations;
+        private final Map<RepositoryCall, LatencyHistogram.Snapshot> repositoryCalls;
+        private final Map<FailureReason, Long> failures;
+
+        private Snapshot(Map<Operation, LatencyHistogram.Snapshot> operations,
+                         Map<RepositoryCall, LatencyHistogram.Snapshot> repositoryCalls,
+                         Map<FailureReason, Long> failures) {
+            this.operations = Collections.unmodifiableMap(operations);
+            this.repositoryCalls = Collections.unmodifiableMap(repositoryCalls);
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+
+        public LatencyHistogram.Snapshot get(Operation operation) {
+            return operations.get(operation);
+        }
+
+        public LatencyHistogram.Snapshot get(RepositoryCall call) {
+            return repositoryCalls.get(call);
+        }
+
+        public long failures(FailureReason reason) {
+            return failures.get(reason);
+        }
+
+        public Map<Operation, LatencyHistogram.Snapshot> getOperations() {
+            return operations;
+        }
+
+        public Map<RepositoryCall, LatencyHistogram.Snapshot> getRepositoryCalls() {
+            return repositoryCalls;
+        }
+
+        public Map<FailureReason, Long> getFailures() {
+            return failures;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.sda;
 
 import javax.swing.text.html.Option;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 
 // Repository is an abstraction layer that
 // the service uses to connect to database
@@ -14,4 +17,42 @@ public interface OrderRepository {
     void update(Order order);
 
     boolean exists(String orderId);
+
+    // Removes the order, does nothing when it isn't stored.
+    // Append-only repositories keep this default and can't be the source of a move between shards
+    default void delete(String orderId) {
+        throw new UnsupportedOperationException("Delete is not supported");
+    }
+
+    // the ids out of orderIds that are already stored, one round trip for many ids
+    // repositories backed by a real database should override this with a single query
+    default Set<String> existsAll(Collection<String> orderIds) {
+        Set<String> existing = new HashSet<>();
+        for (String orderId : orderIds) {
+            if (exists(orderId)) {
+                existing.add(orderId);
+            }
+        }
+        return existing;
+    }
+
+    default void saveAll(Collection<Order> orders) {
+        for (Order order : orders) {
+            save(order);
+        }
+    }
+
+    // one round trip for many orders
+    // repositories backed by a real database should override this with a bulk statement
+    default void updateAll(Collection<Order> orders) {
+        for (Order order : orders) {
+            update(order);
+        }
+    }
+
+    // Stores the order only if the stored one still has expectedVersion. Returns false when it has another
+    // version or isn't stored (any more), so the caller reads again and finds out which.
+    // Unlike update() this is safe for concurrent read-modify-write, so every repository implements it
+    // atomically, there is no default made of findById() and update()
+    boolean compareAndUpdate(Order order, int expectedVersion);
 }
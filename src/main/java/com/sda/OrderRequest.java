@@ -0,0 +1,32 @@
+package com.sda;
+
+// One line of an order import, the same values createOrder() takes
+public class OrderRequest {
+    private final String orderId;
+    private final double itemPrice;
+    private final int itemCount;
+    private final double taxRate;
+
+    public OrderRequest(String orderId, double itemPrice, int itemCount, double taxRate) {
+        this.orderId = orderId;
+        this.itemPrice = itemPrice;
+        this.itemCount = itemCount;
+        this.taxRate = taxRate;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public double getItemPrice() {
+        return itemPrice;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public double getTaxRate() {
+        return taxRate;
+    }
+}
@@ -0,0 +1,106 @@
+package com.sda;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// What an OrderService call did, without throwing for the rejections that are part of normal business:
+// a Success with the order, or a Rejected with the reason and the message the throwing methods use.
+//
+// Rejections whose message doesn't depend on the order (not found, duplicate, invalid input and every
+// status transition) are shared constants, so rejecting allocates nothing. Only a caller that wants
+// the old behaviour pays for an exception, through orderOrThrow()
+public sealed interface OrderResult permits OrderResult.Success, OrderResult.Rejected {
+
+    boolean isSuccess();
+
+    // the order on success, otherwise the exception the throwing methods of OrderService throw
+    Order orderOrThrow();
+
+    // why OrderService rejected a call, OrderService counts each one under its OrderMetrics.FailureReason
+    enum Reason {
+        DUPLICATE,
+        NOT_FOUND,
+        INVALID_INPUT,
+        INVALID_TRANSITION,
+        // the order kept changing under every retry
+        CONCURRENT_CONFLICT
+    }
+
+    final class Success implements OrderResult {
+        private final Order order;
+
+        Success(Order order) {
+            this.order = order;
+        }
+
+        public Order getOrder() {
+            return order;
+        }
+
+        @Override
+        public boolean isSuccess() {
+            return true;
+        }
+
+        @Override
+        public Order orderOrThrow() {
+            return order;
+        }
+    }
+
+    final class Rejected implements OrderResult {
+        static final Rejected NOT_FOUND = new Rejected(Reason.NOT_FOUND, "Order not found");
+        static final Rejected DUPLICATE = new Rejected(Reason.DUPLICATE, "Order already exists");
+        static final Rejected NEGATIVE_VALUES =
+                new Rejected(Reason.INVALID_INPUT, "Negative values are not allowed");
+        static final Rejected NOT_FINITE =
+                new Rejected(Reason.INVALID_INPUT, "Values must be finite numbers");
+        static final Rejected OUT_OF_RANGE = new Rejected(Reason.INVALID_INPUT, "Amount is out of range");
+        private static final Map<OrderStatus, Map<OrderStatus, Rejected>> TRANSITIONS = new EnumMap<>(OrderStatus.class);
+
+        static {
+            for (OrderStatus current : OrderStatus.values()) {
+                Map<OrderStatus, Rejected> byTarget = new EnumMap<>(OrderStatus.class);
+                for (OrderStatus target : OrderStatus.values()) {
+                    byTarget.put(target, new Rejected(Reason.INVALID_TRANSITION,
+                            current.rejectionMessage(target)));
+                }
+                TRANSITIONS.put(current, byTarget);
+            }
+        }
+
+        private final Reason reason;
+        private final String message;
+
+        Rejected(Reason reason, String message) {
+            this.reason = reason;
+            this.message = message;
+        }
+
+        static Rejected invalidTransition(OrderStatus current, OrderStatus target) {
+            return TRANSITIONS.get(current).get(target);
+        }
+
+        public Reason getReason() {
+            return reason;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public boolean isSuccess() {
+            return false;
+        }
+
+        // a conflict that outlasted every retry is an IllegalStateException, like it always was
+        @Override
+        public Order orderOrThrow() {
+            if (reason == Reason.CONCURRENT_CONFLICT) {
+                throw new IllegalStateException(message);
+            }
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
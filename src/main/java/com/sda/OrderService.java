@@ -1,54 +1,332 @@
 package com.sda;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
 public class OrderService {
+    // state transitions are optimistic: read, check, compareAndUpdate() and start over if
+    // another thread changed the order in between. Each retry means someone else made progress
+    static final int MAX_ATTEMPTS = 16;
+
     private final OrderRepository repository;
     private final OrderCalculatorV2 calculator;
+    // when set, createOrder() prices in exact minor units instead of doubles
+    private final MoneyCalculator moneyCalculator;
+    // when set, operations are timed and failures counted
+    private final OrderMetrics metrics;
+    // when set, every created order and status change is added to the running figures
+    private final OrderAnalytics analytics;
+    // when set, createOrder() answers a retried request with the order it already created
+    private final IdempotencyWindow idempotency;
 
     public OrderService(OrderRepository repository, OrderCalculatorV2 calculator) {
+        this(repository, calculator, null);
+    }
+
+    public OrderService(OrderRepository repository, OrderCalculatorV2 calculator, MoneyCalculator moneyCalculator) {
+        this(repository, calculator, moneyCalculator, null);
+    }
+
+    public OrderService(OrderRepository repository, OrderCalculatorV2 calculator, MoneyCalculator moneyCalculator,
+                        OrderMetrics metrics) {
+        this(repository, calculator, moneyCalculator, metrics, null);
+    }
+
+    public OrderService(OrderRepository repository, OrderCalculatorV2 calculator, MoneyCalculator moneyCalculator,
+                        OrderMetrics metrics, OrderAnalytics analytics) {
+        this(repository, calculator, moneyCalculator, metrics, analytics, null);
+    }
+
+    public OrderService(OrderRepository repository, OrderCalculatorV2 calculator, MoneyCalculator moneyCalculator,
+                        OrderMetrics metrics, OrderAnalytics analytics, IdempotencyWindow idempotency) {
         this.repository = repository;
         this.calculator = calculator;
+        this.moneyCalculator = moneyCalculator;
+        this.metrics = metrics;
+        this.analytics = analytics;
+        this.idempotency = idempotency;
     }
 
     public Order createOrder(String orderId, double itemPrice, int itemCount, double taxRate) {
-        if (repository.exists(orderId)) {
-            throw new IllegalArgumentException("Order already exists");
+        return tryCreateOrder(orderId, itemPrice, itemCount, taxRate).orderOrThrow();
+    }
+
+    // createOrder() that returns a rejection instead of throwing it.
+    // With an IdempotencyWindow, repeating a request within the window returns the order it created
+    // (as it was created) without a repository call, a different request for the same id is still rejected
+    public OrderResult tryCreateOrder(String orderId, double itemPrice, int itemCount, double taxRate) {
+        long start = startTimer();
+        try {
+            if (idempotency != null) {
+                OrderResult earlier = replay(orderId, itemPrice, itemCount, taxRate);
+                if (earlier != null) {
+                    return earlier;
+                }
+            }
+            if (repository.exists(orderId)) {
+                // an identical request may have created it while we were checking
+                OrderResult earlier = idempotency != null ? replay(orderId, itemPrice, itemCount, taxRate) : null;
+                return earlier != null ? earlier : rejected(OrderResult.Rejected.DUPLICATE);
+            }
+            // checked here so the common invalid request doesn't go through the calculator's exception
+            if (itemPrice < 0 || itemCount < 0 || taxRate < 0) {
+                return rejected(OrderResult.Rejected.NEGATIVE_VALUES);
+            }
+            if (!Double.isFinite(itemPrice) || !Double.isFinite(taxRate)) {
+                return rejected(OrderResult.Rejected.NOT_FINITE);
+            }
+
+            Order order;
+            try {
+                if (moneyCalculator != null) {
+                    long total = moneyCalculator.calculateTotal(
+                            moneyCalculator.toMinorUnits(itemPrice), itemCount, moneyCalculator.toRate(taxRate), 0, 0);
+                    order = new Order(orderId, total, moneyCalculator.getScale());
+                } else {
+                    double total = calculator.calculateTotal(itemPrice, itemCount, taxRate, 0, 0);
+                    order = new Order(orderId, total);
+                }
+            } catch (IllegalArgumentException e) {
+                return rejected(new OrderResult.Rejected(OrderResult.Reason.INVALID_INPUT, e.getMessage()));
+            } catch (ArithmeticException e) {
+                // the exact total doesn't fit in a long, or needs rounding the rounding mode forbids
+                return rejected(OrderResult.Rejected.OUT_OF_RANGE);
+            }
+
+            repository.save(order);
+            if (analytics != null) {
+                analytics.recordCreated(order);
+            }
+            if (idempotency != null) {
+                idempotency.remember(orderId, itemPrice, itemCount, taxRate, order);
+            }
+            return new OrderResult.Success(order);
+        } finally {
+            stopTimer(OrderMetrics.Operation.CREATE_ORDER, start);
+        }
+    }
+
+    // Creates many orders with one existsAll(), one bulk pricing call and one saveAll().
+    // A request that createOrder() would reject (duplicate id, also within the batch, negative or
+    // non-finite values, a total out of range) becomes a Failure in the result, the other requests are still created.
+    // Like createOrder(), an id created by someone else between the check and the save isn't detected,
+    // and with an IdempotencyWindow a retried request gets the order it created back, without a save
+    public OrderBatchResult createOrders(List<OrderRequest> requests) {
+        List<String> orderIds = new ArrayList<>(requests.size());
+        for (OrderRequest request : requests) {
+            orderIds.add(request.getOrderId());
+        }
+        Set<String> existing = repository.existsAll(orderIds);
+
+        // validate first, so the bulk pricing call only sees valid line items
+        List<OrderBatchResult.Failure> failures = new ArrayList<>();
+        // by request index: the replayed and the created orders, so the result keeps the request order
+        Order[] results = new Order[requests.size()];
+        int[] accepted = new int[requests.size()];
+        int acceptedCount = 0;
+        Set<String> seen = new HashSet<>(requests.size() * 4 / 3 + 1);
+        for (int i = 0; i < requests.size(); i++) {
+            OrderRequest request = requests.get(i);
+            IdempotencyWindow.Entry earlier = idempotency != null ? idempotency.find(request.getOrderId()) : null;
+            if (earlier != null && seen.add(request.getOrderId())
+                    && earlier.matches(request.getItemPrice(), request.getItemCount(), request.getTaxRate())) {
+                idempotency.countReplay();
+                results[i] = earlier.order();
+            } else if (earlier != null || existing.contains(request.getOrderId()) || !seen.add(request.getOrderId())) {
+                countFailure(OrderMetrics.FailureReason.DUPLICATE);
+                failures.add(new OrderBatchResult.Failure(i, request.getOrderId(), "Order already exists"));
+            } else if (request.getItemPrice() < 0 || request.getItemCount() < 0 || request.getTaxRate() < 0) {
+                countFailure(OrderMetrics.FailureReason.INVALID_INPUT);
+                failures.add(new OrderBatchResult.Failure(i, request.getOrderId(), "Negative values are not allowed"));
+            } else if (!Double.isFinite(request.getItemPrice()) || !Double.isFinite(request.getTaxRate())) {
+                countFailure(OrderMetrics.FailureReason.INVALID_INPUT);
+                failures.add(new OrderBatchResult.Failure(i, request.getOrderId(), OrderResult.Rejected.NOT_FINITE.getMessage()));
+            } else {
+                accepted[acceptedCount++] = i;
+            }
         }
 
-        double total = calculator.calculateTotal(itemPrice, itemCount, taxRate, 0, 0);
+        if (moneyCalculator != null) {
+            boolean pricingFailed = false;
+            for (int j = 0; j < acceptedCount; j++) {
+                OrderRequest request = requests.get(accepted[j]);
+                try {
+                    long total = moneyCalculator.calculateTotal(moneyCalculator.toMinorUnits(request.getItemPrice()),
+                            request.getItemCount(), moneyCalculator.toRate(request.getTaxRate()), 0, 0);
+                    results[accepted[j]] = new Order(request.getOrderId(), total, moneyCalculator.getScale());
+                } catch (ArithmeticException e) {
+                    // one total that doesn't fit in a long must not cost the rest of the batch
+                    countFailure(OrderMetrics.FailureReason.INVALID_INPUT);
+                    failures.add(new OrderBatchResult.Failure(accepted[j], request.getOrderId(),
+                            OrderResult.Rejected.OUT_OF_RANGE.getMessage()));
+                    pricingFailed = true;
+                }
+            }
+            if (pricingFailed) {
+                failures.sort(Comparator.comparingInt(OrderBatchResult.Failure::getIndex));
+            }
+        } else {
+            double[] prices = new double[acceptedCount];
+            int[] counts = new int[acceptedCount];
+            double[] taxRates = new double[acceptedCount];
+            for (int j = 0; j < acceptedCount; j++) {
+                OrderRequest request = requests.get(accepted[j]);
+                prices[j] = request.getItemPrice();
+                counts[j] = request.getItemCount();
+                taxRates[j] = request.getTaxRate();
+            }
+            // no discounts on created orders, zeros for both discounts and thresholds
+            double[] zeros = new double[acceptedCount];
+            double[] totals = new double[acceptedCount];
+            calculator.calculateTotals(prices, counts, taxRates, zeros, zeros, totals);
+            for (int j = 0; j < acceptedCount; j++) {
+                results[accepted[j]] = new Order(requests.get(accepted[j]).getOrderId(), totals[j]);
+            }
+        }
 
-        Order order = new Order(orderId, total);
+        // only the new orders are saved, a replayed one is already in the repository
+        List<Order> saved = new ArrayList<>(acceptedCount);
+        for (int j = 0; j < acceptedCount; j++) {
+            if (results[accepted[j]] != null) {
+                saved.add(results[accepted[j]]);
+            }
+        }
+        repository.saveAll(saved);
+        if (analytics != null) {
+            for (Order order : saved) {
+                analytics.recordCreated(order);
+            }
+        }
+        if (idempotency != null) {
+            for (int j = 0; j < acceptedCount; j++) {
+                Order order = results[accepted[j]];
+                if (order != null) {
+                    OrderRequest request = requests.get(accepted[j]);
+                    idempotency.remember(request.getOrderId(), request.getItemPrice(), request.getItemCount(),
+                            request.getTaxRate(), order);
+                }
+            }
+        }
 
-        repository.save(order);
-        return order;
+        List<Order> created = new ArrayList<>(requests.size() - failures.size());
+        for (Order order : results) {
+            if (order != null) {
+                created.add(order);
+            }
+        }
+        return new OrderBatchResult(created, failures);
     }
 
     public void confirmOrder(String orderId) {
-        // find the order in database
-        Order order = repository.findById(orderId).orElseThrow(() -> new IllegalArgumentException("Order not found"));
+        tryConfirmOrder(orderId).orderOrThrow();
+    }
 
-        // if order status is cancelled, then throw exception
-        if (order.getStatus() == OrderStatus.CANCELLED) {
-            throw new IllegalArgumentException("Cannot confirm cancelled order");
+    public OrderResult tryConfirmOrder(String orderId) {
+        long start = startTimer();
+        try {
+            return tryTransition(orderId, OrderStatus.CONFIRMED);
+        } finally {
+            stopTimer(OrderMetrics.Operation.CONFIRM_ORDER, start);
         }
+    }
 
-        // confirm the order
-        order.setStatus(OrderStatus.CONFIRMED);
+    public void cancelOrder(String orderId) {
+        tryCancelOrder(orderId).orderOrThrow();
+    }
 
-        // update the data in database
-        repository.update(order);
+    public OrderResult tryCancelOrder(String orderId) {
+        long start = startTimer();
+        try {
+            return tryTransition(orderId, OrderStatus.CANCELLED);
+        } finally {
+            stopTimer(OrderMetrics.Operation.CANCEL_ORDER, start);
+        }
     }
 
-    public void cancelOrder(String orderId) {
-        Order order = repository
-                .findById(orderId)
-                .orElseThrow(() -> new IllegalArgumentException("Order not found"));
+    OrderResult tryTransition(String orderId, OrderStatus target) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            // find the order in database
+            Optional<Order> found = repository.findById(orderId);
+            if (found.isEmpty()) {
+                return rejected(OrderResult.Rejected.NOT_FOUND);
+            }
+            Order order = found.get();
+            // the version is read before the status, a status that changed in between fails the compareAndUpdate()
+            int version = order.getVersion();
 
-        if (order.getStatus() == OrderStatus.CONFIRMED) {
-            throw new IllegalArgumentException("Cannot cancel confirmed order");
+            // e.g. a cancelled order can't be confirmed, OrderStatus holds the rules
+            OrderStatus current = order.getStatus();
+            if (!current.canTransitionTo(target)) {
+                return rejected(OrderResult.Rejected.invalidTransition(current, target));
+            }
+
+            // move the order on, unless someone else changed it since we read it
+            Order updated = order.withStatus(target);
+            if (repository.compareAndUpdate(updated, version)) {
+                if (analytics != null) {
+                    analytics.recordTransition(order.getAmount(), current, target);
+                }
+                return new OrderResult.Success(updated);
+            }
+        }
+        return rejected(new OrderResult.Rejected(OrderResult.Reason.CONCURRENT_CONFLICT,
+                "Order " + orderId + " keeps changing, gave up after " + MAX_ATTEMPTS + " attempts"));
+    }
+
+    // the order of an earlier identical request, null when there is none, a rejection when it differed
+    private OrderResult replay(String orderId, double itemPrice, int itemCount, double taxRate) {
+        IdempotencyWindow.Entry earlier = idempotency.find(orderId);
+        if (earlier == null) {
+            return null;
+        }
+        if (!earlier.matches(itemPrice, itemCount, taxRate)) {
+            return rejected(OrderResult.Rejected.DUPLICATE);
         }
+        idempotency.countReplay();
+        return new OrderResult.Success(earlier.order());
+    }
 
-        order.setStatus(OrderStatus.CANCELLED);
-        repository.update(order);
+    // the metrics hooks cost nothing when no OrderMetrics was given
+    private long startTimer() {
+        return metrics != null ? metrics.startTimer() : 0;
+    }
+
+    private void stopTimer(OrderMetrics.Operation operation, long start) {
+        if (metrics != null) {
+            metrics.stopTimer(operation, start);
+        }
+    }
+
+    private void countFailure(OrderMetrics.FailureReason reason) {
+        if (metrics != null) {
+            metrics.recordFailure(reason);
+        }
+    }
+
+    private OrderResult.Rejected rejected(OrderResult.Rejected rejection) {
+        countFailure(failureReasonOf(rejection.getReason()));
+        return rejection;
+    }
+
+    private static OrderMetrics.FailureReason failureReasonOf(OrderResult.Reason reason) {
+        switch (reason) {
+            case DUPLICATE:
+                return OrderMetrics.FailureReason.DUPLICATE;
+            case NOT_FOUND:
+                return OrderMetrics.FailureReason.NOT_FOUND;
+            case INVALID_INPUT:
+                return OrderMetrics.FailureReason.INVALID_INPUT;
+            case INVALID_TRANSITION:
+                return OrderMetrics.FailureReason.INVALID_TRANSITION;
+            case CONCURRENT_CONFLICT:
+                return OrderMetrics.FailureReason.CONCURRENT_CONFLICT;
+            default:
+                throw new IllegalArgumentException("Unknown reason " + reason);
+        }
     }
 
     // a private method is usually not tested
@@ -2,9 +2,54 @@ package com.sda;
 
 /*
 * Represents the possible state of an Order in the system
+*
+* Which status may follow which is a table, not code: every status keeps a bitmask of the
+* statuses it may move to (bit n = ordinal n), so a check is one shift and one AND.
+* A new status (SHIPPED, REFUNDED, ...) is a new constant plus one allow(...) line
 * */
 public enum OrderStatus {
-    CREATED,
-    CONFIRMED,
-    CANCELLED
+    CREATED("created", "create"),
+    CONFIRMED("confirmed", "confirm"),
+    CANCELLED("cancelled", "cancel");
+
+    private final String label;
+    private final String action;
+    // filled once while the enum is initialized, never changed afterwards
+    private int allowedTargets;
+    private boolean acceptsUpdates;
+
+    static {
+        allow(CREATED, CONFIRMED, CANCELLED);
+        // confirming or cancelling twice is harmless
+        allow(CONFIRMED, CONFIRMED);
+        allow(CANCELLED, CANCELLED);
+
+        // OrderAuditService.processOrderUpdate() skips everything else
+        CREATED.acceptsUpdates = true;
+        CONFIRMED.acceptsUpdates = true;
+    }
+
+    OrderStatus(String label, String action) {
+        this.label = label;
+        this.action = action;
+    }
+
+    private static void allow(OrderStatus from, OrderStatus... targets) {
+        for (OrderStatus target : targets) {
+            from.allowedTargets |= 1 << target.ordinal();
+        }
+    }
+
+    public boolean canTransitionTo(OrderStatus target) {
+        return (allowedTargets >>> target.ordinal() & 1) != 0;
+    }
+
+    public boolean acceptsUpdates() {
+        return acceptsUpdates;
+    }
+
+    // e.g. "Cannot confirm cancelled order"
+    public String rejectionMessage(OrderStatus target) {
+        return "Cannot " + target.action + " " + label + " order";
+    }
 }
@@ -0,0 +1,339 @@
+package com.sda;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Columnar OrderRepository for tens of millions of live orders.
+// Instead of one Order object (plus its id String) per order, every field lives in a primitive column:
+//
+//   amounts   double per order
+//   minors    exact amount in minor units, with its scale in scales (-1 = no exact amount)
+//   statuses  status ordinal, one byte per order
+//   versions  Order.getVersion(), written after the status and read before it
+//   ids       numeric ids ("12345") are stored as a long, any other id is kept in a
+//             small dictionary and the column holds -(position + 1)
+//
+// findById() hands out an Order view over a row, so OrderService and OrderAuditService
+// keep working unchanged. Writes are serialized, reads don't take a lock
+//
+// Retained heap per stored order, measured by OrderFootprintBenchmark (1M / 10M orders):
+//
+//   numeric ids   38 / 43 bytes, InMemoryOrderRepository 200 / 204
+//   textual ids   155 / 165 bytes, InMemoryOrderRepository 208 / 212 (the id String and its
+//                 dictionary entry stay, only the Order object and its map entry go)
+//
+// The saving is in what is stored, not in what is handed out: a view is an Order subclass and
+// carries every Order field next to its own, so a held view costs 108 bytes (116 with textual ids)
+// including its id String, more than an Order. Callers that keep many orders around should keep
+// ids or rows, not views
+public class OrderStore implements OrderRepository {
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+    private static final VarHandle VERSIONS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private volatile double[] amounts;
+    private volatile long[] amountMinors;
+    private volatile byte[] scales;
+    private volatile byte[] statuses;
+    private volatile int[] versions;
+    private volatile long[] ids;
+    private volatile int size;
+
+    // numeric id -> row + 1 (0 = free), open addressing, at most half full
+    private volatile int[] slots;
+    // the dictionary of the other ids: an entry is written before size publishes its row
+    private volatile String[] textIds = new String[16];
+    private int textIdCount;
+    private final ConcurrentHashMap<String, Integer> textRows = new ConcurrentHashMap<>();
+
+    public OrderStore() {
+        this(1024);
+    }
+
+    public OrderStore(int expectedOrders) {
+        int capacity = Math.max(expectedOrders, 16);
+        amounts = new double[capacity];
+        amountMinors = new long[capacity];
+        scales = new byte[capacity];
+        statuses = new byte[capacity];
+        versions = new int[capacity];
+        ids = new long[capacity];
+        slots = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+    }
+
+    // saving an id that is already stored replaces that row
+    @Override
+    public synchronized void save(Order order) {
+        int row = rowOf(order.getOrderId());
+        if (row < 0) {
+            row = addRow(order.getOrderId());
+        }
+        amounts[row] = order.getAmount();
+        amountMinors[row] = order.getAmountMinor();
+        scales[row] = (byte) order.getScale();
+        writeStatus(row, order.getStatus(), order.getVersion());
+    }
+
+    // one lock for the whole batch
+    @Override
+    public synchronized void saveAll(Collection<Order> orders) {
+        for (Order order : orders) {
+            save(order);
+        }
+    }
+
+    @Override
+    public Optional<Order> findById(String orderId) {
+        int row = rowOf(orderId);
+        return row < 0 ? Optional.empty() : Optional.of(new View(this, row, orderId));
+    }
+
+    @Override
+    public synchronized void update(Order order) {
+        int row = rowOf(order.getOrderId());
+        if (row < 0) {
+            throw new IllegalArgumentException("Order not found");
+        }
+        writeStatus(row, order.getStatus(), order.getVersion());
+    }
+
+    @Override
+    public synchronized boolean compareAndUpdate(Order order, int expectedVersion) {
+        int row = rowOf(order.getOrderId());
+        if (row < 0 || versions[row] != expectedVersion) {
+            return false;
+        }
+        writeStatus(row, order.getStatus(), order.getVersion());
+        return true;
+    }
+
+    @Override
+    public boolean exists(String orderId) {
+        return rowOf(orderId) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Order get(int row) {
+        checkRow(row);
+        return new View(this, row, null);
+    }
+
+    public double amountAt(int row) {
+        checkRow(row);
+        return amounts[row];
+    }
+
+    public OrderStatus statusAt(int row) {
+        checkRow(row);
+        return STATUSES[statuses[row]];
+    }
+
+    public String orderIdAt(int row) {
+        checkRow(row);
+        long id = ids[row];
+        if (id >= 0) {
+            return Long.toString(id);
+        }
+        return textIds[(int) (-id - 1)];
+    }
+
+    public int versionAt(int row) {
+        checkRow(row);
+        return (int) VERSIONS.getAcquire(versions, row);
+    }
+
+    // A copy of the amount and status columns at one point in time. Writes wait while it is taken,
+    // so a scan over it never sees half of a change, and it costs one array copy per column
+    synchronized Columns columns() {
+        return new Columns(Arrays.copyOf(amounts, size), Arrays.copyOf(statuses, size));
+    }
+
+    // statuses hold the ordinals
+    static final class Columns {
+        final double[] amounts;
+        final byte[] statuses;
+
+        private Columns(double[] amounts, byte[] statuses) {
+            this.amounts = amounts;
+            this.statuses = statuses;
+        }
+    }
+
+    // a plain setStatus() on a view keeps the version, like it does on a plain Order
+    private synchronized void setStatus(int row, OrderStatus status) {
+        statuses[row] = (byte) status.ordinal();
+    }
+
+    private void writeStatus(int row, OrderStatus status, int version) {
+        statuses[row] = (byte) status.ordinal();
+        VERSIONS.setRelease(versions, row, version);
+    }
+
+    private int rowOf(String orderId) {
+        long numericId = parseNumericId(orderId);
+        // reading size first makes every row below it visible, rows added after that are skipped
+        int visibleRows = size;
+        if (numericId < 0) {
+            Integer row = textRows.get(orderId);
+            return row == null || row >= visibleRows ? -1 : row;
+        }
+        int[] table = slots;
+        long[] idColumn = ids;
+        int mask = table.length - 1;
+        for (int slot = hash(numericId) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (entry <= visibleRows && idColumn[entry - 1] == numericId) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private int addRow(String orderId) {
+        if (size == amounts.length) {
+            grow();
+        }
+        int row = size;
+        long numericId = parseNumericId(orderId);
+        if (numericId >= 0) {
+            ids[row] = numericId;
+            insertSlot(slots, numericId, row);
+        } else {
+            if (textIdCount == textIds.length) {
+                textIds = Arrays.copyOf(textIds, textIdCount * 2);
+            }
+            textIds[textIdCount] = orderId;
+            ids[row] = -(++textIdCount);
+            textRows.put(orderId, row);
+        }
+        size = row + 1;
+        return row;
+    }
+
+    private static void insertSlot(int[] table, long numericId, int row) {
+        int mask = table.length - 1;
+        int slot = hash(numericId) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = row + 1;
+    }
+
+    // new arrays are filled completely before they are published
+    private void grow() {
+        int capacity = amounts.length * 2;
+        long[] newIds = Arrays.copyOf(ids, capacity);
+        double[] newAmounts = Arrays.copyOf(amounts, capacity);
+        long[] newAmountMinors = Arrays.copyOf(amountMinors, capacity);
+        byte[] newScales = Arrays.copyOf(scales, capacity);
+        byte[] newStatuses = Arrays.copyOf(statuses, capacity);
+        int[] newVersions = Arrays.copyOf(versions, capacity);
+        int[] newSlots = new int[slots.length * 2];
+        for (int row = 0; row < size; row++) {
+            if (newIds[row] >= 0) {
+                insertSlot(newSlots, newIds[row], row);
+            }
+        }
+        ids = newIds;
+        amounts = newAmounts;
+        amountMinors = newAmountMinors;
+        scales = newScales;
+        statuses = newStatuses;
+        versions = newVersions;
+        slots = newSlots;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+        }
+    }
+
+    // only canonical numbers are stored as a long ("007" must come back as "007")
+    private static long parseNumericId(String orderId) {
+        int length = orderId.length();
+        if (length == 0 || length > 18 || (length > 1 && orderId.charAt(0) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = orderId.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int hash(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // flyweight Order: every getter reads the columns of its row, the inherited fields stay unused.
+    // setStatus() writes straight through to the store
+    private static final class View extends Order {
+        private final OrderStore store;
+        private final int row;
+        private String orderId;
+
+        private View(OrderStore store, int row, String orderId) {
+            super(orderId, 0);
+            this.store = store;
+            this.row = row;
+            this.orderId = orderId;
+        }
+
+        @Override
+        public String getOrderId() {
+            if (orderId == null) {
+                orderId = store.orderIdAt(row);
+            }
+            return orderId;
+        }
+
+        @Override
+        public double getAmount() {
+            return store.amounts[row];
+        }
+
+        @Override
+        public long getAmountMinor() {
+            return store.amountMinors[row];
+        }
+
+        @Override
+        public int getScale() {
+            return store.scales[row];
+        }
+
+        @Override
+        public boolean hasExactAmount() {
+            return getScale() >= 0;
+        }
+
+        @Override
+        public OrderStatus getStatus() {
+            return STATUSES[store.statuses[row]];
+        }
+
+        @Override
+        public int getVersion() {
+            return (int) VERSIONS.getAcquire(store.versions, row);
+        }
+
+        @Override
+        public void setStatus(OrderStatus status) {
+            store.setStatus(row, status != null ? status : OrderStatus.CREATED);
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.sda;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// Partitions orders over several shard repositories by a consistent hash of the order id.
+//
+// - every shard owns virtualNodes points on a 64 bit hash ring, an order belongs to the shard
+//   of the first point at or after the hash of its id, so shards get an even share of the orders
+// - addShard() / removeShard() only move the orders of the ring ranges that changed owner,
+//   about 1/(N+1) of them when a shard joins N others
+// - bulk calls (existsAll, saveAll, updateAll) are split by shard and the parts run in parallel
+//
+// Rebalancing is lazy: until rebalance() is called with the ids to move, every access also looks at the owners
+// of the earlier rings, and the copy with the highest version moves to the new owner (read repair).
+// A move deletes the copy it came from, so a stale copy can't win when the ring changes again.
+// Change the shards while no writes are in flight, a write routed by the old ring could land on the old owner.
+// The ring is an immutable holder swapped through a volatile field, routing takes no lock
+public class ShardedOrderRepository implements OrderRepository {
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+    private static final int STRIPES = 64;
+    private static final Executor DEFAULT_EXECUTOR = AsyncOrderService.newDefaultExecutor("order-shard-scatter");
+
+    private final int virtualNodes;
+    private final Executor executor;
+    // while an earlier ring is still consulted, a copy from the old owner and a write of the same order
+    // are serialized by the stripe of its id, so a stale copy never overwrites a newer write
+    private final Object[] stripes = new Object[STRIPES];
+    private volatile Ring ring;
+
+    public ShardedOrderRepository(Map<String, ? extends OrderRepository> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES, DEFAULT_EXECUTOR);
+    }
+
+    // the executor runs the parts of bulk calls, it stays owned by the caller
+    public ShardedOrderRepository(Map<String, ? extends OrderRepository> shards, int virtualNodes, Executor executor) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Virtual nodes must be positive");
+        }
+        this.virtualNodes = virtualNodes;
+        this.executor = executor;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        this.ring = new Ring(new LinkedHashMap<>(shards), virtualNodes, null);
+    }
+
+    @Override
+    public void save(Order order) {
+        Ring current = ring;
+        OrderRepository owner = current.shardFor(order.getOrderId());
+        if (current.previous == null) {
+            owner.save(order);
+            return;
+        }
+        synchronized (stripeOf(order.getOrderId())) {
+            owner.save(order);
+            // a copy left on an earlier owner must not outrank the saved order later
+            deleteCopies(current, order.getOrderId(), owner);
+        }
+    }
+
+    @Override
+    public Optional<Order> findById(String orderId) {
+        Ring current = ring;
+        OrderRepository owner = current.shardFor(orderId);
+        if (current.previous == null) {
+            return owner.findById(orderId);
+        }
+        synchronized (stripeOf(orderId)) {
+            return resolve(current, orderId, owner, owner.findById(orderId));
+        }
+    }
+
+    @Override
+    public void update(Order order) {
+        Ring current = ring;
+        OrderRepository owner = current.shardFor(order.getOrderId());
+        if (current.previous == null) {
+            owner.update(order);
+            return;
+        }
+        synchronized (stripeOf(order.getOrderId())) {
+            resolve(current, order.getOrderId(), owner, owner.findById(order.getOrderId()));
+            owner.update(order);
+        }
+    }
+
+    @Override
+    public boolean exists(String orderId) {
+        Ring current = ring;
+        OrderRepository owner = current.shardFor(orderId);
+        if (owner.exists(orderId)) {
+            return true;
+        }
+        return current.previous != null && findById(orderId).isPresent();
+    }
+
+    @Override
+    public boolean compareAndUpdate(Order order, int expectedVersion) {
+        Ring current = ring;
+        OrderRepository owner = current.shardFor(order.getOrderId());
+        if (current.previous == null) {
+            return owner.compareAndUpdate(order, expectedVersion);
+        }
+        synchronized (stripeOf(order.getOrderId())) {
+            resolve(current, order.getOrderId(), owner, owner.findById(order.getOrderId()));
+            return owner.compareAndUpdate(order, expectedVersion);
+        }
+    }
+
+    // While an earlier ring is consulted, the copies on its owners are deleted as well, so read repair can't
+    // bring the order back. A copy on an append-only earlier owner can't be deleted, its
+    // UnsupportedOperationException is passed on
+    @Override
+    public void delete(String orderId) {
+        Ring current = ring;
+        OrderRepository owner = current.shardFor(orderId);
+        if (current.previous == null) {
+            owner.delete(orderId);
+            return;
+        }
+        synchronized (stripeOf(orderId)) {
+            List<OrderRepository> holders = new ArrayList<>();
+            for (Ring earlier = current.previous; earlier != null; earlier = earlier.previous) {
+                OrderRepository previousOwner = earlier.shardFor(orderId);
+                if (previousOwner != owner && !holders.contains(previousOwner) && previousOwner.exists(orderId)) {
+                    holders.add(previousOwner);
+                }
+            }
+            owner.delete(orderId);
+            for (OrderRepository holder : holders) {
+                holder.delete(orderId);
+            }
+        }
+    }
+
+    @Override
+    public Set<String> existsAll(Collection<String> orderIds) {
+        Ring current = ring;
+        Set<String> existing = new HashSet<>();
+        for (Set<String> part : scatter(current, orderIds, Function.identity(), OrderRepository::existsAll)) {
+            existing.addAll(part);
+        }
+        if (current.previous != null && existing.size() < orderIds.size()) {
+            for (String orderId : orderIds) {
+                if (!existing.contains(orderId) && exists(orderId)) {
+                    existing.add(orderId);
+                }
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    public void saveAll(Collection<Order> orders) {
+        Ring current = ring;
+        if (current.previous != null) {
+            OrderRepository.super.saveAll(orders);
+            return;
+        }
+        scatter(current, orders, Order::getOrderId, (shard, part) -> {
+            shard.saveAll(part);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateAll(Collection<Order> orders) {
+        Ring current = ring;
+        if (current.previous != null) {
+            OrderRepository.super.updateAll(orders);
+            return;
+        }
+        scatter(current, orders, Order::getOrderId, (shard, part) -> {
+            shard.updateAll(part);
+            return null;
+        });
+    }
+
+    // orders stored before the shard joined are found through read repair until rebalance() moves them
+    public synchronized void addShard(String name, OrderRepository shard) {
+        if (ring.shards.containsKey(name)) {
+            throw new IllegalArgumentException("Shard already exists");
+        }
+        Map<String, OrderRepository> shards = new LinkedHashMap<>(ring.shards);
+        shards.put(name, shard);
+        ring = new Ring(shards, virtualNodes, ring);
+    }
+
+    // the removed shard is still read until rebalance() moved its orders away
+    public synchronized void removeShard(String name) {
+        if (!ring.shards.containsKey(name)) {
+            throw new IllegalArgumentException("Unknown shard");
+        }
+        if (ring.shards.size() == 1) {
+            throw new IllegalArgumentException("Cannot remove the last shard");
+        }
+        Map<String, OrderRepository> shards = new LinkedHashMap<>(ring.shards);
+        shards.remove(name);
+        ring = new Ring(shards, virtualNodes, ring);
+    }
+
+    // Moves the orders out of orderIds that changed owner since the ring was last rebalanced,
+    // then stops consulting the earlier rings. orderIds must cover every stored order, or the
+    // ones left out are no longer found. Returns the number of orders moved
+    public synchronized int rebalance(Collection<String> orderIds) {
+        Ring current = ring;
+        if (current.previous == null) {
+            return 0;
+        }
+        int moved = 0;
+        for (String orderId : orderIds) {
+            OrderRepository owner = current.shardFor(orderId);
+            synchronized (stripeOf(orderId)) {
+                Optional<Order> stored = owner.findById(orderId);
+                if (resolve(current, orderId, owner, stored) != stored) {
+                    moved++;
+                }
+            }
+        }
+        ring = new Ring(current.shards, virtualNodes, null);
+        return moved;
+    }
+
+    public String shardOf(String orderId) {
+        return ring.nameFor(orderId);
+    }
+
+    public Set<String> shardNames() {
+        return ring.shards.keySet();
+    }
+
+    // The copy with the highest version among stored (what the current owner has) and the owners of the earlier
+    // rings. A newer copy found elsewhere is saved to the owner, and every copy elsewhere is deleted.
+    // Returns stored itself when it is the newest, on a tie the current owner wins
+    private static Optional<Order> resolve(Ring current, String orderId, OrderRepository owner, Optional<Order> stored) {
+        Optional<Order> newest = stored;
+        boolean copiedElsewhere = false;
+        for (Ring earlier = current.previous; earlier != null; earlier = earlier.previous) {
+            OrderRepository previousOwner = earlier.shardFor(orderId);
+            if (previousOwner == owner) {
+                continue;
+            }
+            Optional<Order> copy = previousOwner.findById(orderId);
+            if (copy.isPresent()) {
+                copiedElsewhere = true;
+                if (newest.isEmpty() || copy.get().getVersion() > newest.get().getVersion()) {
+                    newest = copy;
+                }
+            }
+        }
+        if (copiedElsewhere) {
+            if (newest != stored) {
+                owner.save(newest.get());
+            }
+            deleteCopies(current, orderId, owner);
+        }
+        return newest;
+    }
+
+    private static void deleteCopies(Ring current, String orderId, OrderRepository owner) {
+        for (Ring earlier = current.previous; earlier != null; earlier = earlier.previous) {
+            OrderRepository previousOwner = earlier.shardFor(orderId);
+            if (previousOwner != owner) {
+                try {
+                    previousOwner.delete(orderId);
+                } catch (UnsupportedOperationException e) {
+                    // an append-only shard keeps its copy, resolve() still prefers the higher version
+                }
+            }
+        }
+    }
+
+    // Calls every shard that got part of the items with its part, in parallel.
+    // The calling thread takes one part itself, so a batch that falls on one shard never changes threads
+    private <E, R> List<R> scatter(Ring current, Collection<E> items, Function<E, String> idOf,
+                                   BiFunction<OrderRepository, List<E>, R> call) {
+        // by shard index, null for a shard without items
+        List<List<E>> parts = new ArrayList<>(Collections.nCopies(current.owners.length, null));
+        int last = -1;
+        for (E item : items) {
+            int index = current.indexFor(idOf.apply(item));
+            if (parts.get(index) == null) {
+                parts.set(index, new ArrayList<>());
+            }
+            parts.get(index).add(item);
+            last = index;
+        }
+        List<CompletableFuture<R>> calls = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            if (parts.get(i) != null && i != last) {
+                OrderRepository shard = current.owners[i];
+                List<E> part = parts.get(i);
+                calls.add(CompletableFuture.supplyAsync(() -> call.apply(shard, part), executor));
+            }
+        }
+        List<R> results = new ArrayList<>(calls.size() + 1);
+        if (last >= 0) {
+            results.add(call.apply(current.owners[last], parts.get(last)));
+        }
+        for (CompletableFuture<R> pending : calls) {
+            try {
+                results.add(pending.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    private Object stripeOf(String orderId) {
+        int hash = orderId.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    // FNV-1a over the chars, then the murmur3 finalizer so close ids spread over the whole ring
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static final class Ring {
+        private final Map<String, OrderRepository> shards;
+        private final long[] points; // sorted
+        private final int[] pointOwners; // index into owners
+        private final OrderRepository[] owners;
+        private final String[] names;
+        private final Ring previous; // the ring before the last change, until rebalance()
+
+        private Ring(Map<String, OrderRepository> shards, int virtualNodes, Ring previous) {
+            this.shards = shards;
+            this.previous = previous;
+            this.owners = shards.values().toArray(new OrderRepository[0]);
+            this.names = shards.keySet().toArray(new String[0]);
+            long[][] entries = new long[names.length * virtualNodes][];
+            for (int shard = 0; shard < names.length; shard++) {
+                for (int node = 0; node < virtualNodes; node++) {
+                    // a point depends only on its shard's name, so the other shards keep theirs
+                    entries[shard * virtualNodes + node] = new long[]{hash(names[shard] + "#" + node), shard};
+                }
+            }
+            Arrays.sort(entries, Comparator.comparingLong(entry -> entry[0]));
+            this.points = new long[entries.length];
+            this.pointOwners = new int[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                points[i] = entries[i][0];
+                pointOwners[i] = (int) entries[i][1];
+            }
+        }
+
+        private int indexFor(String orderId) {
+            int point = Arrays.binarySearch(points, hash(orderId));
+            if (point < 0) {
+                point = -point - 1;
+            }
+            return pointOwners[point == points.length ? 0 : point];
+        }
+
+        private OrderRepository shardFor(String orderId) {
+            return owners[indexFor(orderId)];
+        }
+
+        private String nameFor(String orderId) {
+            return names[indexFor(orderId)];
+        }
+    }
+}
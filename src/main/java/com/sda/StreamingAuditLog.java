@@ -0,0 +1,656 @@
+package com.sda;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// AuditStore that streams entries to disk, for services that must keep their audit trail
+// but can't hold all of it in the heap.
+//
+// - entries are written as AuditRecordCodec records to segment files audit-00000001.log,
+//   audit-00000002.log, ... in the given directory, every segment is a self-contained record stream
+// - group commit: entries collect in a fixed size buffer, which is written and forced to disk in one go
+//   when it is full or its oldest entry is commitInterval old (measured on the entries' own timestamps).
+//   A daemon flusher thread commits the buffer once it has waited commitInterval of wall clock time,
+//   so the last entries before a quiet period don't wait for the next append.
+//   A failed write keeps the bytes that didn't reach the file buffered, they are written again by the next commit
+// - rotation: a new segment is started when the current one would grow over maxSegmentBytes,
+//   or when its first entry is rotateAfter old
+// - retention deletes whole segments, and skips the old records at the start of the first one kept
+// - trail(): every block of 4096 records keeps a Bloom filter of its order ids, its time range and
+//   a decoder positioned at its first record. A lookup only reads the blocks that may hold the order
+//
+// The heap holds the commit buffer, a few numbers per segment and the block filters, about 1.3 bytes
+// per entry against the ~15 bytes the entry takes on disk. entries() reads lazily from the segments and
+// the buffer. Segments found in the directory on startup are read as well, their blocks are rebuilt while
+// they are scanned, new entries always go to a new segment.
+// Thread safe, writes are serialized
+public class StreamingAuditLog implements AuditStore, AutoCloseable {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("audit-(\\d+)\\.log");
+    private static final long DEFAULT_MAX_SEGMENT_BYTES = 64 * 1024 * 1024;
+    private static final Duration DEFAULT_ROTATE_AFTER = Duration.ofHours(1);
+    private static final int DEFAULT_COMMIT_BYTES = 64 * 1024;
+    private static final Duration DEFAULT_COMMIT_INTERVAL = Duration.ofMillis(100);
+    private static final int BLOCK_ENTRIES = 4096;
+    private static final int FILTER_BITS = BLOCK_ENTRIES * 10;
+    private static final int FILTER_HASHES = 5;
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final long rotateAfterMillis;
+    private final long commitIntervalMillis;
+    private final ScheduledExecutorService flusher;
+
+    // oldest first, the last one is being written
+    private final ArrayDeque<SegmentFile> segments = new ArrayDeque<>();
+    private final int commitBytes;
+    // the entries not committed yet: after a failed write, the bytes that didn't reach the file
+    private ByteBuffer pending;
+    private final AuditRecordCodec.Encoder encoder = new AuditRecordCodec.Encoder();
+    private int pendingEntries;
+    private long oldestPending;
+    private long pendingSinceNanos; // System.nanoTime() when the oldest buffered entry was added
+    private long lastTimestamp = Long.MIN_VALUE;
+    // entries older than this were removed, also in a block that is only partly kept
+    private long retainedFrom = Long.MIN_VALUE;
+    private FileChannel channel;
+    private IOException flushFailure; // of the flusher, reported by the next append or flush()
+
+    public StreamingAuditLog(Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_ROTATE_AFTER, DEFAULT_COMMIT_BYTES, DEFAULT_COMMIT_INTERVAL);
+    }
+
+    public StreamingAuditLog(Path directory, long maxSegmentBytes, Duration rotateAfter,
+                             int commitBytes, Duration commitInterval) throws IOException {
+        if (maxSegmentBytes < 1 || commitBytes < 1) {
+            throw new IllegalArgumentException("Segment and commit sizes must be positive");
+        }
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.rotateAfterMillis = rotateAfter.toMillis();
+        this.commitIntervalMillis = commitInterval.toMillis();
+        this.commitBytes = commitBytes;
+        this.pending = ByteBuffer.allocate(commitBytes);
+
+        Files.createDirectories(directory);
+        for (Path file : existingSegments()) {
+            SegmentFile segment = SegmentFile.scan(file);
+            segments.add(segment);
+            if (segment.entries > 0) {
+                lastTimestamp = Math.max(lastTimestamp, segment.lastTimestamp);
+            }
+        }
+        openSegment(segments.isEmpty() ? 1 : segments.getLast().sequence + 1);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "audit-log-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // a clock that jumps backwards must not break the ordering,
+    // so such an entry gets the timestamp of the previous one
+    @Override
+    public synchronized void append(long epochMillis, String timestampLabel, String action, String orderId) {
+        if (channel == null) {
+            throw new IllegalStateException("Audit log is closed");
+        }
+        long timestamp = Math.max(epochMillis, lastTimestamp);
+        try {
+            reportFlushFailure();
+            SegmentFile segment = segments.getLast();
+            int size = encoder.sizeOf(timestamp, timestampLabel, action, orderId);
+            long segmentBytes = segment.length + pending.position();
+            boolean full = segmentBytes > 0 && segmentBytes + size > maxSegmentBytes;
+            boolean old = segment.entries + pendingEntries > 0 && timestamp - segment.firstTimestamp >= rotateAfterMillis;
+            if (full || old) {
+                commit();
+                channel.close();
+                openSegment(segment.sequence + 1);
+                segment = segments.getLast();
+            }
+            if (segment.entries + pendingEntries == 0) {
+                segment.firstTimestamp = timestamp;
+            }
+            Block block = segment.blocks.isEmpty() ? null : segment.blocks.get(segment.blocks.size() - 1);
+            if (block == null || block.count == BLOCK_ENTRIES) {
+                block = new Block(segment.length + pending.position(), encoder.checkpoint());
+                segment.blocks.add(block);
+            }
+            if (!encoder.encode(pending, timestamp, timestampLabel, action, orderId)) {
+                commit();
+                if (!encoder.encode(pending, timestamp, timestampLabel, action, orderId)) {
+                    // a record that doesn't fit the buffer at all is committed on its own, from a buffer of its size
+                    pending = ByteBuffer.allocate(encoder.sizeOf(timestamp, timestampLabel, action, orderId));
+                    encoder.encode(pending, timestamp, timestampLabel, action, orderId);
+                }
+            }
+            block.add(orderId, timestamp);
+            if (pendingEntries++ == 0) {
+                oldestPending = timestamp;
+                pendingSinceNanos = System.nanoTime();
+            }
+            lastTimestamp = timestamp;
+            if (timestamp - oldestPending >= commitIntervalMillis || pending.capacity() > commitBytes) {
+                commit();
+            } else if (pendingEntries == 1) {
+                // one timer per group of buffered entries
+                flusher.schedule(this::commitIfDue, commitIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // writes and forces the buffered entries to disk now
+    public synchronized void flush() {
+        try {
+            reportFlushFailure();
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        long size = pendingEntries;
+        for (SegmentFile segment : segments) {
+            size += segment.entries;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    // copies every entry into one list, prefer entries() for a large log
+    @Override
+    public List<String> renderAll() {
+        List<String> entries = new ArrayList<>(size());
+        try (Stream<String> stream = entries()) {
+            stream.forEach(entries::add);
+        }
+        return entries;
+    }
+
+    // Lazy view of the entries present when it is called, oldest first.
+    // Segments are opened one at a time while the stream is consumed, close the stream when you stop early
+    @Override
+    public Stream<String> entries() {
+        List<SegmentRange> ranges = new ArrayList<>();
+        synchronized (this) {
+            for (SegmentFile segment : segments) {
+                // the buffered records continue the stream of the segment being written
+                byte[] buffered = segment == segments.getLast() ? Arrays.copyOf(pending.array(), pending.position()) : null;
+                if (segment.entries > 0 || pendingEntries > 0 && buffered != null) {
+                    ranges.add(new SegmentRange(segment.path, segment.start, segment.length, segment.startState.copy(), buffered));
+                }
+            }
+        }
+        EntryIterator iterator = new EntryIterator(ranges);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    // Reads the blocks that may hold the order, outside the lock. O(blocks of the log) to check the filters,
+    // plus one block read per block the order was audited in
+    @Override
+    public List<String> trail(String orderId, long fromMillis, long toMillis) {
+        long hash = hash(orderId);
+        List<SegmentRange> ranges = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        long from;
+        synchronized (this) {
+            from = Math.max(fromMillis, retainedFrom);
+            byte[] buffered = null;
+            for (SegmentFile segment : segments) {
+                for (Block block : segment.blocks) {
+                    if (block.lastTimestamp < from || block.firstTimestamp >= toMillis || !block.mightContain(hash)) {
+                        continue;
+                    }
+                    if (segment != segments.getLast()) {
+                        ranges.add(new SegmentRange(segment.path, block.offset, segment.length, block.start.copy(), null));
+                    } else {
+                        if (buffered == null) {
+                            buffered = Arrays.copyOf(pending.array(), pending.position());
+                        }
+                        // a block that starts in the buffer is read from there
+                        long inBuffer = Math.max(0, block.offset - segment.length);
+                        ranges.add(new SegmentRange(segment.path, Math.min(block.offset, segment.length), segment.length,
+                                block.start.copy(), Arrays.copyOfRange(buffered, (int) inBuffer, buffered.length)));
+                    }
+                    counts.add(block.count);
+                }
+            }
+        }
+
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            try (RecordReader reader = new RecordReader(ranges.get(i))) {
+                for (int read = 0; read < counts.get(i) && reader.next(); read++) {
+                    AuditRecordCodec.Decoder decoder = reader.decoder;
+                    if (decoder.timestamp() >= from && decoder.timestamp() < toMillis && decoder.orderIdEquals(orderId)) {
+                        entries.add(decoder.render());
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // deleted by retention after the blocks were picked
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return entries;
+    }
+
+    // Drops every entry older than the cutoff: segments that are entirely older are deleted,
+    // the first segment kept is scanned up to the first entry to keep. Writers wait meanwhile
+    // Returns number of deleted entries
+    @Override
+    public synchronized int removeOlderThan(long cutoffMillis) {
+        try {
+            commit();
+            retainedFrom = Math.max(retainedFrom, cutoffMillis);
+            int removed = 0;
+            while (!segments.isEmpty()) {
+                SegmentFile segment = segments.getFirst();
+                if (segment.entries > 0 && segment.firstTimestamp >= cutoffMillis) {
+                    break;
+                }
+                // the segment being written is never deleted
+                if (segment == segments.getLast() || (segment.entries > 0 && segment.lastTimestamp >= cutoffMillis)) {
+                    if (segment.entries > 0) {
+                        removed += segment.skipOlderThan(cutoffMillis);
+                    }
+                    break;
+                }
+                removed += segment.entries;
+                Files.deleteIfExists(segment.path);
+                segments.removeFirst();
+            }
+            return removed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flusher.shutdownNow();
+        if (channel != null) {
+            commit();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // Runs on the flusher. The buffer may have been committed meanwhile and hold a newer group,
+    // which has its own timer. A failed write leaves the entries buffered, the next append or flush() reports it
+    // and a later commit writes them again
+    private synchronized void commitIfDue() {
+        if (channel == null || pendingEntries == 0
+                || System.nanoTime() - pendingSinceNanos < TimeUnit.MILLISECONDS.toNanos(commitIntervalMillis)) {
+            return;
+        }
+        try {
+            commit();
+        } catch (IOException e) {
+            flushFailure = e;
+        }
+    }
+
+    private void reportFlushFailure() throws IOException {
+        IOException failure = flushFailure;
+        if (failure != null) {
+            flushFailure = null;
+            throw failure;
+        }
+    }
+
+    // When the write fails, the bytes that reached the file count as committed bytes of the segment and
+    // the rest stays buffered, so readers still see every entry once and a retry continues where it stopped.
+    // The entries are counted as committed once all their bytes are forced to disk
+    private void commit() throws IOException {
+        if (pendingEntries == 0) {
+            return;
+        }
+        SegmentFile segment = segments.getLast();
+        pending.flip();
+        int bytes = pending.remaining();
+        try {
+            writeFully(pending);
+        } catch (IOException e) {
+            segment.length += bytes - pending.remaining();
+            pending.compact();
+            throw e;
+        }
+        segment.length += bytes;
+        segment.entries += pendingEntries;
+        segment.lastTimestamp = lastTimestamp;
+        pendingEntries = 0;
+        if (pending.capacity() > commitBytes) {
+            pending = ByteBuffer.allocate(commitBytes);
+        } else {
+            pending.clear();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    private void openSegment(long sequence) throws IOException {
+        Path file = directory.resolve(String.format("audit-%08d.log", sequence));
+        channel = openChannel(file);
+        segments.add(new SegmentFile(file, sequence));
+        encoder.reset();
+    }
+
+    // the channel a new segment is written through, tests hand in one that fails
+    FileChannel openChannel(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private List<Path> existingSegments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.filter(file -> SEGMENT_NAME.matcher(file.getFileName().toString()).matches()).forEach(files::add);
+        }
+        files.sort((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)));
+        return files;
+    }
+
+    private static long sequenceOf(Path file) {
+        Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    // guarded by the log's monitor
+    private static final class SegmentFile {
+        private final Path path;
+        private final long sequence;
+        private long start;  // offset of the first live record, retention moves it forward
+        private long length; // committed bytes
+        private int entries; // live committed records
+        private long firstTimestamp;
+        private long lastTimestamp;
+        // decoder positioned at start, records can only be read in order from there
+        private AuditRecordCodec.Decoder startState = new AuditRecordCodec.Decoder();
+        private final List<Block> blocks = new ArrayList<>();
+
+        private SegmentFile(Path path, long sequence) {
+            this.path = path;
+            this.sequence = sequence;
+        }
+
+        // a record at the end that was cut off by a crash is ignored
+        private static SegmentFile scan(Path file) throws IOException {
+            SegmentFile segment = new SegmentFile(file, sequenceOf(file));
+            try (RecordReader reader = new RecordReader(new SegmentRange(file, 0, Long.MAX_VALUE, new AuditRecordCodec.Decoder(), null))) {
+                Block block = null;
+                while (true) {
+                    if (block == null || block.count == BLOCK_ENTRIES) {
+                        block = new Block(reader.offset(), reader.decoder.copy());
+                    }
+                    if (!reader.next()) {
+                        break;
+                    }
+                    long timestamp = reader.decoder.timestamp();
+                    if (block.count == 0) {
+                        segment.blocks.add(block);
+                    }
+                    block.add(reader.decoder.orderId(), timestamp);
+                    if (segment.entries++ == 0) {
+                        segment.firstTimestamp = timestamp;
+                    }
+                    segment.lastTimestamp = timestamp;
+                    segment.length = reader.offset();
+                }
+            }
+            return segment;
+        }
+
+        private int skipOlderThan(long cutoffMillis) throws IOException {
+            int skipped = 0;
+            try (RecordReader reader = new RecordReader(new SegmentRange(path, start, length, startState.copy(), null))) {
+                while (reader.next()) {
+                    long timestamp = reader.decoder.timestamp();
+                    if (timestamp >= cutoffMillis) {
+                        firstTimestamp = timestamp;
+                        startState = reader.decoder.copyBeforeLast();
+                        break;
+                    }
+                    start = reader.offset();
+                    skipped++;
+                }
+                if (skipped == entries) {
+                    startState = reader.decoder.copy();
+                }
+            }
+            entries -= skipped;
+            // blocks that only hold skipped records are no longer read
+            while (blocks.size() > 1 && blocks.get(1).offset <= start) {
+                blocks.remove(0);
+            }
+            return skipped;
+        }
+    }
+
+    // Up to BLOCK_ENTRIES consecutive records of a segment, guarded by the log's monitor
+    private static final class Block {
+        private final long offset; // of the first record, may still be in the commit buffer
+        private final AuditRecordCodec.Decoder start;
+        private final long[] filter = new long[FILTER_BITS / 64];
+        private int count;
+        private long firstTimestamp;
+        private long lastTimestamp;
+
+        private Block(long offset, AuditRecordCodec.Decoder start) {
+            this.offset = offset;
+            this.start = start;
+        }
+
+        private void add(String orderId, long timestamp) {
+            long hash = hash(orderId);
+            for (int i = 0; i < FILTER_HASHES; i++) {
+                int bit = bitOf(hash, i);
+                filter[bit >>> 6] |= 1L << bit;
+            }
+            if (count++ == 0) {
+                firstTimestamp = timestamp;
+            }
+            lastTimestamp = timestamp;
+        }
+
+        private boolean mightContain(long hash) {
+            for (int i = 0; i < FILTER_HASHES; i++) {
+                int bit = bitOf(hash, i);
+                if ((filter[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // double hashing: the two halves of the hash give the probes h1 + i * h2
+        private static int bitOf(long hash, int i) {
+            return (int) Math.floorMod((hash >>> 32) + i * (hash & 0xFFFFFFFFL), (long) FILTER_BITS);
+        }
+    }
+
+    // String.hashCode() spread over 64 bits by the murmur3 finalizer
+    private static long hash(String orderId) {
+        long hash = orderId.hashCode() * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    // records of one segment in [start, end) of its file, followed by the records in buffered
+    private static final class SegmentRange {
+        private final Path path;
+        private final long start;
+        private final long end;
+        private final AuditRecordCodec.Decoder decoder;
+        private final byte[] buffered;
+
+        private SegmentRange(Path path, long start, long end, AuditRecordCodec.Decoder decoder, byte[] buffered) {
+            this.path = path;
+            this.start = start;
+            this.end = end;
+            this.decoder = decoder;
+            this.buffered = buffered;
+        }
+    }
+
+    // reads a range in chunks, a record that spans two chunks is decoded once the second one is read
+    private static final class RecordReader implements Closeable {
+        private final FileChannel channel;
+        private final long end;
+        private final AuditRecordCodec.Decoder decoder;
+        private byte[] buffered;
+        private long position;
+        private ByteBuffer buffer = ByteBuffer.allocate(8192).limit(0);
+
+        private RecordReader(SegmentRange range) throws IOException {
+            this.decoder = range.decoder;
+            this.position = range.start;
+            this.end = range.end;
+            this.buffered = range.buffered;
+            this.channel = range.start < range.end ? FileChannel.open(range.path, StandardOpenOption.READ) : null;
+        }
+
+        private boolean next() throws IOException {
+            while (!decoder.next(buffer)) {
+                if (!fill()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // file offset of the next record
+        private long offset() {
+            return position - buffer.remaining();
+        }
+
+        private boolean fill() throws IOException {
+            buffer.compact();
+            if (channel != null && position < end) {
+                if (!buffer.hasRemaining()) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                }
+                int read = channel.read(buffer.limit(buffer.position() + (int) Math.min(buffer.remaining(), end - position)), position);
+                buffer.limit(buffer.capacity()).flip();
+                if (read > 0) {
+                    position += read;
+                    return true;
+                }
+            } else {
+                buffer.flip();
+            }
+            if (buffered != null) {
+                // appended as if it were the rest of the file
+                ByteBuffer joined = ByteBuffer.allocate(buffer.remaining() + buffered.length);
+                buffer = joined.put(buffer).put(buffered).flip();
+                buffered = null;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    private static final class EntryIterator implements Iterator<String> {
+        private final Iterator<SegmentRange> ranges;
+        private RecordReader reader;
+        private String next;
+
+        private EntryIterator(List<SegmentRange> ranges) {
+            this.ranges = ranges.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null) {
+                    if (reader == null && !openNext()) {
+                        return false;
+                    }
+                    if (reader.next()) {
+                        next = reader.decoder.render();
+                    } else {
+                        reader.close();
+                        reader = null;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String entry = next;
+            next = null;
+            return entry;
+        }
+
+        private boolean openNext() throws IOException {
+            while (ranges.hasNext()) {
+                try {
+                    reader = new RecordReader(ranges.next());
+                    return true;
+                } catch (NoSuchFileException e) {
+                    // deleted by retention after the stream was created
+                }
+            }
+            return false;
+        }
+
+        private void close() {
+            try {
+                if (reader != null) {
+                    reader.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
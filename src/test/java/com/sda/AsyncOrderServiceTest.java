@@ -0,0 +1,125 @@
+package com.sda;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("AsyncOrderService Test - Futures, limits and backpressure")
+class AsyncOrderServiceTest {
+
+    private final CountDownLatch repositoryOpen = new CountDownLatch(1);
+    private InMemoryOrderRepository repository;
+    private AsyncOrderService asyncService; // SUT
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryOrderRepository();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repositoryOpen.countDown();
+        asyncService.close();
+    }
+
+    @Test
+    @DisplayName("Should complete with the created and the confirmed order")
+    void shouldCompleteWithOrders() {
+        // given
+        asyncService = new AsyncOrderService(new OrderService(repository, new OrderCalculatorV2()), 8, Duration.ZERO);
+
+        // when
+        Order confirmed = asyncService.createOrder("order1", 100, 2, 0.1)
+                .thenCompose(created -> asyncService.confirmOrder(created.getOrderId()))
+                .join();
+
+        // then
+        assertThat(confirmed)
+                .extracting(Order::getOrderId, Order::getAmount, Order::getStatus)
+                .containsExactly("order1", 220.0, OrderStatus.CONFIRMED);
+        assertThat(repository.findById("order1")).containsSame(confirmed);
+    }
+
+    @Test
+    @DisplayName("Should time async calls like the calls of the service")
+    void shouldRecordMetrics() {
+        // given
+        OrderMetrics metrics = new OrderMetrics();
+        asyncService = new AsyncOrderService(
+                new OrderService(repository, new OrderCalculatorV2(), null, metrics), 8, Duration.ZERO);
+        asyncService.createOrder("order1", 100, 2, 0.1).join();
+        asyncService.createOrder("order2", 100, 2, 0.1).join();
+
+        // when
+        asyncService.confirmOrder("order1").join();
+        asyncService.cancelOrder("order2").join();
+
+        // then
+        OrderMetrics.Snapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.get(OrderMetrics.Operation.CONFIRM_ORDER).getCount()).isEqualTo(1);
+        assertThat(snapshot.get(OrderMetrics.Operation.CANCEL_ORDER).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should fail the future instead of throwing at the caller")
+    void shouldFailTheFuture() {
+        // given
+        asyncService = new AsyncOrderService(new OrderService(repository, new OrderCalculatorV2()), 8, Duration.ZERO);
+
+        // when
+        CompletableFuture<Order> future = asyncService.cancelOrder("unknown");
+
+        // then
+        assertThat(future)
+                .failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(Exception.class)
+                .withRootCauseInstanceOf(IllegalArgumentException.class)
+                .withMessageContaining("Order not found");
+    }
+
+    @Test
+    @DisplayName("Should reject calls beyond the in-flight limit")
+    void shouldRejectBeyondLimit() throws Exception {
+        // given: a repository that blocks until the test opens it
+        CountDownLatch entered = new CountDownLatch(1);
+        InMemoryOrderRepository slowRepository = new InMemoryOrderRepository() {
+            @Override
+            public boolean exists(String orderId) {
+                entered.countDown();
+                try {
+                    repositoryOpen.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.exists(orderId);
+            }
+        };
+        asyncService = new AsyncOrderService(
+                new OrderService(slowRepository, new OrderCalculatorV2()), 1, Duration.ofMillis(10));
+        CompletableFuture<Order> first = asyncService.createOrder("order1", 100, 1, 0);
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // when
+        CompletableFuture<Order> second = asyncService.createOrder("order2", 100, 1, 0);
+
+        // then
+        assertThat(asyncService.inFlight()).isEqualTo(1);
+        assertThat(second)
+                .failsWithin(Duration.ZERO)
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(RejectedExecutionException.class);
+
+        repositoryOpen.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).getOrderId()).isEqualTo("order1");
+        assertThat(asyncService.inFlight()).isZero();
+    }
+}
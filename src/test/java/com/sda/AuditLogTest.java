@@ -0,0 +1,144 @@
+package com.sda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("AuditLog Test - Structured audit entries")
+class AuditLogTest {
+
+    private AuditLog auditLog; // SUT
+
+    @BeforeEach
+    void setUp() {
+        auditLog = new AuditLog();
+    }
+
+    @Test
+    @DisplayName("Should render entries in the legacy text format")
+    void shouldRenderEntriesInLegacyFormat() {
+        // given
+        auditLog.append(1_000L, "2025-02-01", "UPDATED", "123");
+
+        // when
+        String entry = auditLog.render(0);
+
+        // then
+        assertThat(entry).isEqualTo("[2025-02-01] Order 123: UPDATED");
+        assertThat(auditLog)
+                .extracting(log -> log.getTimestamp(0), log -> log.getAction(0), log -> log.getOrderId(0))
+                .containsExactly(1_000L, "UPDATED", "123");
+    }
+
+    @Test
+    @DisplayName("Should keep entries in insertion order while growing")
+    void shouldKeepInsertionOrderWhileGrowing() {
+        // given
+        for (int i = 0; i < 1_000; i++) {
+            auditLog.append(i, "2025-02-01", i % 2 == 0 ? "UPDATED" : "UPDATED_FAILED", String.valueOf(i));
+        }
+
+        // when
+        var entries = auditLog.renderAll();
+
+        // then
+        assertThat(entries).hasSize(1_000);
+        assertThat(entries.get(0)).isEqualTo("[2025-02-01] Order 0: UPDATED");
+        assertThat(entries.get(999)).isEqualTo("[2025-02-01] Order 999: UPDATED_FAILED");
+    }
+
+    @Test
+    @DisplayName("Should find the same trail with and without the trail index")
+    void shouldFindTrailWithoutIndex() {
+        // given
+        AuditLog unindexed = new AuditLog(false);
+        for (int i = 0; i < 10_000; i++) {
+            auditLog.append(i, "2025-02-01", i % 2 == 0 ? "UPDATED" : "UPDATED_FAILED", String.valueOf(i % 100));
+            unindexed.append(i, "2025-02-01", i % 2 == 0 ? "UPDATED" : "UPDATED_FAILED", String.valueOf(i % 100));
+        }
+        auditLog.removeOlderThan(5_000);
+        unindexed.removeOlderThan(5_000);
+
+        // when
+        var trail = unindexed.trail("42", 0, 9_000);
+
+        // then
+        assertThat(trail).hasSize(40).isEqualTo(auditLog.trail("42", 0, 9_000));
+        assertThat(trail.get(0)).isEqualTo("[2025-02-01] Order 42: UPDATED");
+    }
+
+    @Test
+    @DisplayName("Should remove entries older than the cutoff")
+    void shouldRemoveEntriesOlderThanCutoff() {
+        // given
+        auditLog.append(1L, "2025-02-01", "OLD", "1");
+        auditLog.append(2L, "2025-02-01", "OLD", "2");
+        auditLog.append(3L, "2025-02-01", "NEW", "3");
+
+        // when
+        int removed = auditLog.removeOlderThan(3L);
+
+        // then
+        assertThat(removed).isEqualTo(2);
+        assertThat(auditLog.renderAll()).containsExactly("[2025-02-01] Order 3: NEW");
+    }
+
+    @Test
+    @DisplayName("Should cut off whole segments and keep indexes consistent")
+    void shouldCutOffWholeSegments() {
+        // given
+        int total = AuditLog.SEGMENT_SIZE * 3 + 10;
+        for (int i = 0; i < total; i++) {
+            auditLog.append(i, "2025-02-01", "UPDATED", String.valueOf(i));
+        }
+        int cutoff = AuditLog.SEGMENT_SIZE + 5;
+
+        // when
+        int removed = auditLog.removeOlderThan(cutoff);
+
+        // then
+        assertThat(removed).isEqualTo(cutoff);
+        assertThat(auditLog.size()).isEqualTo(total - cutoff);
+        assertThat(auditLog.getOrderId(0)).isEqualTo(String.valueOf(cutoff));
+        assertThat(auditLog.getOrderId(auditLog.size() - 1)).isEqualTo(String.valueOf(total - 1));
+        assertThat(auditLog.getTimestamp(AuditLog.SEGMENT_SIZE)).isEqualTo(cutoff + AuditLog.SEGMENT_SIZE);
+    }
+
+    @Test
+    @DisplayName("Should keep appending after everything was removed")
+    void shouldKeepAppendingAfterEverythingWasRemoved() {
+        // given
+        auditLog.append(1L, "2025-02-01", "OLD", "1");
+        auditLog.removeOlderThan(Long.MAX_VALUE);
+
+        // when
+        auditLog.append(2L, "2025-02-01", "NEW", "2");
+
+        // then
+        assertThat(auditLog.renderAll()).containsExactly("[2025-02-01] Order 2: NEW");
+    }
+
+    @Test
+    @DisplayName("Should keep time order when the clock goes backwards")
+    void shouldKeepTimeOrderWhenClockGoesBackwards() {
+        // given
+        auditLog.append(10L, "2025-02-01", "FIRST", "1");
+
+        // when
+        auditLog.append(5L, "2025-02-01", "SECOND", "2");
+
+        // then
+        assertThat(auditLog.getTimestamp(1)).isEqualTo(10L);
+        assertThat(auditLog.removeOlderThan(10L)).isZero();
+    }
+
+    @Test
+    @DisplayName("Should reject out of range indexes")
+    void shouldRejectOutOfRangeIndexes() {
+        // when & then
+        assertThatThrownBy(() -> auditLog.render(0))
+                .isInstanceOf(IndexOutOfBoundsException.class);
+    }
+}
@@ -0,0 +1,119 @@
+package com.sda;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("AuditRecordCodec Test - Binary audit records")
+class AuditRecordCodecTest {
+
+    private final AuditRecordCodec.Encoder encoder = new AuditRecordCodec.Encoder();
+    private final AuditRecordCodec.Decoder decoder = new AuditRecordCodec.Decoder();
+    private final ByteBuffer buffer = ByteBuffer.allocate(256);
+
+    @Nested
+    @DisplayName("Round trip")
+    class RoundTripTests {
+
+        @Test
+        @DisplayName("Should decode the records that were encoded")
+        void shouldRoundTrip() {
+            // given
+            encoder.encode(buffer, 1_700_000_000_000L, "2024-01-01", "UPDATED", "order1");
+            encoder.encode(buffer, 1_700_000_000_005L, "2024-01-01", "UPDATED_FAILED", "zamówienie-ü");
+            encoder.encode(buffer, 1_700_086_400_000L, "2024-01-02", "UPDATED", "order3");
+            buffer.flip();
+
+            // when / then
+            assertThat(decoder.next(buffer)).isTrue();
+            assertThat(decoder.timestamp()).isEqualTo(1_700_000_000_000L);
+            assertThat(decoder.render()).isEqualTo("[2024-01-01] Order order1: UPDATED");
+            assertThat(decoder.next(buffer)).isTrue();
+            assertThat(decoder.timestamp()).isEqualTo(1_700_000_000_005L);
+            assertThat(decoder.orderId()).isEqualTo("zamówienie-ü");
+            assertThat(decoder.orderIdEquals("zamówienie-ü")).isTrue();
+            assertThat(decoder.action()).isEqualTo("UPDATED_FAILED");
+            assertThat(decoder.next(buffer)).isTrue();
+            assertThat(decoder.render()).isEqualTo("[2024-01-02] Order order3: UPDATED");
+            assertThat(decoder.orderIdEquals("order1")).isFalse();
+            assertThat(decoder.next(buffer)).isFalse();
+        }
+
+        @Test
+        @DisplayName("Should only spell out the label and action the first time")
+        void shouldKeepRepeatedRecordsSmall() {
+            // when
+            encoder.encode(buffer, 1_000, "2024-01-01", "UPDATED", "order1");
+            int first = buffer.position();
+            encoder.encode(buffer, 1_010, "2024-01-01", "UPDATED", "order2");
+
+            // then: header, one byte of delta, length and id
+            assertThat(buffer.position() - first).isEqualTo(1 + 1 + 1 + 6);
+            assertThat(encoder.sizeOf(1_020, "2024-01-01", "UPDATED", "order3")).isEqualTo(9);
+        }
+    }
+
+    @Nested
+    @DisplayName("Incomplete input")
+    class IncompleteInputTests {
+
+        @Test
+        @DisplayName("Should not write a record that doesn't fit")
+        void shouldRejectRecordThatDoesNotFit() {
+            // given
+            ByteBuffer small = ByteBuffer.allocate(8);
+
+            // when
+            boolean written = encoder.encode(small, 1_000, "2024-01-01", "UPDATED", "order1");
+
+            // then
+            assertThat(written).isFalse();
+            assertThat(small.position()).isZero();
+        }
+
+        @Test
+        @DisplayName("Should wait for the rest of a record that was cut off")
+        void shouldNotDecodeTruncatedRecord() {
+            // given
+            encoder.encode(buffer, 1_000, "2024-01-01", "UPDATED", "order1");
+            int length = buffer.position();
+            buffer.flip();
+
+            // when
+            buffer.limit(length - 1);
+            boolean truncated = decoder.next(buffer);
+            buffer.limit(length);
+
+            // then
+            assertThat(truncated).isFalse();
+            assertThat(buffer.position()).isZero();
+            assertThat(decoder.next(buffer)).isTrue();
+            assertThat(decoder.orderId()).isEqualTo("order1");
+        }
+
+        @Test
+        @DisplayName("Should resume decoding at the last record from a copy")
+        void shouldResumeFromCopy() {
+            // given
+            encoder.encode(buffer, 1_000, "2024-01-01", "UPDATED", "order1");
+            int second = buffer.position();
+            encoder.encode(buffer, 2_000, "2024-01-02", "UPDATED", "order2");
+            buffer.flip();
+            decoder.next(buffer);
+            decoder.next(buffer);
+
+            // when
+            AuditRecordCodec.Decoder resumed = decoder.copyBeforeLast();
+            buffer.position(second);
+
+            // then
+            assertThat(resumed.next(buffer)).isTrue();
+            assertThat(resumed.timestamp()).isEqualTo(2_000);
+            assertThat(resumed.render()).isEqualTo("[2024-01-02] Order order2: UPDATED");
+        }
+    }
+}
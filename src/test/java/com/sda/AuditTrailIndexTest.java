@@ -0,0 +1,54 @@
+package com.sda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("AuditTrailIndex Test - Audit trails grouped by order")
+class AuditTrailIndexTest {
+
+    private AuditTrailIndex index; // SUT
+
+    @BeforeEach
+    void setUp() {
+        index = new AuditTrailIndex();
+    }
+
+    @Test
+    @DisplayName("Should drop expired orders even when they were queried")
+    void shouldDropQueriedExpiredOrders() {
+        // given
+        for (int i = 0; i < 100; i++) {
+            index.add(String.valueOf(i), i, "2025-02-01", "UPDATED");
+        }
+        for (int i = 0; i < 50; i++) {
+            index.trail(String.valueOf(i), 0, Long.MAX_VALUE);
+        }
+
+        // when
+        index.removeOlderThan(50);
+
+        // then
+        assertThat(index.orderCount()).isEqualTo(50);
+        assertThat(index.trail("10", 0, Long.MAX_VALUE)).isEmpty();
+        assertThat(index.trail("60", 0, Long.MAX_VALUE)).containsExactly("[2025-02-01] Order 60: UPDATED");
+    }
+
+    @Test
+    @DisplayName("Should keep an order audited again after the cutoff")
+    void shouldKeepReauditedOrder() {
+        // given
+        index.add("1", 1, "2025-02-01", "UPDATED");
+        index.add("2", 2, "2025-02-01", "UPDATED");
+        index.add("1", 3, "2025-02-01", "CONFIRMED");
+
+        // when
+        index.removeOlderThan(3);
+
+        // then
+        assertThat(index.orderCount()).isEqualTo(1);
+        assertThat(index.trail("1", 0, Long.MAX_VALUE)).containsExactly("[2025-02-01] Order 1: CONFIRMED");
+    }
+}
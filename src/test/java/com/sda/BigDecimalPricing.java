@@ -0,0 +1,21 @@
+package com.sda;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Reference for MoneyCalculator: the same pricing rules written with BigDecimal
+public final class BigDecimalPricing {
+
+    private BigDecimalPricing() {
+    }
+
+    public static BigDecimal calculateTotal(BigDecimal itemPrice, int count, BigDecimal taxRate, BigDecimal discount,
+                                            BigDecimal discountThreshold, int scale, RoundingMode roundingMode) {
+        BigDecimal totalPrice = itemPrice.multiply(BigDecimal.valueOf(count));
+        if (totalPrice.compareTo(discountThreshold) > 0) {
+            totalPrice = totalPrice.subtract(discount);
+        }
+        totalPrice = totalPrice.multiply(BigDecimal.ONE.add(taxRate)).setScale(scale, roundingMode);
+        return totalPrice.max(BigDecimal.ZERO.setScale(scale));
+    }
+}
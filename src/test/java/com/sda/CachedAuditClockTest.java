@@ -0,0 +1,74 @@
+package com.sda;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("CachedAuditClock Test - Ticker backed audit timestamps")
+class CachedAuditClockTest {
+
+    private final CachedAuditClock clock = new CachedAuditClock(Duration.ofMillis(1), ZoneId.systemDefault()); // SUT
+
+    @AfterEach
+    void tearDown() {
+        clock.close();
+    }
+
+    @Test
+    @DisplayName("Should hand out increasing timestamps per thread close to the wall clock")
+    void shouldBeMonotonicPerThread() throws Exception {
+        // given
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> increasing = new ArrayList<>();
+
+        // when
+        for (int t = 0; t < 4; t++) {
+            increasing.add(pool.submit(() -> {
+                long previous = Long.MIN_VALUE;
+                for (int i = 0; i < 10_000; i++) {
+                    long now = clock.epochMicros();
+                    if (now <= previous) {
+                        return false;
+                    }
+                    previous = now;
+                }
+                return true;
+            }));
+        }
+        pool.shutdown();
+
+        // then
+        for (Future<Boolean> result : increasing) {
+            assertThat(result.get()).isTrue();
+        }
+        assertThat(clock.epochMicros() / 1000).isCloseTo(System.currentTimeMillis(), within(1_000L));
+    }
+
+    @Test
+    @DisplayName("Should label the current second in a format LocalDateTime can parse")
+    void shouldLabelCurrentSecond() {
+        // when
+        long millis = clock.epochMicros() / 1000;
+        String label = clock.currentLabel();
+
+        // then
+        LocalDateTime parsed = LocalDateTime.parse(label);
+        LocalDateTime expected = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        assertThat(parsed).isBetween(expected.minusSeconds(2), expected);
+        assertThat(label).isEqualTo(ManualAuditClock.labelOf(millis));
+        // cached until the second changes
+        assertThat(clock.currentLabel()).isSameAs(label);
+    }
+}
@@ -0,0 +1,193 @@
+package com.sda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("CachingOrderRepository Test - Read-through cache with admission")
+class CachingOrderRepositoryTest {
+
+    private InMemoryOrderRepository delegate;
+    private CachingOrderRepository cache; // SUT
+
+    @BeforeEach
+    void setUp() {
+        delegate = spy(new InMemoryOrderRepository());
+        cache = new CachingOrderRepository(delegate, 4);
+    }
+
+    @Nested
+    @DisplayName("Reads")
+    class ReadTests {
+
+        @Test
+        @DisplayName("Should go to the repository only on the first read")
+        void shouldServeRepeatedReadsFromCache() {
+            // given
+            delegate.save(new Order("order1", 100.0));
+
+            // when
+            cache.findById("order1");
+            cache.findById("order1");
+            cache.exists("order1");
+
+            // then
+            verify(delegate, times(1)).findById("order1");
+            assertThat(cache.hitCount()).isEqualTo(2);
+            assertThat(cache.missCount()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("Should remember missing orders until they are saved")
+        void shouldCacheNegativeResults() {
+            // when
+            boolean before = cache.exists("order1");
+            cache.exists("order1");
+            cache.save(new Order("order1", 100.0));
+
+            // then
+            assertThat(before).isFalse();
+            assertThat(cache.exists("order1")).isTrue();
+            verify(delegate, times(1)).findById("order1");
+        }
+
+        @Test
+        @DisplayName("Should keep frequently read orders over one-off reads")
+        void shouldNotAdmitOneOffReadsOverHotOrders() {
+            // given: four hot orders, read many times
+            for (int i = 0; i < 4; i++) {
+                delegate.save(new Order("hot-" + i, i));
+                for (int reads = 0; reads < 5; reads++) {
+                    cache.findById("hot-" + i);
+                }
+            }
+
+            // when: a scan over orders read only once
+            for (int i = 0; i < 100; i++) {
+                cache.findById("cold-" + i);
+            }
+
+            // then
+            clearInvocations(delegate);
+            for (int i = 0; i < 4; i++) {
+                cache.findById("hot-" + i);
+            }
+            verify(delegate, never()).findById(anyString());
+            assertThat(cache.size()).isEqualTo(4);
+        }
+    }
+
+    @Nested
+    @DisplayName("Writes")
+    class WriteTests {
+
+        @Test
+        @DisplayName("Should write through and serve the written order")
+        void shouldWriteThrough() {
+            // given
+            Order order = new Order("order1", 100.0);
+            cache.save(order);
+            Order confirmed = order.withStatus(OrderStatus.CONFIRMED);
+
+            // when
+            boolean updated = cache.compareAndUpdate(confirmed, 0);
+
+            // then
+            assertThat(updated).isTrue();
+            assertThat(delegate.findById("order1")).containsSame(confirmed);
+            assertThat(cache.findById("order1")).containsSame(confirmed);
+        }
+
+        @Test
+        @DisplayName("Should drop a stale copy when a compare fails")
+        void shouldInvalidateOnFailedCompare() {
+            // given: the repository moved on without the cache
+            Order order = new Order("order1", 100.0);
+            cache.save(order);
+            delegate.update(order.withStatus(OrderStatus.CANCELLED));
+
+            // when
+            boolean updated = cache.compareAndUpdate(order.withStatus(OrderStatus.CONFIRMED), 0);
+
+            // then
+            assertThat(updated).isFalse();
+            assertThat(cache.findById("order1")).get().extracting(Order::getStatus).isEqualTo(OrderStatus.CANCELLED);
+        }
+
+        @Test
+        @DisplayName("Should not cache a write that another write to the same order overtook")
+        void shouldNotCacheOvertakenWrite() {
+            // given: while the first save is in the repository a second one starts and finishes
+            Order first = new Order("order1", 100.0);
+            Order second = new Order("order1", 200.0);
+            doAnswer(invocation -> {
+                cache.save(second);
+                return invocation.callRealMethod();
+            }).doCallRealMethod().when(delegate).save(any());
+
+            // when
+            cache.save(first);
+
+            // then - the repository kept the first one, so must the cache
+            assertThat(delegate.findById("order1")).containsSame(first);
+            assertThat(cache.findById("order1")).containsSame(first);
+        }
+
+        @Test
+        @DisplayName("Should write a batch with one repository call and cache its orders")
+        void shouldWriteBatchInOneCall() {
+            // given
+            List<Order> orders = List.of(new Order("order1", 1.0), new Order("order2", 2.0), new Order("order3", 3.0));
+
+            // when
+            cache.saveAll(orders);
+            cache.updateAll(List.of(orders.get(0).withStatus(OrderStatus.CONFIRMED)));
+
+            // then
+            verify(delegate, times(1)).saveAll(orders);
+            verify(delegate, times(1)).updateAll(anyCollection());
+            assertThat(cache.findById("order1")).get().extracting(Order::getStatus).isEqualTo(OrderStatus.CONFIRMED);
+            assertThat(cache.findById("order3")).containsSame(orders.get(2));
+            verify(delegate, never()).findById(any());
+        }
+
+        @Test
+        @DisplayName("Should only ask the repository about ids it hasn't cached")
+        void shouldCheckOnlyUncachedIds() {
+            // given
+            cache.save(new Order("order1", 1.0));
+            delegate.save(new Order("order2", 2.0));
+
+            // when
+            Set<String> existing = cache.existsAll(List.of("order1", "order2", "missing"));
+
+            // then
+            assertThat(existing).containsExactlyInAnyOrder("order1", "order2");
+            verify(delegate, times(1)).existsAll(List.of("order2", "missing"));
+        }
+
+        @Test
+        @DisplayName("Should keep OrderService transitions correct behind the cache")
+        void shouldWorkBehindOrderService() {
+            // given
+            OrderService orderService = new OrderService(cache, new OrderCalculatorV2());
+            orderService.createOrder("order1", 100, 2, 0.1);
+
+            // when
+            orderService.confirmOrder("order1");
+
+            // then
+            assertThatThrownBy(() -> orderService.cancelOrder("order1"))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Cannot cancel confirmed order");
+            assertThat(delegate.countByStatus(OrderStatus.CONFIRMED)).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.sda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("ConcurrentAuditLog Test - Stress testing concurrent writers")
+class ConcurrentAuditLogTest {
+
+    private static final int THREADS = 32;
+    private static final int ENTRIES_PER_THREAD = 20_000;
+
+    private ConcurrentAuditLog auditLog; // SUT
+
+    @BeforeEach
+    void setUp() {
+        auditLog = new ConcurrentAuditLog();
+    }
+
+    @Test
+    @DisplayName("Should not lose entries when 32 threads write at once")
+    void shouldNotLoseEntries() throws Exception {
+        // given
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            writers.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ENTRIES_PER_THREAD; i++) {
+                    auditLog.append(i, "2025-02-01", i % 2 == 0 ? "UPDATED" : "UPDATED_FAILED", thread + "-" + i);
+                }
+                return null;
+            }));
+        }
+
+        // when
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // then
+        List<String> entries = auditLog.renderAll();
+        assertThat(auditLog.size()).isEqualTo(THREADS * ENTRIES_PER_THREAD);
+        assertThat(entries).hasSize(THREADS * ENTRIES_PER_THREAD);
+        assertThat(new HashSet<>(entries)).hasSize(THREADS * ENTRIES_PER_THREAD);
+    }
+
+    @Test
+    @DisplayName("Should merge the stripes by timestamp")
+    void shouldMergeStripesByTimestamp() throws Exception {
+        // given
+        auditLog.append(2L, "2025-02-01", "SECOND", "main");
+        Thread other = new Thread(() -> {
+            auditLog.append(1L, "2025-02-01", "FIRST", "other");
+            auditLog.append(3L, "2025-02-01", "THIRD", "other");
+        });
+        other.start();
+        other.join();
+
+        // when
+        List<String> entries = auditLog.renderAll();
+
+        // then
+        assertThat(entries).containsExactly(
+                "[2025-02-01] Order other: FIRST",
+                "[2025-02-01] Order main: SECOND",
+                "[2025-02-01] Order other: THIRD");
+    }
+
+    @Test
+    @DisplayName("Should merge the audit trail of an order from every stripe")
+    void shouldMergeTrailAcrossStripes() throws Exception {
+        // given
+        auditLog.append(2L, "2025-02-01", "SECOND", "order1");
+        Thread other = new Thread(() -> {
+            auditLog.append(1L, "2025-02-01", "FIRST", "order1");
+            auditLog.append(3L, "2025-02-01", "THIRD", "order2");
+            auditLog.append(4L, "2025-02-01", "FOURTH", "order1");
+        });
+        other.start();
+        other.join();
+
+        // when
+        List<String> trail = auditLog.trail("order1", 0, Long.MAX_VALUE);
+
+        // then
+        assertThat(trail).containsExactly(
+                "[2025-02-01] Order order1: FIRST",
+                "[2025-02-01] Order order1: SECOND",
+                "[2025-02-01] Order order1: FOURTH");
+        assertThat(auditLog.trail("order1", 2L, 4L)).containsExactly("[2025-02-01] Order order1: SECOND");
+    }
+
+    @Test
+    @DisplayName("Should merge entries of the same millisecond by their microseconds")
+    void shouldMergeByMicros() throws Exception {
+        // given - three entries within millisecond 5, on two stripes
+        auditLog.appendMicros(5_000L, "2025-02-01", "FIRST", "order1");
+        Thread other = new Thread(() -> auditLog.appendMicros(5_001L, "2025-02-01", "SECOND", "order1"));
+        other.start();
+        other.join();
+        auditLog.appendMicros(5_002L, "2025-02-01", "THIRD", "order1");
+
+        // when
+        List<String> entries = auditLog.renderAll();
+
+        // then
+        assertThat(entries).containsExactly(
+                "[2025-02-01] Order order1: FIRST",
+                "[2025-02-01] Order order1: SECOND",
+                "[2025-02-01] Order order1: THIRD");
+        assertThat(auditLog.trail("order1", 5L, 6L)).isEqualTo(entries);
+    }
+
+    @Test
+    @DisplayName("Should keep a fixed number of stripes however many threads ever wrote")
+    void shouldNotGrowWithThreads() throws Exception {
+        // given
+        ConcurrentAuditLog striped = new ConcurrentAuditLog(3);
+
+        // when
+        for (int t = 0; t < 200; t++) {
+            int thread = t;
+            Thread writer = new Thread(() -> striped.append(thread, "2025-02-01", "UPDATED", "short-lived-" + thread));
+            writer.start();
+            writer.join();
+        }
+
+        // then
+        assertThat(striped.stripeCount()).isEqualTo(4);
+        assertThat(striped.renderAll()).hasSize(200)
+                .startsWith("[2025-02-01] Order short-lived-0: UPDATED")
+                .endsWith("[2025-02-01] Order short-lived-199: UPDATED");
+    }
+
+    @Test
+    @DisplayName("Should never show a later entry without the ones appended before it")
+    void shouldRenderOneCut() throws Exception {
+        // given: two threads take turns, so entry i is appended before entry i + 1 starts, on another stripe
+        int entries = 20_000;
+        Semaphore[] turns = {new Semaphore(1), new Semaphore(0)};
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            int thread = t;
+            writers.add(pool.submit(() -> {
+                for (int i = thread; i < entries; i += 2) {
+                    turns[thread].acquire();
+                    auditLog.append(i, "2025-02-01", "UPDATED", String.valueOf(i));
+                    turns[1 - thread].release();
+                }
+                return null;
+            }));
+        }
+
+        // when
+        List<String> gaps = new ArrayList<>();
+        while (writers.stream().anyMatch(writer -> !writer.isDone())) {
+            List<String> rendered = auditLog.renderAll();
+            for (int i = 0; i < rendered.size(); i++) {
+                if (!rendered.get(i).equals("[2025-02-01] Order " + i + ": UPDATED")) {
+                    gaps.add(rendered.get(i));
+                    break;
+                }
+            }
+        }
+        for (Future<?> writer : writers) {
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // then
+        assertThat(gaps).isEmpty();
+        assertThat(auditLog.renderAll()).hasSize(entries);
+    }
+
+    @Test
+    @DisplayName("Should give consistent snapshots while writers and cleaners are running")
+    void shouldGiveConsistentSnapshotsWhileWriting() throws Exception {
+        // given
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger removed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 2);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            writers.add(pool.submit(() -> {
+                for (int i = 0; i < ENTRIES_PER_THREAD; i++) {
+                    auditLog.append(i, "2025-02-01", "UPDATED", thread + "-" + i);
+                }
+            }));
+        }
+        Future<?> cleaner = pool.submit(() -> {
+            long cutoff = 0;
+            while (running.get()) {
+                removed.addAndGet(auditLog.removeOlderThan(cutoff));
+                cutoff = Math.min(cutoff + 100, ENTRIES_PER_THREAD / 2);
+            }
+        });
+        Future<?> reader = pool.submit(() -> {
+            while (running.get()) {
+                for (String entry : auditLog.renderAll()) {
+                    assertThat(entry).matches("\\[2025-02-01] Order \\d+-\\d+: UPDATED");
+                }
+            }
+        });
+
+        // when
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        running.set(false);
+        cleaner.get(10, TimeUnit.SECONDS);
+        reader.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        // then
+        Set<String> remaining = new HashSet<>(auditLog.renderAll());
+        assertThat(remaining.size() + removed.get()).isEqualTo(THREADS * ENTRIES_PER_THREAD);
+    }
+}
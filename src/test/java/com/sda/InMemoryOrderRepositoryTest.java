@@ -0,0 +1,152 @@
+package com.sda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("InMemoryOrderRepository Test - A real repository instead of a mock")
+class InMemoryOrderRepositoryTest {
+
+    private InMemoryOrderRepository repository; // SUT
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryOrderRepository();
+    }
+
+    @Nested
+    @DisplayName("Basic operations")
+    class BasicOperationsTests {
+
+        @Test
+        @DisplayName("Should find a saved order")
+        void shouldFindSavedOrder() {
+            // given
+            Order order = new Order("order1", 100.0);
+
+            // when
+            repository.save(order);
+
+            // then
+            assertThat(repository.exists("order1")).isTrue();
+            assertThat(repository.exists("order2")).isFalse();
+            assertThat(repository.findById("order1")).containsSame(order);
+            assertThat(repository.findById("order2")).isEmpty();
+        }
+
+        @Test
+        @DisplayName("Should reject updates of unknown orders")
+        void shouldRejectUpdateOfUnknownOrder() {
+            // when & then
+            assertThatThrownBy(() -> repository.update(new Order("order1", 100.0)))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Order not found");
+        }
+
+        @Test
+        @DisplayName("Should only replace the order it was read from")
+        void shouldCompareAndUpdateOnVersion() {
+            // given
+            Order order = new Order("order1", 100.0);
+            repository.save(order);
+            Order confirmed = order.withStatus(OrderStatus.CONFIRMED);
+
+            // when
+            boolean first = repository.compareAndUpdate(confirmed, order.getVersion());
+            boolean stale = repository.compareAndUpdate(order.withStatus(OrderStatus.CANCELLED), order.getVersion());
+
+            // then
+            assertThat(first).isTrue();
+            assertThat(stale).isFalse();
+            assertThat(repository.findById("order1")).containsSame(confirmed);
+            assertThat(repository.countByStatus(OrderStatus.CONFIRMED)).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("Should not compare and update an order that isn't stored")
+        void shouldNotCompareAndUpdateUnknownOrder() {
+            // when
+            boolean updated = repository.compareAndUpdate(new Order("order1", 100.0).withStatus(OrderStatus.CONFIRMED), 0);
+
+            // then
+            assertThat(updated).isFalse();
+            assertThat(repository.exists("order1")).isFalse();
+        }
+    }
+
+    @Nested
+    @DisplayName("Status index")
+    class StatusIndexTests {
+
+        @Test
+        @DisplayName("Should move an order to its new status on update")
+        void shouldMoveOrderToNewStatus() {
+            // given
+            Order order = new Order("order1", 100.0);
+            repository.save(order);
+            repository.save(new Order("order2", 50.0));
+
+            // when
+            order.setStatus(OrderStatus.CONFIRMED);
+            repository.update(order);
+
+            // then
+            assertThat(repository.countByStatus(OrderStatus.CREATED)).isEqualTo(1);
+            assertThat(repository.findByStatus(OrderStatus.CONFIRMED)).containsExactly(order);
+        }
+
+        @Test
+        @DisplayName("Should work behind the OrderService")
+        void shouldWorkBehindOrderService() {
+            // given
+            OrderService orderService = new OrderService(repository, new OrderCalculatorV2());
+            orderService.createOrder("order1", 100, 2, 0.1);
+            orderService.createOrder("order2", 10, 1, 0);
+
+            // when
+            orderService.confirmOrder("order1");
+            orderService.cancelOrder("order2");
+
+            // then
+            assertThat(repository.findById("order1"))
+                    .get()
+                    .extracting(Order::getAmount, Order::getStatus)
+                    .containsExactly(220.0, OrderStatus.CONFIRMED);
+            assertThat(repository.countByStatus(OrderStatus.CANCELLED)).isEqualTo(1);
+            assertThat(repository.countByStatus(OrderStatus.CREATED)).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep the indexes consistent under concurrent writes")
+    void shouldKeepIndexesConsistentUnderConcurrentWrites() throws Exception {
+        // given
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        // when
+        IntStream.range(0, 8).forEach(thread -> pool.submit(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                Order order = new Order(thread + "-" + i, i);
+                repository.save(order);
+                order.setStatus(i % 2 == 0 ? OrderStatus.CONFIRMED : OrderStatus.CANCELLED);
+                repository.update(order);
+            }
+        }));
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        // then
+        assertThat(repository.size()).isEqualTo(80_000);
+        assertThat(repository.countByStatus(OrderStatus.CONFIRMED)).isEqualTo(40_000);
+        assertThat(repository.countByStatus(OrderStatus.CANCELLED)).isEqualTo(40_000);
+        assertThat(repository.countByStatus(OrderStatus.CREATED)).isZero();
+    }
+}
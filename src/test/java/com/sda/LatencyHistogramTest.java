@@ -0,0 +1,73 @@
+package com.sda;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("LatencyHistogram Test - Fixed size latency percentiles")
+class LatencyHistogramTest {
+
+    @Nested
+    @DisplayName("Buckets")
+    class BucketTests {
+
+        @Test
+        @DisplayName("Should put every value in a bucket whose upper bound is within 1/16 of it")
+        void shouldBoundTheRelativeError() {
+            long[] values = {0, 1, 31, 32, 33, 63, 64, 1_000, 999_999, 123_456_789, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+
+            for (long value : values) {
+                // when
+                int bucket = LatencyHistogram.bucketOf(value);
+                long highest = LatencyHistogram.highestValueIn(bucket);
+
+                // then
+                assertThat(highest).isGreaterThanOrEqualTo(value);
+                assertThat(highest - value).isLessThanOrEqualTo(value / 16);
+                if (bucket > 0) {
+                    assertThat(LatencyHistogram.highestValueIn(bucket - 1)).isLessThan(value);
+                }
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Snapshots")
+    class SnapshotTests {
+
+        @Test
+        @DisplayName("Should report percentiles, mean and max of the recorded values")
+        void shouldReportPercentiles() {
+            // given
+            LatencyHistogram histogram = new LatencyHistogram();
+            for (long i = 1; i <= 1_000; i++) {
+                histogram.record(i * 1_000);
+            }
+
+            // when
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+            // then
+            assertThat(snapshot.getCount()).isEqualTo(1_000);
+            assertThat(snapshot.getMax()).isEqualTo(1_000_000);
+            assertThat(snapshot.getMean()).isEqualTo(500_500.0);
+            assertThat(snapshot.valueAtPercentile(50)).isBetween(500_000L, 500_000L + 500_000L / 16);
+            assertThat(snapshot.valueAtPercentile(99)).isBetween(990_000L, 1_000_000L);
+            assertThat(snapshot.valueAtPercentile(100)).isEqualTo(1_000_000);
+        }
+
+        @Test
+        @DisplayName("Should report zeros when nothing was recorded")
+        void shouldHandleEmptyHistogram() {
+            // when
+            LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+            // then
+            assertThat(snapshot.getCount()).isZero();
+            assertThat(snapshot.getMean()).isZero();
+            assertThat(snapshot.valueAtPercentile(99)).isZero();
+        }
+    }
+}
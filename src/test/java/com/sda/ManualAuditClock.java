@@ -0,0 +1,49 @@
+package com.sda;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+// Deterministic AuditClock for tests: the time only moves when the test says so,
+// or by a fixed step on every epochMicros() call
+public class ManualAuditClock implements AuditClock {
+    private final long stepMicros;
+    private long nowMicros;
+    private long lastIssued;
+
+    public ManualAuditClock(long startMillis) {
+        this(startMillis, Duration.ZERO);
+    }
+
+    public ManualAuditClock(long startMillis, Duration stepPerCall) {
+        this.nowMicros = startMillis * 1000;
+        this.lastIssued = nowMicros;
+        this.stepMicros = stepPerCall.toNanos() / 1000;
+    }
+
+    public void setMillis(long millis) {
+        nowMicros = millis * 1000;
+    }
+
+    public void advance(Duration duration) {
+        nowMicros += duration.toNanos() / 1000;
+    }
+
+    @Override
+    public long epochMicros() {
+        lastIssued = Math.max(lastIssued, nowMicros);
+        nowMicros += stepMicros;
+        return lastIssued;
+    }
+
+    @Override
+    public String currentLabel() {
+        return labelOf(Math.floorDiv(lastIssued, 1000));
+    }
+
+    // the label a clock in the system time zone gives the given epoch millis
+    public static String labelOf(long epochMillis) {
+        return LABEL_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()));
+    }
+}
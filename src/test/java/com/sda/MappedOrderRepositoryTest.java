@@ -0,0 +1,168 @@
+package com.sda;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("MappedOrderRepository Test - Orders that survive a restart")
+class MappedOrderRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should find saved orders and update their status in place")
+    void shouldSaveFindAndUpdate() throws Exception {
+        // given
+        try (MappedOrderRepository repository = new MappedOrderRepository(tempDir.resolve("orders.dat"))) {
+            Order order = new Order("order1", 220.0);
+            repository.save(order);
+
+            // when
+            order.setStatus(OrderStatus.CONFIRMED);
+            repository.update(order);
+
+            // then
+            assertThat(repository.exists("order1")).isTrue();
+            assertThat(repository.exists("order2")).isFalse();
+            assertThat(repository.findById("order1"))
+                    .get()
+                    .extracting(Order::getOrderId, Order::getAmount, Order::getStatus)
+                    .containsExactly("order1", 220.0, OrderStatus.CONFIRMED);
+            assertThat(repository.size()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep the version and compare against it")
+    void shouldCompareAndUpdateOnVersion() throws Exception {
+        // given
+        Path file = tempDir.resolve("orders.dat");
+        try (MappedOrderRepository repository = new MappedOrderRepository(file)) {
+            Order order = new Order("order1", 220.0);
+            repository.save(order);
+
+            // when
+            boolean first = repository.compareAndUpdate(order.withStatus(OrderStatus.CONFIRMED), 0);
+            boolean stale = repository.compareAndUpdate(order.withStatus(OrderStatus.CANCELLED), 0);
+
+            // then
+            assertThat(first).isTrue();
+            assertThat(stale).isFalse();
+        }
+        try (MappedOrderRepository reopened = new MappedOrderRepository(file)) {
+            assertThat(reopened.findById("order1"))
+                    .get()
+                    .extracting(Order::getStatus, Order::getVersion)
+                    .containsExactly(OrderStatus.CONFIRMED, 1);
+        }
+    }
+
+    @Test
+    @DisplayName("Should rebuild the index after a restart")
+    void shouldRebuildIndexAfterRestart() throws Exception {
+        // given
+        Path file = tempDir.resolve("orders.dat");
+        try (MappedOrderRepository repository = new MappedOrderRepository(file)) {
+            for (int i = 0; i < 5_000; i++) {
+                repository.save(new Order("order-" + i, i));
+            }
+            Order cancelled = new Order("order-42", 42);
+            cancelled.setStatus(OrderStatus.CANCELLED);
+            repository.update(cancelled);
+        }
+
+        // when
+        try (MappedOrderRepository reopened = new MappedOrderRepository(file)) {
+
+            // then
+            assertThat(reopened.size()).isEqualTo(5_000);
+            assertThat(reopened.findById("order-4999"))
+                    .get()
+                    .extracting(Order::getAmount)
+                    .isEqualTo(4999.0);
+            assertThat(reopened.findById("order-42"))
+                    .get()
+                    .extracting(Order::getStatus)
+                    .isEqualTo(OrderStatus.CANCELLED);
+            assertThat(reopened.exists("order-5000")).isFalse();
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep the exact amount after a restart")
+    void shouldKeepExactAmountAfterRestart() throws Exception {
+        // given
+        Path file = tempDir.resolve("orders.dat");
+        try (MappedOrderRepository repository = new MappedOrderRepository(file)) {
+            repository.save(new Order("exact", 1999, 2));
+            repository.save(new Order("inexact", 5.0));
+        }
+
+        // when
+        try (MappedOrderRepository reopened = new MappedOrderRepository(file)) {
+
+            // then
+            assertThat(reopened.findById("exact"))
+                    .get()
+                    .extracting(Order::getAmountMinor, Order::getScale, Order::getAmount, Order::hasExactAmount)
+                    .containsExactly(1999L, 2, 19.99, true);
+            assertThat(reopened.findById("inexact"))
+                    .get()
+                    .extracting(Order::getAmount, Order::hasExactAmount)
+                    .containsExactly(5.0, false);
+        }
+    }
+
+    @Test
+    @DisplayName("Should return the newest record when an id is saved twice")
+    void shouldReturnNewestRecordForDuplicateSave() throws Exception {
+        // given
+        Path file = tempDir.resolve("orders.dat");
+        try (MappedOrderRepository repository = new MappedOrderRepository(file)) {
+            repository.save(new Order("order1", 100.0));
+
+            // when
+            repository.save(new Order("order1", 200.0));
+
+            // then
+            assertThat(repository.findById("order1")).get().extracting(Order::getAmount).isEqualTo(200.0);
+        }
+        try (MappedOrderRepository reopened = new MappedOrderRepository(file)) {
+            assertThat(reopened.findById("order1")).get().extracting(Order::getAmount).isEqualTo(200.0);
+        }
+    }
+
+    @Test
+    @DisplayName("Should handle ids that are not ASCII")
+    void shouldHandleNonAsciiIds() throws Exception {
+        // given
+        try (MappedOrderRepository repository = new MappedOrderRepository(tempDir.resolve("orders.dat"))) {
+
+            // when
+            repository.save(new Order("bestellung-ä", 10.0));
+
+            // then
+            assertThat(repository.exists("bestellung-ä")).isTrue();
+            assertThat(repository.exists("bestellung-a")).isFalse();
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject ids that don't fit into a record")
+    void shouldRejectTooLongIds() throws Exception {
+        // given
+        try (MappedOrderRepository repository = new MappedOrderRepository(tempDir.resolve("orders.dat"))) {
+            String tooLong = "x".repeat(MappedOrderRepository.MAX_ID_BYTES + 1);
+
+            // when & then
+            assertThatThrownBy(() -> repository.save(new Order(tooLong, 1.0)))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Order id is too long");
+        }
+    }
+}
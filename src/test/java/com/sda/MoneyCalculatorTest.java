@@ -0,0 +1,135 @@
+package com.sda;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("MoneyCalculator Test - Exact pricing in minor units")
+class MoneyCalculatorTest {
+
+    @Nested
+    @DisplayName("Pricing")
+    class PricingTests {
+
+        @ParameterizedTest
+        @EnumSource(value = RoundingMode.class, names = "UNNECESSARY", mode = EnumSource.Mode.EXCLUDE)
+        @DisplayName("Should match the BigDecimal reference for every rounding mode")
+        void shouldMatchBigDecimalReference(RoundingMode roundingMode) {
+            // given
+            Random random = new Random(7);
+            for (int scale = 0; scale <= 3; scale++) {
+                MoneyCalculator calculator = new MoneyCalculator(scale, roundingMode);
+                for (int i = 0; i < 10_000; i++) {
+                    long price = random.nextInt(1_000_000);
+                    int count = random.nextInt(20);
+                    long taxRate = random.nextInt(300_000);
+                    long discount = random.nextInt(100_000);
+                    long threshold = random.nextInt(2_000_000);
+
+                    // when
+                    long total = calculator.calculateTotal(price, count, taxRate, discount, threshold);
+
+                    // then
+                    BigDecimal expected = BigDecimalPricing.calculateTotal(
+                            BigDecimal.valueOf(price, scale), count, BigDecimal.valueOf(taxRate, MoneyCalculator.RATE_SCALE),
+                            BigDecimal.valueOf(discount, scale), BigDecimal.valueOf(threshold, scale), scale, roundingMode);
+                    assertThat(total).isEqualTo(expected.unscaledValue().longValueExact());
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("Should round half to even")
+        void shouldRoundHalfToEven() {
+            // given
+            MoneyCalculator calculator = new MoneyCalculator(2, RoundingMode.HALF_EVEN);
+
+            // when & then: 0.25 * 1.1 = 0.275 and 0.35 * 1.1 = 0.385
+            assertThat(calculator.calculateTotal(25, 1, 100_000, 0, 0)).isEqualTo(28);
+            assertThat(calculator.calculateTotal(35, 1, 100_000, 0, 0)).isEqualTo(38);
+        }
+
+        @Test
+        @DisplayName("Should stay exact beyond the precision of a double")
+        void shouldStayExactForLargeAmounts() {
+            // given
+            MoneyCalculator calculator = new MoneyCalculator(2, RoundingMode.HALF_UP);
+
+            // when
+            long total = calculator.calculateTotal(900_719_925_474_099L, 10, 0, 1, 0);
+
+            // then
+            assertThat(total).isEqualTo(9_007_199_254_740_989L);
+        }
+
+        @Test
+        @DisplayName("Should clamp negative totals at zero")
+        void shouldClampAtZero() {
+            // when & then
+            assertThat(MoneyCalculator.ofCents().calculateTotal(100, 1, 0, 500, 0)).isZero();
+        }
+
+        @Test
+        @DisplayName("Should reject negative values, overflow and unnecessary rounding")
+        void shouldRejectInvalidInput() {
+            // given
+            MoneyCalculator calculator = new MoneyCalculator(2, RoundingMode.UNNECESSARY);
+
+            // when & then
+            assertThatThrownBy(() -> calculator.calculateTotal(-1, 1, 0, 0, 0))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Negative values are not allowed");
+            assertThatThrownBy(() -> calculator.calculateTotal(Long.MAX_VALUE, 2, 0, 0, 0))
+                    .isInstanceOf(ArithmeticException.class);
+            assertThatThrownBy(() -> calculator.calculateTotal(1, 1, 100_000, 0, 0))
+                    .isInstanceOf(ArithmeticException.class)
+                    .hasMessage("Rounding necessary");
+            assertThatThrownBy(() -> new MoneyCalculator(10, RoundingMode.HALF_UP))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("Conversion")
+    class ConversionTests {
+
+        @Test
+        @DisplayName("Should convert doubles to minor units without binary noise")
+        void shouldConvertDoubles() {
+            // given
+            MoneyCalculator calculator = new MoneyCalculator(2, RoundingMode.HALF_UP);
+
+            // when & then
+            assertThat(calculator.toMinorUnits(19.99)).isEqualTo(1999);
+            assertThat(calculator.toMinorUnits(1.005)).isEqualTo(101);
+            assertThat(calculator.toRate(0.23)).isEqualTo(230_000);
+            assertThat(calculator.toDouble(1999)).isEqualTo(19.99);
+            assertThat(new MoneyCalculator(0, RoundingMode.DOWN).toMinorUnits(1.9)).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("Should create exact orders through OrderService")
+        void shouldCreateExactOrders() {
+            // given
+            OrderService orderService = new OrderService(
+                    new InMemoryOrderRepository(), new OrderCalculatorV2(), MoneyCalculator.ofCents());
+
+            // when
+            Order order = orderService.createOrder("1", 19.99, 3, 0.2);
+
+            // then
+            assertThat(order.hasExactAmount()).isTrue();
+            assertThat(order)
+                    .extracting(Order::getAmountMinor, Order::getScale, Order::getAmount)
+                    .containsExactly(7196L, 2, 71.96);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.sda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("OrderAnalytics Test - Running amount figures per status")
+class OrderAnalyticsTest {
+
+    private OrderStore store;
+    private OrderAnalytics analytics; // SUT
+    private OrderService orderService;
+
+    @BeforeEach
+    void setUp() {
+        store = new OrderStore();
+        analytics = new OrderAnalytics();
+        orderService = new OrderService(store, new OrderCalculatorV2(), null, null, analytics);
+    }
+
+    @Nested
+    @DisplayName("Running figures")
+    class RunningFigureTests {
+
+        @Test
+        @DisplayName("Should move amounts between statuses as orders are confirmed and cancelled")
+        void shouldFollowTransitions() {
+            // given
+            orderService.createOrder("1", 10.0, 1, 0);
+            orderService.createOrder("2", 20.0, 1, 0);
+            orderService.createOrder("3", 30.0, 1, 0);
+
+            // when
+            orderService.confirmOrder("1");
+            orderService.cancelOrder("3");
+
+            // then
+            OrderAnalytics.StatusSummary created = analytics.summary(OrderStatus.CREATED);
+            OrderAnalytics.StatusSummary confirmed = analytics.summary(OrderStatus.CONFIRMED);
+            OrderAnalytics.StatusSummary cancelled = analytics.summary(OrderStatus.CANCELLED);
+            assertThat(created.getCount()).isEqualTo(1);
+            assertThat(created.getTotal()).isEqualTo(20.0);
+            assertThat(confirmed.getCount()).isEqualTo(1);
+            assertThat(confirmed.getTotal()).isEqualTo(10.0);
+            assertThat(cancelled.getCount()).isEqualTo(1);
+            assertThat(cancelled.getMean()).isEqualTo(30.0);
+        }
+
+        @Test
+        @DisplayName("Should not count rejected operations")
+        void shouldIgnoreFailures() {
+            // given
+            orderService.createOrder("1", 10.0, 1, 0);
+            orderService.cancelOrder("1");
+
+            // when
+            assertThatThrownBy(() -> orderService.confirmOrder("1")).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> orderService.createOrder("1", 99.0, 1, 0)).isInstanceOf(IllegalArgumentException.class);
+
+            // then
+            assertThat(analytics.summary(OrderStatus.CANCELLED).getCount()).isEqualTo(1);
+            assertThat(analytics.summary(OrderStatus.CONFIRMED).getCount()).isZero();
+            assertThat(analytics.summary(OrderStatus.CREATED).getCount()).isZero();
+        }
+
+        @Test
+        @DisplayName("Should report percentiles within 6% of the real amount")
+        void shouldApproximatePercentiles() {
+            // given - amounts 1.00 .. 1000.00
+            for (int i = 1; i <= 1_000; i++) {
+                orderService.createOrder(String.valueOf(i), i, 1, 0);
+            }
+
+            // when
+            OrderAnalytics.StatusSummary summary = analytics.summary(OrderStatus.CREATED);
+
+            // then
+            assertThat(summary.amountAtPercentile(50)).isBetween(500.0, 500.0 * 1.06);
+            assertThat(summary.amountAtPercentile(99)).isBetween(990.0, 990.0 * 1.06);
+            assertThat(summary.getTotal()).isEqualTo(500_500.0);
+        }
+    }
+
+    @Nested
+    @DisplayName("Scans")
+    class ScanTests {
+
+        @Test
+        @DisplayName("Should compute the same figures from a scan of the store")
+        void shouldMatchRunningFigures() {
+            // given - more than one scan chunk
+            for (int i = 0; i < 100_000; i++) {
+                orderService.createOrder(String.valueOf(i), i % 500, 1, 0);
+                if (i % 3 == 0) {
+                    orderService.confirmOrder(String.valueOf(i));
+                }
+            }
+
+            // when
+            Map<OrderStatus, OrderAnalytics.StatusSummary> scanned = OrderAnalytics.scan(store);
+            OrderAnalytics restarted = OrderAnalytics.of(store);
+
+            // then
+            for (OrderStatus status : OrderStatus.values()) {
+                OrderAnalytics.StatusSummary running = analytics.summary(status);
+                assertThat(scanned.get(status).getCount()).isEqualTo(running.getCount());
+                assertThat(scanned.get(status).getTotal()).isEqualTo(running.getTotal());
+                assertThat(scanned.get(status).amountAtPercentile(90)).isEqualTo(running.amountAtPercentile(90));
+                assertThat(restarted.summary(status).getTotal()).isEqualTo(running.getTotal());
+            }
+            assertThat(scanned.get(OrderStatus.CONFIRMED).getCount()).isEqualTo(33_334);
+        }
+    }
+}
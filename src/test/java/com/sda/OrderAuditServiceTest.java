@@ -5,10 +5,16 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -154,15 +160,19 @@ class OrderAuditServiceTest {
         @DisplayName("Should demonstrate Answer interface")
         void testAnswerInterface() {
             // given
+            LocalDateTime now = LocalDateTime.now();
+            Iterator<LocalDateTime> clock = List.of(now.minusDays(8), now).iterator();
+
+            // every call to the spied clock hands out the next time from our list
+            when(spyService.currentTimeMicros())
+                    .thenAnswer(invocation -> clock.next()
+                            .atZone(ZoneId.systemDefault())
+                            .toInstant()
+                            .toEpochMilli() * 1000);
+
             spyService.recordAudit("OLD", "1");
             spyService.recordAudit("NEW", "2");
 
-            when(spyService.isEntryOlderThan(any(), any()))
-                    .thenAnswer(invocation -> {
-                        String entry = invocation.getArgument(0);
-                        return entry.contains("OLD");
-                    });
-
             // when
             int removedCount = spyService.clearOldEntries(LocalDateTime.now().minusDays(7));
 
@@ -206,4 +216,191 @@ class OrderAuditServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("Batch processing")
+    class BatchProcessingTests {
+
+        @Test
+        @DisplayName("Should write orders in batches and audit each one")
+        void shouldWriteOrdersInBatches() {
+            // given
+            Order o1 = new Order("1", 100.0);
+            Order o2 = new Order("2", 200.0);
+            Order cancelled = new Order("3", 300.0);
+            cancelled.setStatus(OrderStatus.CANCELLED);
+            Order o4 = new Order("4", 400.0);
+
+            // when
+            realService.processOrderUpdate(List.of(o1, o2, cancelled, o4), 2);
+
+            // then
+            verify(repository).updateAll(List.of(o1, o2));
+            verify(repository).updateAll(List.of(o4));
+            verify(repository, never()).update(any());
+            assertThat(realService.getAuditLogs())
+                    .hasSize(3)
+                    .allMatch(entry -> entry.endsWith(": UPDATED"));
+        }
+
+        @Test
+        @DisplayName("Should keep per order audits when one order of a batch fails")
+        void shouldKeepPerOrderAuditsWhenBatchFails() {
+            // given
+            Order good = new Order("good", 100.0);
+            Order bad = new Order("bad", 200.0);
+            doThrow(new IllegalStateException("batch failed")).when(repository).updateAll(any());
+            doAnswer(invocation -> {
+                if (invocation.getArgument(0) == bad) {
+                    throw new IllegalStateException("update failed");
+                }
+                return null;
+            }).when(repository).update(any());
+
+            // when
+            realService.processOrderUpdate(List.of(good, bad), 10);
+
+            // then
+            verify(repository).update(good);
+            assertThat(realService.getAuditLogs())
+                    .hasSize(2)
+                    .satisfiesExactly(
+                            entry -> assertThat(entry).endsWith("Order good: UPDATED"),
+                            entry -> assertThat(entry).endsWith("Order bad: UPDATED_FAILED"));
+        }
+
+        @Test
+        @DisplayName("Should fan out batches on an executor")
+        void shouldFanOutBatchesOnExecutor() {
+            // given
+            List<Order> orders = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                orders.add(new Order(String.valueOf(i), 10.0 + i));
+            }
+
+            // when
+            realService.processOrderUpdate(orders, 8, ForkJoinPool.commonPool());
+
+            // then
+            verify(repository, times(13)).updateAll(any());
+            List<String> logs = realService.getAuditLogs();
+            assertThat(logs).hasSize(100);
+            assertThat(logs.get(0)).endsWith("Order 0: UPDATED");
+            assertThat(logs.get(99)).endsWith("Order 99: UPDATED");
+        }
+
+        @Test
+        @DisplayName("Should update an order without a status")
+        void shouldUpdateOrderWithoutStatus() {
+            // given
+            Order order = new Order("1", 100.0);
+            order.setStatus(null);
+
+            // when
+            realService.processOrderUpdate(List.of(order), 10);
+
+            // then
+            assertThat(realService.shouldProcessOrder(order)).isTrue();
+            verify(repository).updateAll(List.of(order));
+            assertThat(realService.getAuditLogs()).singleElement().asString().endsWith("Order 1: UPDATED");
+        }
+
+        @Test
+        @DisplayName("Should reject a batch size below one")
+        void shouldRejectInvalidBatchSize() {
+            // when & then
+            assertThatThrownBy(() -> realService.processOrderUpdate(List.of(), 0))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Batch size must be positive");
+        }
+    }
+
+    @Nested
+    @DisplayName("Audit trail")
+    class AuditTrailTests {
+        private ManualAuditClock clock;
+        private OrderAuditService service;
+
+        @BeforeEach
+        void setUp() {
+            clock = new ManualAuditClock(0);
+            service = new OrderAuditService(repository, null, null, clock);
+        }
+
+        private void recordAt(long time, String action, String orderId) {
+            clock.setMillis(time);
+            service.recordAudit(action, orderId);
+        }
+
+        private String entry(long time, String text) {
+            return "[" + ManualAuditClock.labelOf(time) + "] " + text;
+        }
+
+        private LocalDateTime at(long millis) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        }
+
+        @Test
+        @DisplayName("Should return only the entries of the order, oldest first")
+        void shouldReturnTrailOfOneOrder() {
+            // given
+            recordAt(1_000, "CREATED", "order1");
+            recordAt(2_000, "UPDATED", "order2");
+            recordAt(3_000, "UPDATED_FAILED", "order1");
+
+            // when
+            List<String> trail = service.getAuditTrail("order1");
+
+            // then
+            assertThat(trail).containsExactly(entry(1_000, "Order order1: CREATED"), entry(3_000, "Order order1: UPDATED_FAILED"));
+            assertThat(service.getAuditTrail("unknown")).isEmpty();
+        }
+
+        @Test
+        @DisplayName("Should only return entries from the start up to the end of the range")
+        void shouldReturnTrailInRange() {
+            // given
+            for (int i = 1; i <= 5; i++) {
+                recordAt(i * 1_000L, "UPDATED", "order1");
+            }
+
+            // when
+            List<String> trail = service.getAuditTrail("order1", at(2_000), at(4_000));
+
+            // then
+            assertThat(trail).containsExactly(entry(2_000, "Order order1: UPDATED"), entry(3_000, "Order order1: UPDATED"));
+        }
+
+        @Test
+        @DisplayName("Should forget entries removed by clearOldEntries")
+        void shouldStayCorrectAfterClear() {
+            // given
+            recordAt(1_000, "UPDATED", "order1");
+            recordAt(2_000, "UPDATED", "order2");
+            recordAt(3_000, "UPDATED", "order1");
+
+            // when
+            service.clearOldEntries(at(2_500));
+            recordAt(4_000, "UPDATED", "order2");
+
+            // then
+            assertThat(service.getAuditTrail("order1")).containsExactly(entry(3_000, "Order order1: UPDATED"));
+            assertThat(service.getAuditTrail("order2")).containsExactly(entry(4_000, "Order order2: UPDATED"));
+        }
+
+        @Test
+        @DisplayName("Should label entries with the second they were recorded in")
+        void shouldLabelEntriesBySecond() {
+            // given
+            recordAt(1_999, "UPDATED", "order1");
+            recordAt(2_000, "UPDATED", "order1");
+
+            // when
+            List<String> logs = service.getAuditLogs();
+
+            // then
+            assertThat(logs).containsExactly(entry(1_000, "Order order1: UPDATED"), entry(2_000, "Order order1: UPDATED"));
+            assertThat(service.isEntryOlderThan(logs.get(0), at(2_000))).isTrue();
+            assertThat(service.isEntryOlderThan(logs.get(1), at(2_000))).isFalse();
+        }
+    }
 }
@@ -4,6 +4,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.assertj.core.api.Assertions.*;
 
 @DisplayName("OrderCalculator Test - Demonstrating AssertJ Features")
@@ -87,4 +89,68 @@ class OrderCalculatorTest {
                 .isZero();
     }
 
+    @Test
+    @DisplayName("Bulk totals should match the scalar calculation")
+    void testBulkTotalsMatchScalar() {
+        // given
+        Random random = new Random(42);
+        int size = 1_000;
+        double[] prices = new double[size];
+        int[] counts = new int[size];
+        double[] taxRates = new double[size];
+        double[] discounts = new double[size];
+        for (int i = 0; i < size; i++) {
+            prices[i] = random.nextInt(100_000) / 100.0;
+            counts[i] = random.nextInt(20);
+            taxRates[i] = random.nextInt(30) / 100.0;
+            discounts[i] = random.nextInt(50_000) / 100.0; // large enough to hit the clamping at zero
+        }
+        double[] totals = new double[size];
+
+        // when
+        calculator.calculateTotals(prices, counts, taxRates, discounts, totals);
+
+        // then
+        for (int i = 0; i < size; i++) {
+            assertThat(totals[i])
+                    .as("line item %d", i)
+                    .isEqualTo(calculator.calculateTotal(prices[i], counts[i], taxRates[i], discounts[i]));
+        }
+    }
+
+    @Test
+    @DisplayName("Bulk totals should validate the whole batch")
+    void testBulkTotalsValidation() {
+        // given
+        double[] prices = {100.0, -1.0};
+        int[] counts = {1, 1};
+        double[] taxRates = {0.1, 0.1};
+        double[] discounts = {0.0, 0.0};
+
+        // when & then
+        assertThatThrownBy(() -> calculator.calculateTotals(prices, counts, taxRates, discounts, new double[2]))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Negative values are not allowed");
+        assertThatThrownBy(() -> calculator.calculateTotals(prices, counts, taxRates, discounts, new double[1]))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("All arrays must have the same length");
+    }
+
+    @Test
+    @DisplayName("Bulk totals should leave the totals untouched when the last line item is invalid")
+    void testBulkTotalsUntouchedOnInvalidLastItem() {
+        // given
+        double[] prices = {100.0, 50.0, 20.0};
+        int[] counts = {1, 2, -1};
+        double[] taxRates = {0.1, 0.1, 0.1};
+        double[] discounts = {0.0, 0.0, 0.0};
+        double[] totals = {-1.0, -1.0, -1.0};
+
+        // when & then
+        assertThatThrownBy(() -> calculator.calculateTotals(prices, counts, taxRates, discounts, totals))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Negative values are not allowed");
+        assertThat(totals).containsExactly(-1.0, -1.0, -1.0);
+    }
+
 }
@@ -5,6 +5,8 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.assertj.core.api.Assertions.*;
 
 @DisplayName("OrderCalculatorTestV2 Test - Demonstrating TDD")
@@ -120,4 +122,69 @@ class OrderCalculatorV2Test {
         }
     }
 
+    @Nested
+    @DisplayName("Bulk pricing")
+    class BulkPricing {
+
+        @Test
+        @DisplayName("Should match the scalar calculation for every line item")
+        void shouldMatchScalarCalculation() {
+            // given
+            OrderCalculatorV2 calculator = new OrderCalculatorV2();
+            Random random = new Random(7);
+            int size = 1_000;
+            double[] prices = new double[size];
+            int[] counts = new int[size];
+            double[] taxRates = new double[size];
+            double[] discounts = new double[size];
+            double[] thresholds = new double[size];
+            for (int i = 0; i < size; i++) {
+                prices[i] = random.nextInt(100_000) / 100.0;
+                counts[i] = random.nextInt(20);
+                taxRates[i] = random.nextInt(30) / 100.0;
+                discounts[i] = random.nextInt(100_000) / 100.0;
+                thresholds[i] = random.nextInt(200_000) / 100.0;
+            }
+            double[] totals = new double[size];
+
+            // when
+            calculator.calculateTotals(prices, counts, taxRates, discounts, thresholds, totals);
+
+            // then
+            for (int i = 0; i < size; i++) {
+                assertThat(totals[i])
+                        .as("line item %d", i)
+                        .isEqualTo(calculator.calculateTotal(prices[i], counts[i], taxRates[i], discounts[i], thresholds[i]));
+            }
+        }
+
+        @Test
+        @DisplayName("Should reject a batch with a negative value")
+        void shouldRejectBatchWithNegativeValue() {
+            // given
+            OrderCalculatorV2 calculator = new OrderCalculatorV2();
+
+            // when & then
+            assertThatThrownBy(() -> calculator.calculateTotals(
+                    new double[]{100}, new int[]{1}, new double[]{0.1}, new double[]{50}, new double[]{-1}, new double[1]))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Negative values are not allowed");
+        }
+
+        @Test
+        @DisplayName("Should leave the totals untouched when the last line item is invalid")
+        void shouldLeaveTotalsUntouchedOnInvalidLastItem() {
+            // given
+            OrderCalculatorV2 calculator = new OrderCalculatorV2();
+            double[] totals = {-1.0, -1.0};
+
+            // when & then
+            assertThatThrownBy(() -> calculator.calculateTotals(new double[]{100, 50}, new int[]{1, 1},
+                    new double[]{0.1, 0.1}, new double[]{0, 0}, new double[]{0, -1}, totals))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Negative values are not allowed");
+            assertThat(totals).containsExactly(-1.0, -1.0);
+        }
+    }
+
 }
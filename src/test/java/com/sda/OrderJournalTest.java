@@ -0,0 +1,217 @@
+package com.sda;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("OrderJournal Test - Orders stored as an event journal")
+class OrderJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final ManualAuditClock clock = new ManualAuditClock(1_700_000_000_000L);
+    private OrderJournal journal; // SUT
+
+    @BeforeEach
+    void setUp() throws IOException {
+        journal = new OrderJournal(directory, clock, 4);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        journal.close();
+    }
+
+    private OrderJournal reopen() throws IOException {
+        journal.close();
+        journal = new OrderJournal(directory, clock, 4);
+        return journal;
+    }
+
+    @Nested
+    @DisplayName("Events")
+    class EventTests {
+
+        @Test
+        @DisplayName("Should record created, confirmed and updated events in order")
+        void shouldRecordEventsInOrder() {
+            // given
+            Order order = new Order("1", 1999, 2);
+            journal.save(order);
+            Order confirmed = order.withStatus(OrderStatus.CONFIRMED);
+
+            // when
+            boolean updated = journal.compareAndUpdate(confirmed, order.getVersion());
+            journal.save(confirmed);
+
+            // then
+            assertThat(updated).isTrue();
+            List<OrderEvent> history = journal.history("1");
+            assertThat(history).extracting(OrderEvent::getType).containsExactly(
+                    OrderEvent.Type.CREATED, OrderEvent.Type.CONFIRMED, OrderEvent.Type.UPDATED);
+            assertThat(history.get(0).toOrder().getAmountMinor()).isEqualTo(1999);
+            assertThat(history.get(1).getStatus()).isEqualTo(OrderStatus.CONFIRMED);
+        }
+
+        @Test
+        @DisplayName("Should render the history like the audit log")
+        void shouldRenderAuditTrail() {
+            // given
+            Order order = new Order("1", 100.0);
+            journal.save(order);
+            clock.advance(Duration.ofSeconds(1));
+            journal.update(order.withStatus(OrderStatus.CANCELLED));
+
+            // when
+            List<String> trail = journal.auditTrail("1");
+
+            // then
+            assertThat(trail).containsExactly(
+                    "[" + ManualAuditClock.labelOf(1_700_000_000_000L) + "] Order 1: CREATED",
+                    "[" + ManualAuditClock.labelOf(1_700_000_001_000L) + "] Order 1: CANCELLED");
+        }
+
+        @Test
+        @DisplayName("Should not write an event when the version doesn't match")
+        void shouldRejectStaleVersion() {
+            // given
+            Order order = new Order("1", 100.0);
+            journal.save(order);
+
+            // when
+            boolean updated = journal.compareAndUpdate(order.withStatus(OrderStatus.CONFIRMED), order.getVersion() + 1);
+
+            // then
+            assertThat(updated).isFalse();
+            assertThat(journal.eventCount()).isEqualTo(1);
+            assertThat(journal.findById("1")).get().extracting(Order::getStatus).isEqualTo(OrderStatus.CREATED);
+        }
+
+        @Test
+        @DisplayName("Should journal a status set on the order read by findById as CONFIRMED")
+        void shouldDetectStatusChangeOfReadOrder() {
+            // given
+            journal.save(new Order("1", 100.0));
+            Order order = journal.findById("1").orElseThrow();
+
+            // when
+            order.setStatus(OrderStatus.CONFIRMED);
+            OrderStatus storedBeforeUpdate = journal.findById("1").orElseThrow().getStatus();
+            journal.update(order);
+
+            // then
+            assertThat(storedBeforeUpdate).isEqualTo(OrderStatus.CREATED);
+            assertThat(journal.history("1")).extracting(OrderEvent::getType)
+                    .containsExactly(OrderEvent.Type.CREATED, OrderEvent.Type.CONFIRMED);
+        }
+
+        @Test
+        @DisplayName("Should keep its history apart from the audit trail of OrderAuditService")
+        void shouldKeepHistoryApartFromAuditTrail() {
+            // given
+            OrderAuditService auditService = new OrderAuditService(journal, null, null, clock);
+            Order order = new Order("1", 100.0);
+            journal.save(order);
+            clock.advance(Duration.ofSeconds(1));
+
+            // when
+            auditService.processOrderUpdate(List.of(order.withStatus(OrderStatus.CONFIRMED)));
+
+            // then
+            assertThat(journal.auditTrail("1")).containsExactly(
+                    "[" + ManualAuditClock.labelOf(1_700_000_000_000L) + "] Order 1: CREATED",
+                    "[" + ManualAuditClock.labelOf(1_700_000_001_000L) + "] Order 1: CONFIRMED");
+            assertThat(auditService.getAuditTrail("1"))
+                    .containsExactlyElementsOf(auditService.getAuditLogs())
+                    .singleElement().asString().endsWith("Order 1: UPDATED");
+        }
+
+        @Test
+        @DisplayName("Should reject updates of unknown orders")
+        void shouldRejectUnknownOrder() {
+            assertThatThrownBy(() -> journal.update(new Order("missing", 1.0)))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Order not found");
+        }
+    }
+
+    @Nested
+    @DisplayName("Recovery")
+    class RecoveryTests {
+
+        @Test
+        @DisplayName("Should rebuild the orders by replaying the journal")
+        void shouldReplayJournal() throws IOException {
+            // given
+            Order order = new Order("1", 1999, 2);
+            journal.save(order);
+            journal.update(order.withStatus(OrderStatus.CONFIRMED));
+            journal.save(new Order("2", 5.0));
+
+            // when
+            OrderJournal recovered = reopen();
+
+            // then
+            assertThat(recovered.replayedEvents()).isEqualTo(3);
+            assertThat(recovered.findById("1")).get().satisfies(o -> {
+                assertThat(o.getStatus()).isEqualTo(OrderStatus.CONFIRMED);
+                assertThat(o.getVersion()).isEqualTo(order.getVersion() + 1);
+                assertThat(o.getAmountMinor()).isEqualTo(1999);
+                assertThat(o.getScale()).isEqualTo(2);
+            });
+            assertThat(recovered.exists("2")).isTrue();
+        }
+
+        @Test
+        @DisplayName("Should only replay the events after the latest snapshot")
+        void shouldReplayOnlyTail() throws IOException {
+            // given - a snapshot is taken every 4 events
+            for (int i = 0; i < 6; i++) {
+                journal.save(new Order(String.valueOf(i), i));
+            }
+
+            // when
+            OrderJournal recovered = reopen();
+
+            // then
+            assertThat(recovered.replayedEvents()).isEqualTo(2);
+            assertThat(recovered.eventCount()).isEqualTo(6);
+            assertThat(recovered.size()).isEqualTo(6);
+            assertThat(recovered.history("0")).extracting(OrderEvent::getType).containsExactly(OrderEvent.Type.CREATED);
+        }
+
+        @Test
+        @DisplayName("Should drop an event cut off at the end of the journal")
+        void shouldDropTornEvent() throws IOException {
+            // given
+            journal.save(new Order("1", 1.0));
+            journal.close();
+            Files.write(directory.resolve("orders.journal"), new byte[]{0, 0, 0, 1, 0, 0},
+                    StandardOpenOption.APPEND);
+
+            // when
+            OrderJournal recovered = new OrderJournal(directory, clock, 4);
+            journal = recovered;
+            recovered.save(new Order("2", 2.0));
+            OrderJournal reopened = reopen();
+
+            // then
+            assertThat(reopened.replayedEvents()).isEqualTo(2);
+            assertThat(reopened.exists("1")).isTrue();
+            assertThat(reopened.exists("2")).isTrue();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.sda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("OrderMetrics Test - Latencies and failures of the order services")
+class OrderMetricsTest {
+
+    private OrderMetrics metrics; // SUT
+    private OrderService orderService;
+    private OrderAuditService auditService;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new OrderMetrics();
+        OrderRepository repository = metrics.instrument(new InMemoryOrderRepository());
+        orderService = new OrderService(repository, new OrderCalculatorV2(), null, metrics);
+        auditService = new OrderAuditService(repository, null, metrics);
+    }
+
+    @Nested
+    @DisplayName("Latencies")
+    class LatencyTests {
+
+        @Test
+        @DisplayName("Should time every operation and the repository calls it makes")
+        void shouldTimeOperationsAndRepositoryCalls() {
+            // given
+            orderService.createOrder("order1", 100.0, 2, 0.1);
+            orderService.createOrder("order2", 100.0, 2, 0.1);
+
+            // when
+            orderService.confirmOrder("order1");
+            orderService.cancelOrder("order2");
+            auditService.processOrderUpdate(List.of(new Order("order1", 100.0)));
+
+            // then
+            OrderMetrics.Snapshot snapshot = metrics.snapshot();
+            assertThat(snapshot.get(OrderMetrics.Operation.CREATE_ORDER).getCount()).isEqualTo(2);
+            assertThat(snapshot.get(OrderMetrics.Operation.CONFIRM_ORDER).getCount()).isEqualTo(1);
+            assertThat(snapshot.get(OrderMetrics.Operation.CANCEL_ORDER).getCount()).isEqualTo(1);
+            assertThat(snapshot.get(OrderMetrics.Operation.PROCESS_ORDER_UPDATE).getCount()).isEqualTo(1);
+            assertThat(snapshot.get(OrderMetrics.Operation.RECORD_AUDIT).getCount()).isEqualTo(1);
+            assertThat(snapshot.get(OrderMetrics.RepositoryCall.EXISTS).getCount()).isEqualTo(2);
+            assertThat(snapshot.get(OrderMetrics.RepositoryCall.SAVE).getCount()).isEqualTo(2);
+            assertThat(snapshot.get(OrderMetrics.RepositoryCall.FIND_BY_ID).getCount()).isEqualTo(2);
+            assertThat(snapshot.get(OrderMetrics.RepositoryCall.COMPARE_AND_UPDATE).getCount()).isEqualTo(2);
+            assertThat(snapshot.get(OrderMetrics.RepositoryCall.UPDATE).getCount()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("Should time a sample of the calls and count each sample for the calls it stands for")
+        void shouldSampleCalls() {
+            // given - 5 is rounded up to one in 8
+            OrderMetrics sampled = new OrderMetrics(5);
+            OrderService service = new OrderService(sampled.instrument(new InMemoryOrderRepository()),
+                    new OrderCalculatorV2(), null, sampled);
+            service.createOrder("order1", 100.0, 2, 0.1);
+
+            // when
+            for (int i = 0; i < 8_000; i++) {
+                service.confirmOrder("order1");
+                service.tryConfirmOrder("missing");
+            }
+
+            // then
+            OrderMetrics.Snapshot snapshot = sampled.snapshot();
+            assertThat(snapshot.get(OrderMetrics.Operation.CONFIRM_ORDER).getCount())
+                    .isBetween(12_000L, 20_000L)
+                    .satisfies(count -> assertThat(count % 8).isZero());
+            assertThat(snapshot.failures(OrderMetrics.FailureReason.NOT_FOUND)).isEqualTo(8_000);
+        }
+    }
+
+    @Nested
+    @DisplayName("Failures")
+    class FailureTests {
+
+        @Test
+        @DisplayName("Should count each failure under its reason")
+        void shouldCountFailuresByReason() {
+            // given
+            orderService.createOrder("order1", 100.0, 2, 0.1);
+            orderService.cancelOrder("order1");
+
+            // when
+            assertThatThrownBy(() -> orderService.createOrder("order1", 100.0, 2, 0.1));
+            assertThatThrownBy(() -> orderService.createOrder("order2", -1.0, 2, 0.1));
+            assertThatThrownBy(() -> orderService.confirmOrder("missing"));
+            assertThatThrownBy(() -> orderService.confirmOrder("order1"));
+
+            // then
+            OrderMetrics.Snapshot snapshot = metrics.snapshot();
+            assertThat(snapshot.failures(OrderMetrics.FailureReason.DUPLICATE)).isEqualTo(1);
+            assertThat(snapshot.failures(OrderMetrics.FailureReason.INVALID_INPUT)).isEqualTo(1);
+            assertThat(snapshot.failures(OrderMetrics.FailureReason.NOT_FOUND)).isEqualTo(1);
+            assertThat(snapshot.failures(OrderMetrics.FailureReason.INVALID_TRANSITION)).isEqualTo(1);
+            // failed operations are timed too
+            assertThat(snapshot.get(OrderMetrics.Operation.CREATE_ORDER).getCount()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("Should count updates that failed in processOrderUpdate()")
+        void shouldCountFailedUpdates() {
+            // when
+            auditService.processOrderUpdate(List.of(new Order("missing", 100.0)));
+
+            // then
+            assertThat(metrics.snapshot().failures(OrderMetrics.FailureReason.UPDATE_FAILED)).isEqualTo(1);
+            assertThat(auditService.getAuditLogs()).singleElement().asString().contains("UPDATED_FAILED");
+        }
+    }
+}
@@ -5,14 +5,25 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.internal.matchers.Or;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -79,6 +90,92 @@ class OrderServiceTest {
     }
 
 
+    @Nested
+    @DisplayName("Create Orders Tests")
+    class CreateOrdersTests {
+
+        @Test
+        @DisplayName("Should check and save the whole batch in one call each")
+        void shouldUseOneRoundTripPerStep() {
+            // given
+            List<OrderRequest> requests = List.of(
+                    new OrderRequest("order1", 100, 2, 0.1),
+                    new OrderRequest("order2", 50, 1, 0));
+            when(repository.existsAll(List.of("order1", "order2"))).thenReturn(Set.of("order2"));
+
+            // when
+            OrderBatchResult result = orderService.createOrders(requests);
+
+            // then
+            verify(repository).existsAll(anyCollection());
+            verify(repository).saveAll(argThat(orders -> orders.size() == 1));
+            verify(repository, never()).exists(anyString());
+            verify(repository, never()).save(any(Order.class));
+            assertThat(result.getFailures())
+                    .singleElement()
+                    .extracting(OrderBatchResult.Failure::getIndex, OrderBatchResult.Failure::getReason)
+                    .containsExactly(1, "Order already exists");
+        }
+
+        @Test
+        @DisplayName("Should create the valid orders and report the others")
+        void shouldReportFailuresPerItem() {
+            // given
+            InMemoryOrderRepository inMemoryRepository = new InMemoryOrderRepository();
+            OrderService service = new OrderService(inMemoryRepository, new OrderCalculatorV2());
+            service.createOrder("existing", 10, 1, 0);
+            List<OrderRequest> requests = List.of(
+                    new OrderRequest("order1", 100, 2, 0.1),
+                    new OrderRequest("existing", 100, 2, 0.1),
+                    new OrderRequest("order2", -1, 1, 0),
+                    new OrderRequest("order1", 5, 1, 0),
+                    new OrderRequest("order3", 50, 1, 0));
+
+            // when
+            OrderBatchResult result = service.createOrders(requests);
+
+            // then
+            assertThat(result.getCreated())
+                    .extracting(Order::getOrderId, Order::getAmount)
+                    .containsExactly(tuple("order1", 220.0), tuple("order3", 50.0));
+            assertThat(result.getFailures())
+                    .extracting(OrderBatchResult.Failure::getIndex, OrderBatchResult.Failure::getReason)
+                    .containsExactly(
+                            tuple(1, "Order already exists"),
+                            tuple(2, "Negative values are not allowed"),
+                            tuple(3, "Order already exists"));
+            assertThat(inMemoryRepository.size()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("Should report non-finite values and totals out of range per item in exact mode")
+        void shouldReportPricingFailuresPerItem() {
+            // given
+            InMemoryOrderRepository inMemoryRepository = new InMemoryOrderRepository();
+            OrderService service = new OrderService(inMemoryRepository, new OrderCalculatorV2(), MoneyCalculator.ofCents());
+            List<OrderRequest> requests = List.of(
+                    new OrderRequest("huge", 1e300, 1, 0),
+                    new OrderRequest("nan", Double.NaN, 1, 0),
+                    new OrderRequest("order1", 19.99, 2, 0),
+                    new OrderRequest("infinite", 10, 1, Double.POSITIVE_INFINITY),
+                    new OrderRequest("overflow", 9e13, 1_000_000, 0));
+
+            // when
+            OrderBatchResult result = service.createOrders(requests);
+
+            // then
+            assertThat(result.getCreated()).extracting(Order::getOrderId).containsExactly("order1");
+            assertThat(result.getFailures())
+                    .extracting(OrderBatchResult.Failure::getIndex, OrderBatchResult.Failure::getReason)
+                    .containsExactly(
+                            tuple(0, "Amount is out of range"),
+                            tuple(1, "Values must be finite numbers"),
+                            tuple(3, "Values must be finite numbers"),
+                            tuple(4, "Amount is out of range"));
+            assertThat(inMemoryRepository.exists("order1")).isTrue();
+        }
+    }
+
     @Nested
     @DisplayName("Confirm Order Tests")
     class ConfirmOrderTest {
@@ -90,13 +187,60 @@ class OrderServiceTest {
             // given
             Order order = new Order("order1", 100.0);
             when(repository.findById("order1")).thenReturn(Optional.of(order));
+            when(repository.compareAndUpdate(any(Order.class), eq(0))).thenReturn(true);
+
+            // when
+            orderService.confirmOrder("order1");
+
+            // then: a confirmed copy with the next version replaces the version we read
+            verify(repository).compareAndUpdate(argThat(updatedOrder ->
+                    updatedOrder.getStatus() == OrderStatus.CONFIRMED && updatedOrder.getVersion() == 1), eq(0));
+            assertThat(order.getStatus()).isEqualTo(OrderStatus.CREATED);
+        }
+
+        @Test
+        @DisplayName("Should retry when the order changed concurrently")
+        void shouldRetryOnConcurrentChange() {
+            // given
+            Order order = new Order("order1", 100.0);
+            when(repository.findById("order1")).thenReturn(Optional.of(order));
+            when(repository.compareAndUpdate(any(Order.class), eq(0))).thenReturn(false, true);
 
             // when
             orderService.confirmOrder("order1");
 
             // then
-            assertThat(order.getStatus()).isEqualTo(OrderStatus.CONFIRMED);
-            verify(repository).update(order);
+            verify(repository, times(2)).compareAndUpdate(any(Order.class), eq(0));
+        }
+
+        @Test
+        @DisplayName("Should report an order deleted while it was confirmed as not found")
+        void shouldReportOrderDeletedMeanwhile() {
+            // given
+            Order order = new Order("order1", 100.0);
+            when(repository.findById("order1")).thenReturn(Optional.of(order), Optional.empty());
+            when(repository.compareAndUpdate(any(Order.class), eq(0))).thenReturn(false);
+
+            // when
+            OrderResult result = orderService.tryConfirmOrder("order1");
+
+            // then
+            assertThat(result).isInstanceOf(OrderResult.Rejected.class);
+            assertThat(((OrderResult.Rejected) result).getReason()).isEqualTo(OrderResult.Reason.NOT_FOUND);
+        }
+
+        @Test
+        @DisplayName("Should give up after a bounded number of attempts")
+        void shouldGiveUpAfterMaxAttempts() {
+            // given
+            Order order = new Order("order1", 100.0);
+            when(repository.findById("order1")).thenReturn(Optional.of(order));
+            when(repository.compareAndUpdate(any(Order.class), eq(0))).thenReturn(false);
+
+            // when & then
+            assertThatThrownBy(() -> orderService.confirmOrder("order1"))
+                    .isInstanceOf(IllegalStateException.class);
+            verify(repository, times(OrderService.MAX_ATTEMPTS)).compareAndUpdate(any(Order.class), eq(0));
         }
 
         @Test
@@ -112,7 +256,35 @@ class OrderServiceTest {
                     .isInstanceOf(IllegalArgumentException.class)
                     .hasMessage("Cannot confirm cancelled order");
             assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELLED);
-            verify(repository, never()).update(order);
+            verify(repository, never()).compareAndUpdate(any(Order.class), anyInt());
+        }
+
+        @Test
+        @DisplayName("Should confirm and cancel orders without a status like created ones")
+        void shouldTreatMissingStatusAsCreated() {
+            // given
+            InMemoryOrderRepository inMemoryRepository = new InMemoryOrderRepository();
+            OrderAnalytics analytics = new OrderAnalytics();
+            OrderService service = new OrderService(inMemoryRepository, calculator, null, null, analytics);
+            Order toConfirm = new Order("order1", 100.0);
+            toConfirm.setStatus(null);
+            Order toCancel = new Order("order2", 50.0);
+            toCancel.setStatus(null);
+            inMemoryRepository.save(toConfirm);
+            inMemoryRepository.save(toCancel);
+            analytics.recordCreated(toConfirm);
+            analytics.recordCreated(toCancel);
+
+            // when
+            service.confirmOrder("order1");
+            service.cancelOrder("order2");
+
+            // then
+            assertThat(inMemoryRepository.findById("order1")).get()
+                    .extracting(Order::getStatus).isEqualTo(OrderStatus.CONFIRMED);
+            assertThat(inMemoryRepository.findById("order2")).get()
+                    .extracting(Order::getStatus).isEqualTo(OrderStatus.CANCELLED);
+            assertThat(analytics.summary(OrderStatus.CREATED).getCount()).isZero();
         }
     }
 
@@ -127,17 +299,19 @@ class OrderServiceTest {
             // given
             Order order = new Order("order1", 100.0);
             when(repository.findById("order1")).thenReturn(Optional.of(order));
+            when(repository.compareAndUpdate(any(Order.class), eq(0))).thenReturn(true);
 
             // when
             orderService.cancelOrder("order1");
 
             // then (version 1)
-            assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELLED);
-            verify(repository).update(order);
+            ArgumentCaptor<Order> captor = ArgumentCaptor.forClass(Order.class);
+            verify(repository).compareAndUpdate(captor.capture(), eq(0));
+            assertThat(captor.getValue().getStatus()).isEqualTo(OrderStatus.CANCELLED);
 
             // then (version 2)
-            verify(repository).update(argThat((updatedOrder) ->
-                    updatedOrder.getStatus() == OrderStatus.CANCELLED));
+            verify(repository).compareAndUpdate(argThat((updatedOrder) ->
+                    updatedOrder.getStatus() == OrderStatus.CANCELLED), eq(0));
         }
 
         // TODO: complete this
@@ -147,4 +321,198 @@ class OrderServiceTest {
 
         }
     }
+
+    @Nested
+    @DisplayName("Concurrent Transition Tests")
+    class ConcurrentTransitionTests {
+
+        @Test
+        @DisplayName("Should let exactly one of a racing confirm and cancel win")
+        void shouldLetOneOfConfirmAndCancelWin() throws Exception {
+            // given: a real repository, many orders each hit by a confirm and a cancel at the same time
+            InMemoryOrderRepository inMemoryRepository = new InMemoryOrderRepository();
+            OrderService service = new OrderService(inMemoryRepository, new OrderCalculatorV2());
+            int orders = 2_000;
+            for (int i = 0; i < orders; i++) {
+                inMemoryRepository.save(new Order(String.valueOf(i), 100.0));
+            }
+            AtomicInteger confirmed = new AtomicInteger();
+            AtomicInteger cancelled = new AtomicInteger();
+            CyclicBarrier start = new CyclicBarrier(2);
+
+            // when
+            Thread confirming = new Thread(() -> race(start, orders, id -> service.confirmOrder(id), confirmed));
+            Thread cancelling = new Thread(() -> race(start, orders, id -> service.cancelOrder(id), cancelled));
+            confirming.start();
+            cancelling.start();
+            confirming.join();
+            cancelling.join();
+
+            // then: every order ended up in the status of the call that succeeded on it
+            assertThat(confirmed.get() + cancelled.get()).isEqualTo(orders);
+            assertThat(inMemoryRepository.countByStatus(OrderStatus.CONFIRMED)).isEqualTo(confirmed.get());
+            assertThat(inMemoryRepository.countByStatus(OrderStatus.CANCELLED)).isEqualTo(cancelled.get());
+        }
+
+        private void race(CyclicBarrier start, int orders, Consumer<String> transition, AtomicInteger successes) {
+            try {
+                start.await();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            for (int i = 0; i < orders; i++) {
+                try {
+                    transition.accept(String.valueOf(i));
+                    successes.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    // the other transition got there first
+                }
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Idempotent Create Tests")
+    class IdempotentCreateTests {
+        private final ManualAuditClock clock = new ManualAuditClock(1_700_000_000_000L);
+        private final IdempotencyWindow window = new IdempotencyWindow(Duration.ofMinutes(5), 1_000, clock);
+
+        @BeforeEach
+        void setUp() {
+            orderService = new OrderService(repository, calculator, null, null, null, window);
+        }
+
+        @Test
+        @DisplayName("Should return the created order for a retried request without asking the repository")
+        void shouldReturnOrderForRetry() {
+            // given
+            when(calculator.calculateTotal(100.0, 2, 0.1, 0, 0)).thenReturn(220.0);
+            Order created = orderService.createOrder("order1", 100.0, 2, 0.1);
+
+            // when
+            Order retried = orderService.createOrder("order1", 100.0, 2, 0.1);
+
+            // then
+            assertThat(retried).isSameAs(created);
+            assertThat(window.replayCount()).isEqualTo(1);
+            verify(repository, times(1)).exists("order1");
+            verify(repository, times(1)).save(any(Order.class));
+        }
+
+        @Test
+        @DisplayName("Should reject a different request with the same id")
+        void shouldRejectConflictingRequest() {
+            // given
+            when(calculator.calculateTotal(100.0, 2, 0.1, 0, 0)).thenReturn(220.0);
+            orderService.createOrder("order1", 100.0, 2, 0.1);
+
+            // when / then
+            assertThatThrownBy(() -> orderService.createOrder("order1", 100.0, 3, 0.1))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Order already exists");
+            verify(repository, times(1)).save(any(Order.class));
+        }
+
+        @Test
+        @DisplayName("Should treat a retry after the window as a duplicate")
+        void shouldForgetAfterWindow() {
+            // given
+            when(calculator.calculateTotal(100.0, 2, 0.1, 0, 0)).thenReturn(220.0);
+            orderService.createOrder("order1", 100.0, 2, 0.1);
+            clock.advance(Duration.ofMinutes(6));
+            when(repository.exists("order1")).thenReturn(true);
+
+            // when / then
+            assertThatThrownBy(() -> orderService.createOrder("order1", 100.0, 2, 0.1))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Order already exists");
+            assertThat(window.replayCount()).isZero();
+        }
+
+        @Test
+        @DisplayName("Should replay the retried requests of a batch and remember the orders it creates")
+        void shouldReplayInBatch() {
+            // given
+            InMemoryOrderRepository inMemoryRepository = spy(new InMemoryOrderRepository());
+            OrderService service = new OrderService(inMemoryRepository, new OrderCalculatorV2(), null, null, null, window);
+            Order earlier = service.createOrder("order1", 100, 2, 0.1);
+
+            // when
+            OrderBatchResult result = service.createOrders(List.of(
+                    new OrderRequest("order2", 50, 1, 0),
+                    new OrderRequest("order1", 100, 2, 0.1),
+                    new OrderRequest("order1", 100, 3, 0.1)));
+            Order retried = service.createOrder("order2", 50, 1, 0);
+
+            // then
+            assertThat(result.getCreated()).extracting(Order::getOrderId).containsExactly("order2", "order1");
+            assertThat(result.getCreated().get(1)).isSameAs(earlier);
+            assertThat(result.getFailures())
+                    .singleElement()
+                    .extracting(OrderBatchResult.Failure::getIndex, OrderBatchResult.Failure::getReason)
+                    .containsExactly(2, "Order already exists");
+            assertThat(retried).isSameAs(result.getCreated().get(0));
+            assertThat(window.replayCount()).isEqualTo(2);
+            verify(inMemoryRepository).saveAll(argThat(orders -> orders.size() == 1));
+        }
+    }
+
+    @Nested
+    @DisplayName("Result API Tests")
+    class ResultTests {
+
+        @Test
+        @DisplayName("Should return the created order as a success")
+        void shouldReturnSuccess() {
+            // given
+            when(calculator.calculateTotal(100.0, 2, 0.1, 0, 0)).thenReturn(220.0);
+
+            // when
+            OrderResult result = orderService.tryCreateOrder("order1", 100.0, 2, 0.1);
+
+            // then
+            assertThat(result).isInstanceOf(OrderResult.Success.class);
+            assertThat(((OrderResult.Success) result).getOrder().getAmount()).isEqualTo(220.0);
+            verify(repository).save(any(Order.class));
+        }
+
+        @Test
+        @DisplayName("Should reject with shared results instead of exceptions")
+        void shouldReturnSharedRejections() {
+            // given
+            Order cancelled = new Order("order1", 100.0);
+            cancelled.setStatus(OrderStatus.CANCELLED);
+            when(repository.findById("order1")).thenReturn(Optional.of(cancelled));
+            when(repository.findById("missing")).thenReturn(Optional.empty());
+            when(repository.exists("order1")).thenReturn(true);
+
+            // when
+            OrderResult missing = orderService.tryConfirmOrder("missing");
+            OrderResult missingAgain = orderService.tryCancelOrder("missing");
+            OrderResult invalid = orderService.tryConfirmOrder("order1");
+            OrderResult duplicate = orderService.tryCreateOrder("order1", 100.0, 2, 0.1);
+
+            // then
+            assertThat(missing).isSameAs(missingAgain);
+            assertThat(missing.isSuccess()).isFalse();
+            assertThat(((OrderResult.Rejected) invalid).getReason()).isEqualTo(OrderResult.Reason.INVALID_TRANSITION);
+            assertThat(((OrderResult.Rejected) invalid).getMessage()).isEqualTo("Cannot confirm cancelled order");
+            assertThat(((OrderResult.Rejected) duplicate).getReason()).isEqualTo(OrderResult.Reason.DUPLICATE);
+            assertThatThrownBy(duplicate::orderOrThrow)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Order already exists");
+        }
+
+        @Test
+        @DisplayName("Should reject negative values without pricing them")
+        void shouldRejectNegativeValues() {
+            // when
+            OrderResult result = orderService.tryCreateOrder("order1", -1.0, 2, 0.1);
+
+            // then
+            assertThat(((OrderResult.Rejected) result).getMessage()).isEqualTo("Negative values are not allowed");
+            verifyNoInteractions(calculator);
+            verify(repository, never()).save(any(Order.class));
+        }
+    }
 }
@@ -0,0 +1,40 @@
+package com.sda;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("OrderStatus Test - The transition table")
+class OrderStatusTest {
+
+    @ParameterizedTest(name = "{0} -> {1}: {2}")
+    @CsvSource({
+            "CREATED,   CREATED,   false",
+            "CREATED,   CONFIRMED, true",
+            "CREATED,   CANCELLED, true",
+            "CONFIRMED, CREATED,   false",
+            "CONFIRMED, CONFIRMED, true",
+            "CONFIRMED, CANCELLED, false",
+            "CANCELLED, CREATED,   false",
+            "CANCELLED, CONFIRMED, false",
+            "CANCELLED, CANCELLED, true"
+    })
+    @DisplayName("Should allow exactly the transitions in the table")
+    void shouldAllowTransitionsFromTable(OrderStatus from, OrderStatus to, boolean allowed) {
+        // when & then
+        assertThat(from.canTransitionTo(to)).isEqualTo(allowed);
+    }
+
+    @Test
+    @DisplayName("Should describe rejected transitions like the services always did")
+    void shouldDescribeRejectedTransitions() {
+        // when & then
+        assertThat(OrderStatus.CANCELLED.rejectionMessage(OrderStatus.CONFIRMED)).isEqualTo("Cannot confirm cancelled order");
+        assertThat(OrderStatus.CONFIRMED.rejectionMessage(OrderStatus.CANCELLED)).isEqualTo("Cannot cancel confirmed order");
+        assertThat(OrderStatus.CANCELLED.acceptsUpdates()).isFalse();
+        assertThat(OrderStatus.CONFIRMED.acceptsUpdates()).isTrue();
+    }
+}
@@ -0,0 +1,186 @@
+package com.sda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("OrderStore Test - Columnar orders behind flyweight views")
+class OrderStoreTest {
+
+    private OrderStore store; // SUT
+
+    @BeforeEach
+    void setUp() {
+        store = new OrderStore(16);
+    }
+
+    @Nested
+    @DisplayName("Id column")
+    class IdColumnTests {
+
+        @Test
+        @DisplayName("Should find numeric and textual ids")
+        void shouldFindNumericAndTextualIds() {
+            // given
+            store.save(new Order("123", 10.0));
+            store.save(new Order("order-1", 20.0));
+            store.save(new Order("007", 30.0));
+
+            // when & then
+            assertThat(store.findById("123")).get().extracting(Order::getAmount).isEqualTo(10.0);
+            assertThat(store.findById("order-1")).get().extracting(Order::getAmount).isEqualTo(20.0);
+            assertThat(store.findById("007")).get().extracting(Order::getAmount).isEqualTo(30.0);
+            assertThat(store.exists("7")).isFalse();
+            assertThat(store.exists("124")).isFalse();
+        }
+
+        @Test
+        @DisplayName("Should give back the original id text")
+        void shouldGiveBackOriginalIdText() {
+            // given
+            store.save(new Order("42", 1.0));
+            store.save(new Order("007", 1.0));
+
+            // when & then
+            assertThat(store.orderIdAt(0)).isEqualTo("42");
+            assertThat(store.get(1).getOrderId()).isEqualTo("007");
+        }
+
+        @Test
+        @DisplayName("Should keep every order findable while growing")
+        void shouldKeepOrdersFindableWhileGrowing() {
+            // given
+            for (int i = 0; i < 10_000; i++) {
+                store.save(new Order(String.valueOf(i), i));
+            }
+
+            // when & then
+            assertThat(store.size()).isEqualTo(10_000);
+            assertThat(store.findById("9999")).get().extracting(Order::getAmount).isEqualTo(9999.0);
+            assertThat(store.findById("0")).get().extracting(Order::getAmount).isEqualTo(0.0);
+        }
+
+        @Test
+        @DisplayName("Should find textual ids while another thread adds them")
+        void shouldFindTextualIdsWhileWriting() throws InterruptedException {
+            // given
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    store.save(new Order("order-" + i, i));
+                }
+            });
+
+            List<String> missed = new ArrayList<>();
+
+            // when
+            writer.start();
+            while (writer.isAlive()) {
+                int row = store.size() - 1;
+                if (row >= 0 && !store.exists(store.orderIdAt(row))) {
+                    missed.add(store.orderIdAt(row));
+                }
+            }
+            writer.join();
+
+            // then
+            assertThat(missed).isEmpty();
+            assertThat(store.orderIdAt(9_999)).isEqualTo("order-9999");
+            assertThat(store.findById("order-9999")).get().extracting(Order::getAmount).isEqualTo(9999.0);
+        }
+    }
+
+    @Nested
+    @DisplayName("Flyweight views")
+    class ViewTests {
+
+        @Test
+        @DisplayName("Should write status changes through the view")
+        void shouldWriteStatusThroughView() {
+            // given
+            store.save(new Order("1", 100.0));
+            Order view = store.findById("1").orElseThrow();
+
+            // when
+            view.setStatus(OrderStatus.CONFIRMED);
+
+            // then
+            assertThat(store.statusAt(0)).isEqualTo(OrderStatus.CONFIRMED);
+            assertThat(store.findById("1")).get().extracting(Order::getStatus).isEqualTo(OrderStatus.CONFIRMED);
+        }
+
+        @Test
+        @DisplayName("Should keep the exact amount of an order")
+        void shouldKeepExactAmount() {
+            // given
+            store.save(new Order("1", 1999, 2));
+            store.save(new Order("2", 5.0));
+
+            // when
+            Order exact = store.findById("1").orElseThrow();
+            Order inexact = store.findById("2").orElseThrow();
+
+            // then
+            assertThat(exact.hasExactAmount()).isTrue();
+            assertThat(exact.getAmountMinor()).isEqualTo(1999);
+            assertThat(exact.getScale()).isEqualTo(2);
+            assertThat(exact.getAmount()).isEqualTo(19.99);
+            assertThat(inexact.hasExactAmount()).isFalse();
+            assertThat(inexact.getScale()).isEqualTo(-1);
+        }
+
+        @Test
+        @DisplayName("Should see version changes through the view")
+        void shouldCompareAndUpdateOnVersion() {
+            // given
+            store.save(new Order("1", 100.0));
+            Order view = store.findById("1").orElseThrow();
+
+            // when
+            boolean first = store.compareAndUpdate(view.withStatus(OrderStatus.CONFIRMED), 0);
+            boolean stale = store.compareAndUpdate(new Order("1", 100.0).withStatus(OrderStatus.CANCELLED), 0);
+
+            // then
+            assertThat(first).isTrue();
+            assertThat(stale).isFalse();
+            assertThat(view.getVersion()).isEqualTo(1);
+            assertThat(view.getStatus()).isEqualTo(OrderStatus.CONFIRMED);
+            assertThat(store.versionAt(0)).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("Should work behind OrderService and OrderAuditService")
+        void shouldWorkBehindTheServices() {
+            // given
+            OrderService orderService = new OrderService(store, new OrderCalculatorV2());
+            OrderAuditService auditService = new OrderAuditService(store);
+            orderService.createOrder("1", 100, 2, 0.1);
+            orderService.createOrder("2", 50, 1, 0);
+
+            // when
+            orderService.cancelOrder("2");
+            auditService.processOrderUpdate(List.of(store.get(0), store.get(1)));
+
+            // then
+            assertThat(store.statusAt(1)).isEqualTo(OrderStatus.CANCELLED);
+            assertThat(auditService.getAuditLogs())
+                    .singleElement()
+                    .asString()
+                    .endsWith("Order 1: UPDATED");
+        }
+
+        @Test
+        @DisplayName("Should reject updates of unknown orders")
+        void shouldRejectUpdateOfUnknownOrder() {
+            // when & then
+            assertThatThrownBy(() -> store.update(new Order("1", 100.0)))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Order not found");
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.sda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("ShardedOrderRepository Test - Orders partitioned by consistent hashing")
+class ShardedOrderRepositoryTest {
+
+    private final Map<String, InMemoryOrderRepository> shards = new LinkedHashMap<>();
+    private ShardedOrderRepository repository; // SUT
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 4; i++) {
+            shards.put("shard-" + i, new InMemoryOrderRepository());
+        }
+        repository = new ShardedOrderRepository(shards);
+    }
+
+    private List<String> saveOrders(int count) {
+        List<String> orderIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            orderIds.add("order-" + i);
+            repository.save(new Order("order-" + i, i));
+        }
+        return orderIds;
+    }
+
+    @Nested
+    @DisplayName("Routing")
+    class RoutingTests {
+
+        @Test
+        @DisplayName("Should store every order on exactly one shard, spread evenly")
+        void shouldSpreadOrdersEvenly() {
+            // when
+            List<String> orderIds = saveOrders(10_000);
+
+            // then
+            assertThat(shards.values()).allSatisfy(shard -> assertThat(shard.size()).isBetween(2_000, 3_000));
+            assertThat(shards.values().stream().mapToInt(InMemoryOrderRepository::size).sum()).isEqualTo(10_000);
+            assertThat(orderIds).allSatisfy(orderId -> {
+                assertThat(repository.findById(orderId)).isPresent();
+                assertThat(shards.get(repository.shardOf(orderId)).exists(orderId)).isTrue();
+            });
+        }
+
+        @Test
+        @DisplayName("Should split bulk calls by shard and merge the results")
+        void shouldScatterBulkCalls() {
+            // given
+            List<Order> orders = IntStream.range(0, 100).mapToObj(i -> new Order("bulk-" + i, i)).collect(Collectors.toList());
+            repository.saveAll(orders);
+
+            // when
+            Set<String> existing = repository.existsAll(List.of("bulk-1", "bulk-50", "bulk-99", "missing"));
+            repository.updateAll(orders.stream().map(o -> o.withStatus(OrderStatus.CONFIRMED)).collect(Collectors.toList()));
+
+            // then
+            assertThat(existing).containsExactlyInAnyOrder("bulk-1", "bulk-50", "bulk-99");
+            assertThat(shards.values()).allSatisfy(shard -> assertThat(shard.size()).isPositive());
+            assertThat(repository.findById("bulk-7")).get().extracting(Order::getStatus).isEqualTo(OrderStatus.CONFIRMED);
+        }
+
+        @Test
+        @DisplayName("Should delete an order from its shard")
+        void shouldDeleteFromOwner() {
+            // given
+            saveOrders(10);
+
+            // when
+            repository.delete("order-3");
+
+            // then
+            assertThat(repository.exists("order-3")).isFalse();
+            assertThat(shards.values().stream().mapToInt(InMemoryOrderRepository::size).sum()).isEqualTo(9);
+        }
+    }
+
+    @Nested
+    @DisplayName("Rebalancing")
+    class RebalancingTests {
+
+        @Test
+        @DisplayName("Should only move orders to a new shard, about a fifth of them for the fifth shard")
+        void shouldMoveMinimalKeysOnAdd() {
+            // given
+            List<String> orderIds = saveOrders(10_000);
+            Map<String, String> ownersBefore = new HashMap<>();
+            orderIds.forEach(orderId -> ownersBefore.put(orderId, repository.shardOf(orderId)));
+
+            // when
+            repository.addShard("shard-4", new InMemoryOrderRepository());
+
+            // then
+            List<String> changed = orderIds.stream()
+                    .filter(orderId -> !repository.shardOf(orderId).equals(ownersBefore.get(orderId)))
+                    .collect(Collectors.toList());
+            assertThat(changed.size()).isBetween(1_500, 2_500);
+            assertThat(changed).allSatisfy(orderId -> assertThat(repository.shardOf(orderId)).isEqualTo("shard-4"));
+        }
+
+        @Test
+        @DisplayName("Should find and update moved orders before and after rebalance")
+        void shouldServeOrdersWhileRebalancing() {
+            // given
+            List<String> orderIds = saveOrders(1_000);
+            InMemoryOrderRepository added = new InMemoryOrderRepository();
+            repository.addShard("shard-4", added);
+            String moved = orderIds.stream().filter(id -> repository.shardOf(id).equals("shard-4")).findFirst().orElseThrow();
+            Order order = repository.findById(moved).orElseThrow();
+
+            // when
+            boolean updated = repository.compareAndUpdate(order.withStatus(OrderStatus.CONFIRMED), order.getVersion());
+            int movedCount = repository.rebalance(orderIds);
+
+            // then
+            assertThat(updated).isTrue();
+            assertThat(movedCount).isEqualTo(added.size() - 1);
+            assertThat(orderIds).allSatisfy(orderId -> assertThat(added.exists(orderId))
+                    .isEqualTo(repository.shardOf(orderId).equals("shard-4")));
+            assertThat(repository.findById(moved)).get().extracting(Order::getStatus).isEqualTo(OrderStatus.CONFIRMED);
+        }
+
+        @Test
+        @DisplayName("Should keep every order reachable after a shard is removed")
+        void shouldMoveOrdersOffRemovedShard() {
+            // given
+            List<String> orderIds = saveOrders(1_000);
+
+            // when
+            repository.removeShard("shard-0");
+            repository.rebalance(orderIds);
+
+            // then
+            assertThat(repository.shardNames()).doesNotContain("shard-0");
+            assertThat(repository.existsAll(orderIds)).hasSize(1_000);
+        }
+
+        @Test
+        @DisplayName("Should keep the newest version of a moved order when its new shard is removed again")
+        void shouldNotResurrectStaleCopies() {
+            // given
+            List<String> orderIds = saveOrders(1_000);
+            InMemoryOrderRepository added = new InMemoryOrderRepository();
+            repository.addShard("shard-4", added);
+            String moved = orderIds.stream().filter(id -> repository.shardOf(id).equals("shard-4")).findFirst().orElseThrow();
+            String oldOwner = new ShardedOrderRepository(shards).shardOf(moved);
+            Order order = repository.findById(moved).orElseThrow();
+            repository.compareAndUpdate(order.withStatus(OrderStatus.CONFIRMED), order.getVersion());
+
+            // when
+            repository.removeShard("shard-4");
+            repository.rebalance(orderIds);
+
+            // then
+            assertThat(shards.get(oldOwner).findById(moved)).get().extracting(Order::getVersion).isEqualTo(1);
+            assertThat(repository.findById(moved)).get().extracting(Order::getStatus).isEqualTo(OrderStatus.CONFIRMED);
+            assertThat(added.exists(moved)).isFalse();
+        }
+
+        @Test
+        @DisplayName("Should delete an order and the copies left on its earlier owners")
+        void shouldDeleteWhileRebalancing() {
+            // given
+            List<String> orderIds = saveOrders(1_000);
+            repository.addShard("shard-4", new InMemoryOrderRepository());
+            String notMoved = orderIds.stream().filter(id -> repository.shardOf(id).equals("shard-4")).findFirst().orElseThrow();
+            String oldOwner = new ShardedOrderRepository(shards).shardOf(notMoved);
+            String kept = orderIds.stream().filter(id -> !id.equals(notMoved)).findFirst().orElseThrow();
+
+            // when
+            repository.delete(notMoved);
+            repository.delete(kept);
+            repository.rebalance(orderIds);
+
+            // then
+            assertThat(shards.get(oldOwner).exists(notMoved)).isFalse();
+            assertThat(repository.findById(notMoved)).isEmpty();
+            assertThat(repository.existsAll(orderIds)).hasSize(998).doesNotContain(notMoved, kept);
+        }
+
+        @Test
+        @DisplayName("Should refuse to remove the last shard")
+        void shouldKeepLastShard() {
+            // given
+            ShardedOrderRepository single = new ShardedOrderRepository(Map.of("only", new InMemoryOrderRepository()));
+
+            // when / then
+            assertThatThrownBy(() -> single.removeShard("only"))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Cannot remove the last shard");
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.sda;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("StreamingAuditLog Test - Audit entries streamed to segment files")
+class StreamingAuditLogTest {
+
+    @TempDir
+    Path directory;
+
+    private StreamingAuditLog log; // SUT
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // 70 byte segments hold 5 entries: the first one with label and action names takes 29 bytes, later ones 10
+        log = new StreamingAuditLog(directory, 70, Duration.ofHours(1), 32, Duration.ofSeconds(1));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        log.close();
+    }
+
+    private void append(int count) {
+        for (int i = 0; i < count; i++) {
+            log.append(1_000L * i, "2024-01-01", "UPDATED", "order" + i);
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Nested
+    @DisplayName("Writing")
+    class WritingTests {
+
+        @Test
+        @DisplayName("Should read back committed and buffered entries in order")
+        void shouldReadCommittedAndBufferedEntries() {
+            // given
+            append(3);
+
+            // when
+            List<String> entries = log.renderAll();
+
+            // then
+            assertThat(entries).containsExactly(
+                    "[2024-01-01] Order order0: UPDATED",
+                    "[2024-01-01] Order order1: UPDATED",
+                    "[2024-01-01] Order order2: UPDATED");
+            assertThat(log.size()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("Should commit the buffer once its oldest entry is older than the commit interval")
+        void shouldCommitAfterInterval(@TempDir Path copy) throws IOException {
+            // given - a buffer that holds both entries, so only the interval can commit them
+            log.close();
+            Files.delete(segmentFiles().get(0));
+            log = new StreamingAuditLog(directory, 70, Duration.ofHours(1), 64, Duration.ofSeconds(1));
+
+            // when
+            log.append(0, "2024-01-01", "UPDATED", "order0");
+            long sizeBefore = Files.size(segmentFiles().get(0));
+            log.append(1_000, "2024-01-01", "UPDATED", "order1");
+
+            // then - a log opened on a copy of the segment, taken while this one is still open, reads both
+            assertThat(sizeBefore).isZero();
+            Path segment = segmentFiles().get(0);
+            Files.copy(segment, copy.resolve(segment.getFileName()));
+            try (StreamingAuditLog committed = new StreamingAuditLog(copy, 70, Duration.ofHours(1), 64, Duration.ofSeconds(1))) {
+                assertThat(committed.renderAll()).containsExactly(
+                        "[2024-01-01] Order order0: UPDATED",
+                        "[2024-01-01] Order order1: UPDATED");
+            }
+        }
+
+        @Test
+        @DisplayName("Should commit the buffer after the commit interval without another append")
+        void shouldCommitWhenIdle() throws Exception {
+            // given
+            log.close();
+            Files.delete(segmentFiles().get(0));
+            log = new StreamingAuditLog(directory, 70, Duration.ofHours(1), 64, Duration.ofMillis(50));
+
+            // when
+            log.append(0, "2024-01-01", "UPDATED", "order0");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (Files.size(segmentFiles().get(0)) == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            // then
+            assertThat(Files.size(segmentFiles().get(0))).isPositive();
+        }
+
+        @Test
+        @DisplayName("Should start a new segment when the current one is full")
+        void shouldRotateBySize() throws IOException {
+            // when
+            append(12);
+
+            // then
+            assertThat(segmentFiles()).hasSize(3);
+            assertThat(log.renderAll()).hasSize(12).last().asString().contains("order11");
+        }
+
+        @Test
+        @DisplayName("Should start a new segment when the current one gets too old")
+        void shouldRotateByAge() throws IOException {
+            // given
+            log.close();
+            Files.delete(segmentFiles().get(0));
+            log = new StreamingAuditLog(directory, 1_000_000, Duration.ofSeconds(2), 32, Duration.ofSeconds(1));
+
+            // when
+            append(5);
+
+            // then
+            assertThat(segmentFiles()).hasSize(3);
+        }
+
+        @Test
+        @DisplayName("Should read the segments of an earlier run")
+        void shouldReadExistingSegments() throws IOException {
+            // given
+            append(7);
+            log.close();
+
+            // when
+            log = new StreamingAuditLog(directory, 70, Duration.ofHours(1), 32, Duration.ofSeconds(1));
+            log.append(7_000, "2024-01-01", "UPDATED", "order7");
+
+            // then
+            assertThat(log.size()).isEqualTo(8);
+            assertThat(log.renderAll()).hasSize(8).first().asString().contains("order0");
+        }
+    }
+
+    @Nested
+    @DisplayName("Write failures")
+    class WriteFailureTests {
+        private FailingChannel failing;
+
+        // a log whose segments are written through a channel that fails once its byte budget is used up
+        private StreamingAuditLog failingLog(Path directory, Duration commitInterval) throws IOException {
+            return new StreamingAuditLog(directory, 1024, Duration.ofHours(1), 32, commitInterval) {
+                @Override
+                FileChannel openChannel(Path file) throws IOException {
+                    failing = new FailingChannel(super.openChannel(file));
+                    return failing;
+                }
+            };
+        }
+
+        @Test
+        @DisplayName("Should keep the unwritten entries buffered when a commit fails halfway")
+        void shouldKeepEntriesAfterPartialWrite(@TempDir Path other) throws IOException {
+            // given
+            try (StreamingAuditLog failingLog = failingLog(other, Duration.ofHours(1))) {
+                failingLog.append(0, "2024-01-01", "UPDATED", "order0");
+                failing.writable = 10;
+
+                // when
+                assertThatThrownBy(() -> failingLog.append(1_000, "2024-01-01", "UPDATED", "order1"))
+                        .isInstanceOf(UncheckedIOException.class);
+                List<String> afterFailure = failingLog.renderAll();
+                failing.writable = Long.MAX_VALUE;
+                failingLog.append(1_000, "2024-01-01", "UPDATED", "order1");
+                failingLog.flush();
+
+                // then
+                assertThat(afterFailure).singleElement().asString().contains("order0");
+                assertThat(failingLog.renderAll()).hasSize(2).last().asString().contains("order1");
+            }
+            try (StreamingAuditLog reopened = new StreamingAuditLog(other)) {
+                assertThat(reopened.renderAll()).hasSize(2);
+            }
+        }
+
+        @Test
+        @DisplayName("Should report a failed commit of the flusher on the next flush")
+        void shouldReportFlusherFailure(@TempDir Path other) throws Exception {
+            // given
+            try (StreamingAuditLog failingLog = failingLog(other, Duration.ofMillis(50))) {
+                failing.writable = 5;
+                Path segment = other.resolve("audit-00000001.log");
+
+                // when
+                failingLog.append(0, "2024-01-01", "UPDATED", "order0");
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (Files.size(segment) == 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+
+                // then
+                assertThatThrownBy(failingLog::flush).isInstanceOf(UncheckedIOException.class);
+                failing.writable = Long.MAX_VALUE;
+                failingLog.flush();
+                assertThat(failingLog.renderAll()).singleElement().asString().contains("order0");
+            }
+            try (StreamingAuditLog reopened = new StreamingAuditLog(other)) {
+                assertThat(reopened.renderAll()).singleElement().asString().contains("order0");
+            }
+        }
+    }
+
+    // writes through to a real channel until writable bytes were written, then every write fails
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        volatile long writable = Long.MAX_VALUE;
+
+        private FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (writable == 0) {
+                throw new IOException("Disk full");
+            }
+            ByteBuffer slice = src.slice();
+            slice.limit((int) Math.min(slice.remaining(), writable));
+            int written = delegate.write(slice);
+            src.position(src.position() + written);
+            writable -= written;
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+
+    @Nested
+    @DisplayName("Reading")
+    class ReadingTests {
+
+        @Test
+        @DisplayName("Should only see the entries present when the stream was created")
+        void shouldStreamASnapshot() {
+            // given
+            append(6);
+
+            // when
+            try (Stream<String> entries = log.entries()) {
+                log.append(10_000, "2024-01-01", "UPDATED", "late");
+
+                // then
+                assertThat(entries).hasSize(6).noneMatch(entry -> entry.contains("late"));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Audit trail")
+    class TrailTests {
+
+        @Test
+        @DisplayName("Should find the entries of one order in committed segments and in the buffer")
+        void shouldFindTrailAcrossSegments() {
+            // given
+            for (int i = 0; i < 12; i++) {
+                log.append(1_000L * i, "2024-01-01", i % 3 == 0 ? "CREATED" : "UPDATED", "order" + i % 3);
+            }
+
+            // when
+            List<String> trail = log.trail("order0", 0, Long.MAX_VALUE);
+            List<String> range = log.trail("order0", 3_000, 9_000);
+
+            // then
+            assertThat(trail).hasSize(4).allMatch(entry -> entry.equals("[2024-01-01] Order order0: CREATED"));
+            assertThat(range).hasSize(2);
+            assertThat(log.trail("order1", 10_000, Long.MAX_VALUE)).containsExactly("[2024-01-01] Order order1: UPDATED");
+            assertThat(log.trail("unknown", 0, Long.MAX_VALUE)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("Should find the trail of an order audited in an earlier run, minus what retention removed")
+        void shouldRebuildTrailOnStartup() throws IOException {
+            // given
+            append(7);
+            log.append(7_000, "2024-01-01", "CANCELLED", "order3");
+            log.close();
+
+            // when
+            log = new StreamingAuditLog(directory, 70, Duration.ofHours(1), 32, Duration.ofSeconds(1));
+            log.append(8_000, "2024-01-01", "UPDATED", "order3");
+            log.removeOlderThan(5_000);
+
+            // then
+            assertThat(log.trail("order3", 0, Long.MAX_VALUE)).containsExactly(
+                    "[2024-01-01] Order order3: CANCELLED",
+                    "[2024-01-01] Order order3: UPDATED");
+        }
+
+        @Test
+        @DisplayName("Should match a full scan over many blocks")
+        void shouldMatchFullScan(@TempDir Path other) throws IOException {
+            // given
+            try (StreamingAuditLog large = new StreamingAuditLog(other, 64 * 1024, Duration.ofHours(1), 1024, Duration.ofSeconds(1))) {
+                for (int i = 0; i < 20_000; i++) {
+                    large.append(i, "2024-01-01T00:00:" + i / 1_000, i % 7 == 0 ? "CREATED" : "UPDATED", "order" + i % 97);
+                }
+
+                // when
+                List<String> trail = large.trail("order42", 0, Long.MAX_VALUE);
+
+                // then
+                assertThat(trail).hasSize(206).isEqualTo(large.renderAll().stream()
+                        .filter(entry -> entry.contains("Order order42:"))
+                        .collect(Collectors.toList()));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Retention")
+    class RetentionTests {
+
+        @Test
+        @DisplayName("Should delete old segments and skip old entries in the first one kept")
+        void shouldRemoveOldEntries() throws IOException {
+            // given
+            append(12);
+
+            // when
+            int removed = log.removeOlderThan(7_000);
+
+            // then
+            assertThat(removed).isEqualTo(7);
+            assertThat(segmentFiles()).hasSize(2);
+            assertThat(log.size()).isEqualTo(5);
+            assertThat(log.renderAll()).first().asString().contains("order7");
+        }
+
+        @Test
+        @DisplayName("Should keep the segment being written even when all of it is old")
+        void shouldKeepCurrentSegment() throws IOException {
+            // given
+            append(3);
+
+            // when
+            int removed = log.removeOlderThan(Long.MAX_VALUE);
+            log.append(20_000, "2024-01-01", "UPDATED", "order20");
+
+            // then
+            assertThat(removed).isEqualTo(3);
+            assertThat(segmentFiles()).hasSize(1);
+            assertThat(log.renderAll()).containsExactly("[2024-01-01] Order order20: UPDATED");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.sda.benchmark;
+
+import com.sda.AsyncOrderService;
+import com.sda.OrderCalculatorV2;
+import com.sda.OrderService;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Open loop load test: createOrder() calls arrive at a fixed rate against a repository with
+// injected latency, once through the blocking OrderService on a fixed pool of platform threads
+// and once through AsyncOrderService. Latency is measured from the moment a call was due,
+// so a queue building up in front of the pool shows in the percentiles.
+//
+//   mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sda.benchmark.AsyncOrderLoadRunner \
+//       -Dexec.args="<calls per second> <seconds> <repository latency ms> <pool threads> <max in flight>"
+//
+// Run it on Java 21 (-P jdk21) to get virtual threads, on 17 the async side uses platform threads
+public class AsyncOrderLoadRunner {
+    // every round creates new order ids
+    private static final AtomicInteger ROUNDS = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long latencyNanos = TimeUnit.MILLISECONDS.toNanos(args.length > 2 ? Long.parseLong(args[2]) : 2);
+        int poolThreads = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        int maxInFlight = args.length > 4 ? Integer.parseInt(args[4]) : 10_000;
+
+        System.out.printf("Java %s, %d calls/s for %d s, %d ms per repository call%n",
+                Runtime.version(), rate, seconds, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+
+        // each side gets a warm-up round at the same rate first, only the second round is reported
+        ExecutorService pool = Executors.newFixedThreadPool(poolThreads);
+        OrderService blocking = new OrderService(new LatencyInjectingOrderRepository(latencyNanos), new OrderCalculatorV2());
+        Call sync = (id, done) -> pool.execute(() -> {
+            blocking.createOrder(id, 100, 1, 0.2);
+            done.run();
+        });
+        run(null, rate, 1, sync);
+        run("sync, " + poolThreads + " threads", rate, seconds, sync);
+        pool.shutdown();
+
+        OrderService service = new OrderService(new LatencyInjectingOrderRepository(latencyNanos), new OrderCalculatorV2());
+        try (AsyncOrderService async = new AsyncOrderService(service, maxInFlight, Duration.ofSeconds(1))) {
+            Call asynchronous = (id, done) -> async.createOrder(id, 100, 1, 0.2).whenComplete((order, e) -> done.run());
+            run(null, rate, 1, asynchronous);
+            run("async, max " + maxInFlight + " in flight", rate, seconds, asynchronous);
+        }
+    }
+
+    interface Call {
+        void start(String orderId, Runnable done);
+    }
+
+    private static void run(String name, int rate, int seconds, Call call) throws InterruptedException {
+        int calls = rate * seconds;
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long[] latencies = new long[calls];
+        AtomicInteger completed = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(calls);
+        int round = ROUNDS.incrementAndGet();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < calls; i++) {
+            long due = start + i * interval;
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            int index = i;
+            call.start(round + "-" + i, () -> {
+                latencies[index] = System.nanoTime() - due;
+                completed.incrementAndGet();
+                finished.countDown();
+            });
+        }
+        finished.await();
+        long elapsed = System.nanoTime() - start;
+
+        if (name == null) {
+            return;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-28s %8.0f calls/s   p50 %7.2f ms   p99 %7.2f ms   max %7.2f ms%n",
+                name, completed.get() * 1e9 / elapsed,
+                latencies[calls / 2] / 1e6, latencies[(int) (calls * 0.99)] / 1e6, latencies[calls - 1] / 1e6);
+    }
+}
@@ -0,0 +1,61 @@
+package com.sda.benchmark;
+
+import com.sda.CachedAuditClock;
+import com.sda.OrderAuditService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// Cost of taking an audit timestamp: what recordAudit() used to do per entry (a clock read and
+// LocalDate.now().toString()) vs the CachedAuditClock, and a whole recordAudit() with the shared clock.
+// The service is rebuilt every iteration so its log stays small
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuditClockBenchmark {
+    private final CachedAuditClock clock = CachedAuditClock.system();
+    private OrderAuditService service;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        service = new OrderAuditService(null);
+    }
+
+    @Benchmark
+    public String systemClockAndDayLabel() {
+        System.currentTimeMillis();
+        return LocalDate.now().toString();
+    }
+
+    @Benchmark
+    public long systemCurrentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public long cachedEpochMicros() {
+        return clock.epochMicros();
+    }
+
+    // 32 audit writers taking timestamps from the shared system clock at once
+    @Benchmark
+    @Threads(32)
+    public long cachedEpochMicrosContended() {
+        return clock.epochMicros();
+    }
+
+    @Benchmark
+    public String cachedEpochMicrosAndLabel() {
+        clock.epochMicros();
+        return clock.currentLabel();
+    }
+
+    @Benchmark
+    public void recordAudit() {
+        service.recordAudit("UPDATED", "order-1");
+    }
+}
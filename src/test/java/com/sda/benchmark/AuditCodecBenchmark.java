@@ -0,0 +1,110 @@
+package com.sda.benchmark;
+
+import com.sda.AuditRecordCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Binary AuditRecordCodec records vs text lines "<millis> [timestamp] Order id: ACTION".
+// Encoding writes a batch of entries into a ByteBuffer, decoding reads back timestamp, action and order id.
+// Scores are per batch, the bytes per entry of both formats are printed once at setup
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuditCodecBenchmark {
+    private static final int ENTRIES = 4096;
+    private static final String LABEL = "2024-01-01";
+
+    private final long[] timestamps = new long[ENTRIES];
+    private final String[] actions = new String[ENTRIES];
+    private final String[] orderIds = new String[ENTRIES];
+    private final AuditRecordCodec.Encoder encoder = new AuditRecordCodec.Encoder();
+    private ByteBuffer buffer;
+    private ByteBuffer binary;
+    private byte[] text;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long now = 1_700_000_000_000L;
+        for (int i = 0; i < ENTRIES; i++) {
+            now += random.nextInt(50);
+            timestamps[i] = now;
+            actions[i] = random.nextInt(10) == 0 ? "UPDATED_FAILED" : "UPDATED";
+            orderIds[i] = "order-" + random.nextInt(1_000_000);
+        }
+        buffer = ByteBuffer.allocate(ENTRIES * 64);
+        binary = ByteBuffer.allocate(ENTRIES * 64);
+        encodeBinary(binary);
+        binary.flip();
+        ByteBuffer textBuffer = ByteBuffer.allocate(ENTRIES * 64);
+        encodeText(textBuffer);
+        text = new byte[textBuffer.position()];
+        textBuffer.flip().get(text);
+        System.out.printf("%nbytes per entry: binary %.1f, text %.1f%n",
+                (double) binary.limit() / ENTRIES, (double) text.length / ENTRIES);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeBinary() {
+        buffer.clear();
+        return encodeBinary(buffer);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeText() {
+        buffer.clear();
+        return encodeText(buffer);
+    }
+
+    @Benchmark
+    public void decodeBinary(Blackhole blackhole) {
+        AuditRecordCodec.Decoder decoder = new AuditRecordCodec.Decoder();
+        ByteBuffer records = binary.duplicate();
+        while (decoder.next(records)) {
+            blackhole.consume(decoder.timestamp());
+            blackhole.consume(decoder.action());
+            blackhole.consume(decoder.orderId());
+        }
+    }
+
+    @Benchmark
+    public void decodeText(Blackhole blackhole) {
+        int start = 0;
+        for (int i = 0; i < text.length; i++) {
+            if (text[i] == '\n') {
+                String line = new String(text, start, i - start, StandardCharsets.UTF_8);
+                int space = line.indexOf(' ');
+                int order = line.indexOf("] Order ", space);
+                int colon = line.lastIndexOf(": ");
+                blackhole.consume(Long.parseLong(line, 0, space, 10));
+                blackhole.consume(line.substring(colon + 2));
+                blackhole.consume(line.substring(order + 8, colon));
+                start = i + 1;
+            }
+        }
+    }
+
+    private ByteBuffer encodeBinary(ByteBuffer target) {
+        encoder.reset();
+        for (int i = 0; i < ENTRIES; i++) {
+            encoder.encode(target, timestamps[i], LABEL, actions[i], orderIds[i]);
+        }
+        return target;
+    }
+
+    private ByteBuffer encodeText(ByteBuffer target) {
+        for (int i = 0; i < ENTRIES; i++) {
+            target.put((timestamps[i] + " [" + LABEL + "] Order " + orderIds[i] + ": " + actions[i] + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        return target;
+    }
+}
@@ -0,0 +1,51 @@
+package com.sda.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+// Measures the cost of a clearOldEntries() call that trims the oldest entry
+// while the log holds a steady number of entries.
+// With the time ordered segments the score should stay flat as logSize grows
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class AuditRetentionBenchmark {
+
+    @Param({"10000", "100000", "1000000", "5000000"})
+    private int logSize;
+
+    private static final String[] ORDER_IDS = new String[1024];
+
+    static {
+        for (int i = 0; i < ORDER_IDS.length; i++) {
+            ORDER_IDS[i] = "order-" + i;
+        }
+    }
+
+    private SteppingAuditService service;
+    private long oldest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new SteppingAuditService();
+        for (int i = 0; i < logSize; i++) {
+            service.recordAudit("UPDATED", ORDER_IDS[i & (ORDER_IDS.length - 1)]);
+        }
+        oldest = 0;
+    }
+
+    @Benchmark
+    public int recordAndTrimOldest() {
+        service.recordAudit("UPDATED", ORDER_IDS[(int) (oldest & (ORDER_IDS.length - 1))]);
+        oldest++;
+        LocalDateTime cutoff = LocalDateTime.ofInstant(Instant.ofEpochMilli(oldest), ZoneId.systemDefault());
+        return service.clearOldEntries(cutoff);
+    }
+}
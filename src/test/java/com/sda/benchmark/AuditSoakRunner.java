@@ -0,0 +1,57 @@
+package com.sda.benchmark;
+
+import com.sda.StreamingAuditLog;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Soak test for StreamingAuditLog: a simulated day of audits at a steady rate, with hourly retention.
+// Time is simulated through the entries' timestamps, so 24 hours run in seconds. Heap use after a GC
+// and the number of segment files are printed every simulated hour, both should stay flat.
+//
+//   mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sda.benchmark.AuditSoakRunner \
+//       -Dexec.args="<hours> <entries per simulated second> <hours kept>"
+public class AuditSoakRunner {
+
+    public static void main(String[] args) throws Exception {
+        int hours = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int hoursKept = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        Path directory = Files.createTempDirectory("audit-soak");
+        long hour = TimeUnit.HOURS.toMillis(1);
+        long step = Math.max(1, 1000 / rate);
+        Runtime runtime = Runtime.getRuntime();
+        try (StreamingAuditLog log = new StreamingAuditLog(directory, 8 * 1024 * 1024, Duration.ofMinutes(15),
+                64 * 1024, Duration.ofMillis(100))) {
+            long now = 0;
+            long id = 0;
+            for (int h = 1; h <= hours; h++) {
+                for (long end = h * hour; now < end; now += step) {
+                    log.append(now, "2024-01-01", (id & 7) == 0 ? "UPDATED_FAILED" : "UPDATED", "order-" + id++);
+                }
+                log.removeOlderThan(now - hoursKept * hour);
+                System.gc();
+                long usedKb = (runtime.totalMemory() - runtime.freeMemory()) / 1024;
+                System.out.printf("hour %2d: %,d entries kept, %d segments, %,d KB heap used%n",
+                        h, log.size(), segmentCount(directory), usedKb);
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static long segmentCount(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
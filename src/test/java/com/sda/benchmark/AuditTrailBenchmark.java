@@ -0,0 +1,55 @@
+package com.sda.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Audit trail of one order: the per-order index behind getAuditTrail() vs filtering getAuditLogs(),
+// which is what support tooling did before. The log holds logSize entries spread over 1000 orders
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class AuditTrailBenchmark {
+    private static final int ORDERS = 1000;
+
+    @Param({"10000", "1000000"})
+    private int logSize;
+
+    private SteppingAuditService service;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        service = new SteppingAuditService();
+        for (int i = 0; i < logSize; i++) {
+            service.recordAudit("UPDATED", "order-" + (i % ORDERS));
+        }
+    }
+
+    private String nextOrder() {
+        next = (next + 1) % ORDERS;
+        return "order-" + next;
+    }
+
+    @Benchmark
+    public List<String> indexed() {
+        return service.getAuditTrail(nextOrder());
+    }
+
+    @Benchmark
+    public List<String> scanAuditLogs() {
+        String marker = "] Order " + nextOrder() + ": ";
+        List<String> trail = new ArrayList<>();
+        for (String entry : service.getAuditLogs()) {
+            if (entry.contains(marker)) {
+                trail.add(entry);
+            }
+        }
+        return trail;
+    }
+}
@@ -0,0 +1,96 @@
+package com.sda.benchmark;
+
+import com.sda.CachingOrderRepository;
+import com.sda.InMemoryOrderRepository;
+import com.sda.Order;
+import com.sda.OrderRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// findById() latency for a Zipfian (skewed) key distribution, straight to the repository vs through
+// the cache. The repository adds latencyMicros per call to stand in for a remote database,
+// with 0 the score is the pure overhead of the cache. The hit ratio is printed after each trial
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class CachingOrderRepositoryBenchmark {
+    private static final int ORDERS = 1_000_000;
+    private static final int SAMPLES = 1 << 20;
+    // the usual skew of "most traffic goes to a few recent orders"
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    @Param({"0", "100"})
+    private int latencyMicros;
+
+    @Param({"10000"})
+    private int cacheSize;
+
+    private OrderRepository direct;
+    private CachingOrderRepository cached;
+    private String[] keys;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next = new Random().nextInt(SAMPLES);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryOrderRepository orders = new InMemoryOrderRepository(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            orders.save(new Order(String.valueOf(i), 100.0));
+        }
+        direct = new LatencyInjectingOrderRepository(orders, TimeUnit.MICROSECONDS.toNanos(latencyMicros));
+        cached = new CachingOrderRepository(direct, cacheSize);
+        keys = zipfianKeys();
+    }
+
+    @TearDown(Level.Trial)
+    public void printHitRatio() {
+        long hits = cached.hitCount();
+        long total = hits + cached.missCount();
+        if (total > 0) {
+            System.out.printf("%nhit ratio %.1f%%, %d evictions%n", 100.0 * hits / total, cached.evictionCount());
+        }
+    }
+
+    @Benchmark
+    public Optional<Order> direct(Cursor cursor) {
+        return direct.findById(nextKey(cursor));
+    }
+
+    @Benchmark
+    public Optional<Order> cached(Cursor cursor) {
+        return cached.findById(nextKey(cursor));
+    }
+
+    private String nextKey(Cursor cursor) {
+        cursor.next = (cursor.next + 1) & (SAMPLES - 1);
+        return keys[cursor.next];
+    }
+
+    // draws ranks from the Zipf distribution by inverting its CDF, the ranks are scattered over the ids
+    private static String[] zipfianKeys() {
+        double[] cdf = new double[ORDERS];
+        double sum = 0;
+        for (int rank = 0; rank < ORDERS; rank++) {
+            sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cdf[rank] = sum;
+        }
+        Random random = new Random(42);
+        String[] keys = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            rank = rank < 0 ? -rank - 1 : rank;
+            keys[i] = String.valueOf((rank * 0x9E3779B1L & 0x7FFFFFFFL) % ORDERS);
+        }
+        return keys;
+    }
+}
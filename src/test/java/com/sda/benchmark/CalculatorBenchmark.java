@@ -0,0 +1,51 @@
+package com.sda.benchmark;
+
+import com.sda.Calculator;
+import com.sda.OrderCalculator;
+import com.sda.OrderCalculatorV2;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of a single call of each calculator. The inputs are read from fields
+// so the JIT can't fold the whole call into a constant
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculatorBenchmark {
+
+    private final Calculator calculator = new Calculator();
+    private final OrderCalculator orderCalculator = new OrderCalculator();
+    private final OrderCalculatorV2 orderCalculatorV2 = new OrderCalculatorV2();
+
+    private int x = 1_000_003;
+    private int y = 17;
+    private double itemPrice = 19.99;
+    private int itemCount = 3;
+    private double taxRate = 0.23;
+    private double discount = 5;
+    private double discountThreshold = 50;
+
+    @Benchmark
+    public int add() {
+        return calculator.add(x, y);
+    }
+
+    @Benchmark
+    public int divide() {
+        return calculator.divide(x, y);
+    }
+
+    @Benchmark
+    public double orderCalculator() {
+        return orderCalculator.calculateTotal(itemPrice, itemCount, taxRate, discount);
+    }
+
+    @Benchmark
+    public double orderCalculatorV2() {
+        return orderCalculatorV2.calculateTotal(itemPrice, itemCount, taxRate, discount, discountThreshold);
+    }
+}
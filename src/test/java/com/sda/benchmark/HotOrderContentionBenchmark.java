@@ -0,0 +1,55 @@
+package com.sda.benchmark;
+
+import com.sda.InMemoryOrderRepository;
+import com.sda.Order;
+import com.sda.OrderCalculatorV2;
+import com.sda.OrderService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Every thread keeps confirming the same few hot orders, each confirm is a compareAndUpdate()
+// that bumps the version, so threads race on every call.
+// Run it several times with -t 1, -t 2, -t 4 ... to see throughput as contention grows.
+// gaveUp counts calls that ran out of attempts, it should stay at 0
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotOrderContentionBenchmark {
+
+    @Param({"1", "16", "1024"})
+    private int hotOrders;
+
+    private OrderService orderService;
+    private String[] orderIds;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Outcome {
+        public long gaveUp;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryOrderRepository repository = new InMemoryOrderRepository();
+        orderService = new OrderService(repository, new OrderCalculatorV2());
+        orderIds = new String[hotOrders];
+        for (int i = 0; i < hotOrders; i++) {
+            orderIds[i] = "hot-" + i;
+            repository.save(new Order(orderIds[i], 100.0));
+        }
+    }
+
+    @Benchmark
+    public void confirm(Outcome outcome) {
+        try {
+            orderService.confirmOrder(orderIds[ThreadLocalRandom.current().nextInt(hotOrders)]);
+        } catch (IllegalStateException e) {
+            outcome.gaveUp++;
+        }
+    }
+}
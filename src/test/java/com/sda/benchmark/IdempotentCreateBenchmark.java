@@ -0,0 +1,81 @@
+package com.sda.benchmark;
+
+import com.sda.IdempotencyWindow;
+import com.sda.InMemoryOrderRepository;
+import com.sda.OrderCalculatorV2;
+import com.sda.OrderService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// createOrder() throughput when retryRate of the calls replay one of the last 1024 requests.
+// Without the window a replay costs an exists() and an "Order already exists" exception,
+// with it the replay gets the created order back from the window.
+// retry measures a replay alone, the new orders are created in the setup
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class IdempotentCreateBenchmark {
+    private static final int RECENT = 1024;
+
+    @Param({"0", "30"})
+    private int retryRate;
+
+    @Param({"false", "true"})
+    private boolean idempotent;
+
+    private OrderService orderService;
+    private final String[] recent = new String[RECENT];
+    private long next;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Outcome {
+        public long rejected;
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        IdempotencyWindow window = idempotent ? new IdempotencyWindow(Duration.ofMinutes(10), 1 << 16) : null;
+        orderService = new OrderService(new InMemoryOrderRepository(1 << 20), new OrderCalculatorV2(),
+                null, null, null, window);
+        for (int i = 0; i < RECENT; i++) {
+            create();
+        }
+    }
+
+    @Benchmark
+    public Object createOrder(Outcome outcome) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(100) >= retryRate) {
+            return create();
+        }
+        try {
+            return orderService.createOrder(recent[random.nextInt(RECENT)], 10.0, 2, 0.2);
+        } catch (IllegalArgumentException e) {
+            outcome.rejected++;
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object retry(Outcome outcome) {
+        try {
+            return orderService.createOrder(recent[ThreadLocalRandom.current().nextInt(RECENT)], 10.0, 2, 0.2);
+        } catch (IllegalArgumentException e) {
+            outcome.rejected++;
+            return e;
+        }
+    }
+
+    private Object create() {
+        String orderId = "order-" + next;
+        recent[(int) (next++ % RECENT)] = orderId;
+        return orderService.createOrder(orderId, 10.0, 2, 0.2);
+    }
+}
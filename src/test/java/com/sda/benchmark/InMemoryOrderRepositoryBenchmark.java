@@ -0,0 +1,79 @@
+package com.sda.benchmark;
+
+import com.sda.InMemoryOrderRepository;
+import com.sda.Order;
+import com.sda.OrderCalculatorV2;
+import com.sda.OrderService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Mixed create / confirm / cancel traffic through OrderService on top of the
+// in-memory repository. Run with -t / -tg to see how it scales with the number of cores
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class InMemoryOrderRepositoryBenchmark {
+
+    @Param({"1000000", "10000000"})
+    private int orders;
+
+    private OrderService orderService;
+    private InMemoryOrderRepository repository;
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = new InMemoryOrderRepository(orders * 2);
+        orderService = new OrderService(repository, new OrderCalculatorV2());
+        for (int i = 0; i < orders; i++) {
+            repository.save(new Order(String.valueOf(i), 100.0));
+        }
+        nextId.set(orders);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public Order create() {
+        return orderService.createOrder(String.valueOf(nextId.getAndIncrement()), 100.0, 2, 0.1);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public boolean confirm() {
+        try {
+            orderService.confirmOrder(randomExistingId());
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public boolean cancel() {
+        try {
+            orderService.cancelOrder(randomExistingId());
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public boolean exists() {
+        return repository.exists(randomExistingId());
+    }
+
+    private String randomExistingId() {
+        return String.valueOf(ThreadLocalRandom.current().nextInt(orders));
+    }
+}
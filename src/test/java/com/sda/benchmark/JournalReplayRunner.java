@@ -0,0 +1,80 @@
+package com.sda.benchmark;
+
+import com.sda.Order;
+import com.sda.OrderJournal;
+import com.sda.OrderStatus;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+// Replay speed of OrderJournal: writes a journal of the given number of events over a fixed set of orders,
+// then times startup twice, once replaying the whole journal and once from the snapshot plus the tail after it.
+// The journal takes about 50 bytes per event, 100M events are ~5 GB of local disk.
+//
+//   mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sda.benchmark.JournalReplayRunner \
+//       -Dexec.args="<events> <orders> <snapshot every>"
+public class JournalReplayRunner {
+
+    public static void main(String[] args) throws Exception {
+        long events = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+        int orderCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        long snapshotEvery = args.length > 2 ? Long.parseLong(args[2]) : events * 2 / 5;
+
+        Path directory = Files.createTempDirectory("journal-replay");
+        try {
+            long start = System.nanoTime();
+            try (OrderJournal journal = new OrderJournal(directory, null, snapshotEvery)) {
+                Order[] orders = new Order[orderCount];
+                for (long i = 0; i < events; i++) {
+                    int index = (int) (i % orderCount);
+                    Order order = orders[index];
+                    if (order == null) {
+                        order = new Order("order-" + index, 1999 + index, 2);
+                        journal.save(order);
+                    } else {
+                        order = order.withStatus(order.getStatus() == OrderStatus.CONFIRMED
+                                ? OrderStatus.CREATED : OrderStatus.CONFIRMED);
+                        journal.update(order);
+                    }
+                    orders[index] = order;
+                }
+            }
+            report("write", events, System.nanoTime() - start);
+            System.out.printf("journal: %,d MB%n", Files.size(directory.resolve("orders.journal")) / (1024 * 1024));
+
+            replay("snapshot + tail", directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (file.getFileName().toString().startsWith("snapshot-")) {
+                        Files.delete(file);
+                    }
+                }
+            }
+            replay("full replay", directory);
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static void replay(String name, Path directory) throws Exception {
+        System.gc();
+        long start = System.nanoTime();
+        // snapshots are only taken by the writes, reopening with a huge interval doesn't add one
+        try (OrderJournal journal = new OrderJournal(directory, null, Long.MAX_VALUE)) {
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%s: %,d orders recovered, %,d of %,d events replayed%n",
+                    name, journal.size(), journal.replayedEvents(), journal.eventCount());
+            report(name, journal.replayedEvents(), elapsed);
+        }
+    }
+
+    private static void report(String name, long events, long nanos) {
+        System.out.printf("%s: %,d ms, %,.0f events/s%n", name, nanos / 1_000_000, events * 1e9 / nanos);
+    }
+}
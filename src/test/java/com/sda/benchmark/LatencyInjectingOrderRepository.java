@@ -0,0 +1,68 @@
+package com.sda.benchmark;
+
+import com.sda.InMemoryOrderRepository;
+import com.sda.Order;
+import com.sda.OrderRepository;
+
+import java.util.Optional;
+import java.util.concurrent.locks.LockSupport;
+
+// Stand-in for a remote database: every call is delayed by a fixed latency, then served from memory.
+// Parking (not spinning) lets a virtual thread give its carrier thread back while it waits
+class LatencyInjectingOrderRepository implements OrderRepository {
+    private final OrderRepository delegate;
+    private final long latencyNanos;
+
+    LatencyInjectingOrderRepository(long latencyNanos) {
+        this(new InMemoryOrderRepository(1 << 20), latencyNanos);
+    }
+
+    // the delegate can be filled directly, without paying the latency
+    LatencyInjectingOrderRepository(OrderRepository delegate, long latencyNanos) {
+        this.delegate = delegate;
+        this.latencyNanos = latencyNanos;
+    }
+
+    @Override
+    public void save(Order order) {
+        roundTrip();
+        delegate.save(order);
+    }
+
+    @Override
+    public Optional<Order> findById(String orderId) {
+        roundTrip();
+        return delegate.findById(orderId);
+    }
+
+    @Override
+    public void update(Order order) {
+        roundTrip();
+        delegate.update(order);
+    }
+
+    @Override
+    public boolean exists(String orderId) {
+        roundTrip();
+        return delegate.exists(orderId);
+    }
+
+    @Override
+    public boolean compareAndUpdate(Order order, int expectedVersion) {
+        roundTrip();
+        return delegate.compareAndUpdate(order, expectedVersion);
+    }
+
+    @Override
+    public void delete(String orderId) {
+        roundTrip();
+        delegate.delete(orderId);
+    }
+
+    private void roundTrip() {
+        long deadline = System.nanoTime() + latencyNanos;
+        for (long left = latencyNanos; left > 0; left = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(left);
+        }
+    }
+}
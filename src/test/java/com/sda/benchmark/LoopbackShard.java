@@ -0,0 +1,63 @@
+package com.sda.benchmark;
+
+import com.sda.InMemoryOrderRepository;
+import com.sda.Order;
+import com.sda.OrderRepository;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
+// Stand-in for a shard node reached over a local loopback connection: one connection, so calls
+// are served one at a time, each taking the node's service time. A node then has a fixed capacity
+// of 1 / service time calls per second, however many callers wait on it, like a real single node.
+// Bulk calls are one round trip
+class LoopbackShard implements OrderRepository {
+    private final InMemoryOrderRepository orders = new InMemoryOrderRepository(1 << 16);
+    private final LatencyInjectingOrderRepository connection;
+
+    LoopbackShard(long serviceTimeNanos) {
+        this.connection = new LatencyInjectingOrderRepository(orders, serviceTimeNanos);
+    }
+
+    // fills the node directly, without paying the service time
+    void preload(Order order) {
+        orders.save(order);
+    }
+
+    @Override
+    public synchronized void save(Order order) {
+        connection.save(order);
+    }
+
+    @Override
+    public synchronized Optional<Order> findById(String orderId) {
+        return connection.findById(orderId);
+    }
+
+    @Override
+    public synchronized void update(Order order) {
+        connection.update(order);
+    }
+
+    @Override
+    public synchronized boolean exists(String orderId) {
+        return connection.exists(orderId);
+    }
+
+    @Override
+    public synchronized boolean compareAndUpdate(Order order, int expectedVersion) {
+        return connection.compareAndUpdate(order, expectedVersion);
+    }
+
+    @Override
+    public synchronized void delete(String orderId) {
+        connection.delete(orderId);
+    }
+
+    @Override
+    public synchronized Set<String> existsAll(Collection<String> orderIds) {
+        connection.exists("");
+        return orders.existsAll(orderIds);
+    }
+}
@@ -0,0 +1,65 @@
+package com.sda.benchmark;
+
+import com.sda.MappedOrderRepository;
+import com.sda.Order;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Startup (index rebuild) time and findById latency of the memory-mapped repository.
+// The data files are generated once per size under target/benchmark-data and reused
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g"})
+public class MappedOrderRepositoryBenchmark {
+
+    @Param({"1000000", "10000000", "50000000"})
+    private int orders;
+
+    private Path file;
+    private MappedOrderRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Paths.get("target", "benchmark-data", "orders-" + orders + ".dat");
+        if (Files.notExists(file)) {
+            Files.createDirectories(file.getParent());
+            try (MappedOrderRepository writer = new MappedOrderRepository(file)) {
+                for (int i = 0; i < orders; i++) {
+                    writer.save(new Order(String.valueOf(i), i % 1000));
+                }
+            }
+        }
+        repository = new MappedOrderRepository(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public int startup() throws IOException {
+        try (MappedOrderRepository reopened = new MappedOrderRepository(file)) {
+            return reopened.size();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public Optional<Order> findById() {
+        return repository.findById(String.valueOf(ThreadLocalRandom.current().nextInt(orders)));
+    }
+}
@@ -0,0 +1,67 @@
+package com.sda.benchmark;
+
+import com.sda.InMemoryOrderRepository;
+import com.sda.Order;
+import com.sda.OrderCalculatorV2;
+import com.sda.OrderMetrics;
+import com.sda.OrderRepository;
+import com.sda.OrderService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of OrderMetrics on the hot path: the same OrderService calls without metrics, with the
+// service operations timed, and with the repository instrumented as well. Every timed call costs
+// two System.nanoTime() reads, confirmOrder() times 1 operation + 2 repository calls.
+// sampleEvery 64 times one call in 64, sampleEvery is ignored without metrics
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class MetricsOverheadBenchmark {
+    private static final int ORDERS = 1 << 16;
+
+    @Param({"none", "service", "repository"})
+    private String metricsLevel;
+
+    @Param({"1", "64"})
+    private int sampleEvery;
+
+    private final String[] orderIds = new String[ORDERS];
+    private OrderService orderService;
+    private long nextNewId;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        OrderRepository repository = new InMemoryOrderRepository(ORDERS * 4);
+        OrderMetrics metrics = null;
+        if (!metricsLevel.equals("none")) {
+            metrics = new OrderMetrics(sampleEvery);
+        }
+        if (metricsLevel.equals("repository")) {
+            repository = metrics.instrument(repository);
+        }
+        orderService = new OrderService(repository, new OrderCalculatorV2(), null, metrics);
+        for (int i = 0; i < ORDERS; i++) {
+            orderIds[i] = "existing-" + i;
+            orderService.createOrder(orderIds[i], 100.0, 2, 0.1);
+        }
+        nextNewId = 0;
+    }
+
+    @Benchmark
+    public Order createOrder() {
+        return orderService.createOrder(Long.toString(nextNewId++), 100.0, 2, 0.1);
+    }
+
+    // created -> confirmed the first time round, confirmed -> confirmed after that, both are accepted
+    @Benchmark
+    public String confirmOrder() {
+        String orderId = orderIds[next = (next + 1) & (ORDERS - 1)];
+        orderService.confirmOrder(orderId);
+        return orderId;
+    }
+}
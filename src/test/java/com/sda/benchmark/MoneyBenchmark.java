@@ -0,0 +1,80 @@
+package com.sda.benchmark;
+
+import com.sda.BigDecimalPricing;
+import com.sda.MoneyCalculator;
+import com.sda.OrderCalculatorV2;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// One line item priced with doubles, exact scaled longs and the BigDecimal reference.
+// Run with -prof gc to see that MoneyCalculator allocates nothing per call
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+    private static final int ITEMS = 1024;
+
+    private final OrderCalculatorV2 doubleCalculator = new OrderCalculatorV2();
+    private final MoneyCalculator moneyCalculator = new MoneyCalculator(2, RoundingMode.HALF_EVEN);
+
+    private final double[] prices = new double[ITEMS];
+    private final int[] counts = new int[ITEMS];
+    private final double[] taxRates = new double[ITEMS];
+    private final long[] minorPrices = new long[ITEMS];
+    private final long[] minorTaxRates = new long[ITEMS];
+    private final BigDecimal[] decimalPrices = new BigDecimal[ITEMS];
+    private final BigDecimal[] decimalTaxRates = new BigDecimal[ITEMS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < ITEMS; i++) {
+            minorPrices[i] = random.nextInt(100_000);
+            counts[i] = 1 + random.nextInt(10);
+            minorTaxRates[i] = random.nextInt(25) * 10_000L;
+            prices[i] = moneyCalculator.toDouble(minorPrices[i]);
+            taxRates[i] = minorTaxRates[i] / 1e6;
+            decimalPrices[i] = BigDecimal.valueOf(minorPrices[i], 2);
+            decimalTaxRates[i] = BigDecimal.valueOf(minorTaxRates[i], MoneyCalculator.RATE_SCALE);
+        }
+    }
+
+    private int nextItem() {
+        return next = (next + 1) & (ITEMS - 1);
+    }
+
+    @Benchmark
+    public double doubles() {
+        int i = nextItem();
+        return doubleCalculator.calculateTotal(prices[i], counts[i], taxRates[i], 0, 0);
+    }
+
+    @Benchmark
+    public long scaledLongs() {
+        int i = nextItem();
+        return moneyCalculator.calculateTotal(minorPrices[i], counts[i], minorTaxRates[i], 0, 0);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        int i = nextItem();
+        return BigDecimalPricing.calculateTotal(decimalPrices[i], counts[i], decimalTaxRates[i],
+                BigDecimal.ZERO, BigDecimal.ZERO, 2, RoundingMode.HALF_EVEN);
+    }
+
+    // the OrderService path: double inputs converted to minor units first
+    @Benchmark
+    public long scaledLongsFromDoubles() {
+        int i = nextItem();
+        return moneyCalculator.calculateTotal(moneyCalculator.toMinorUnits(prices[i]), counts[i],
+                moneyCalculator.toRate(taxRates[i]), 0, 0);
+    }
+}
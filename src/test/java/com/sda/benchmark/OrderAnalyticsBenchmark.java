@@ -0,0 +1,71 @@
+package com.sda.benchmark;
+
+import com.sda.Order;
+import com.sda.OrderAnalytics;
+import com.sda.OrderStatus;
+import com.sda.OrderStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// What the per status figures cost over a store of the given number of orders:
+// - recordTransition: the O(1) update OrderService makes on every confirm
+// - summary: a dashboard query answered from the running figures
+// - scan: the same figures computed from scratch over a snapshot of the store
+// - findAll: the old way, every order pulled out through findById()
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderAnalyticsBenchmark {
+
+    @Param({"1000000"})
+    private int orders;
+
+    private OrderStore store;
+    private OrderAnalytics analytics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new OrderStore(orders);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < orders; i++) {
+            Order order = new Order(String.valueOf(i), random.nextInt(1, 100_000) / 100.0);
+            store.save(random.nextInt(3) == 0 ? order.withStatus(OrderStatus.CONFIRMED) : order);
+        }
+        analytics = OrderAnalytics.of(store);
+    }
+
+    @Benchmark
+    public void recordTransition() {
+        analytics.recordTransition(ThreadLocalRandom.current().nextInt(1, 100_000) / 100.0,
+                OrderStatus.CREATED, OrderStatus.CONFIRMED);
+    }
+
+    @Benchmark
+    public double summary() {
+        OrderAnalytics.StatusSummary summary = analytics.summary(OrderStatus.CONFIRMED);
+        return summary.getTotal() + summary.amountAtPercentile(99);
+    }
+
+    @Benchmark
+    public Map<OrderStatus, OrderAnalytics.StatusSummary> scan() {
+        return OrderAnalytics.scan(store);
+    }
+
+    @Benchmark
+    public double findAll() {
+        double total = 0;
+        for (int i = 0; i < orders; i++) {
+            Order order = store.findById(String.valueOf(i)).orElseThrow();
+            if (order.getStatus() == OrderStatus.CONFIRMED) {
+                total += order.getAmount();
+            }
+        }
+        return total;
+    }
+}
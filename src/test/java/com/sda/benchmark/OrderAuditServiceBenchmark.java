@@ -0,0 +1,71 @@
+package com.sda.benchmark;
+
+import com.sda.InMemoryOrderRepository;
+import com.sda.Order;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// OrderAuditService operations on a log that already holds logSize entries.
+// The log is rebuilt for every iteration, so it never grows far beyond logSize
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g"})
+public class OrderAuditServiceBenchmark {
+    private static final int BATCH = 100;
+
+    @Param({"1000", "100000", "1000000"})
+    private int logSize;
+
+    private final List<Order> batch = new ArrayList<>();
+    private SteppingAuditService service;
+    private LocalDateTime halfOfTheLog;
+
+    @Setup(Level.Trial)
+    public void setUpOrders() {
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(new Order("order-" + i, 100.0));
+        }
+        halfOfTheLog = LocalDateTime.ofInstant(Instant.ofEpochMilli(logSize / 2), ZoneId.systemDefault());
+    }
+
+    // a fresh log is needed before every clear, which is why that one is a single shot
+    @Setup(Level.Iteration)
+    public void setUpLog() {
+        InMemoryOrderRepository repository = new InMemoryOrderRepository();
+        batch.forEach(repository::save);
+        service = new SteppingAuditService(repository);
+        for (int i = 0; i < logSize; i++) {
+            service.recordAudit("UPDATED", batch.get(i % BATCH).getOrderId());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void recordAudit() {
+        service.recordAudit("UPDATED", "order-1");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void processOrderUpdate() {
+        service.processOrderUpdate(batch);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    public int clearOldEntries() {
+        return service.clearOldEntries(halfOfTheLog);
+    }
+}
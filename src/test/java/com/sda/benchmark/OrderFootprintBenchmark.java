@@ -0,0 +1,98 @@
+package com.sda.benchmark;
+
+import com.sda.InMemoryOrderRepository;
+import com.sda.Order;
+import com.sda.OrderRepository;
+import com.sda.OrderStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.Reference;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Retained heap per live order: object model (InMemoryOrderRepository) vs columns (OrderStore),
+// with canonical numeric ids ("12345") and with textual ones ("order-12345"), and what the Order
+// views handed out by OrderStore.findById() cost while they are held.
+// The interesting number is the retainedBytesPerOrder counter, not the time
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+// serial GC: one full collection moves everything live into the tenured generation
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g", "-XX:+UseSerialGC"})
+public class OrderFootprintBenchmark {
+
+    @Param({"1000000", "10000000"})
+    private int orders;
+
+    @Param({"numeric", "textual"})
+    private String ids;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long retainedBytesPerOrder;
+    }
+
+    @Benchmark
+    public void objectModel(Footprint footprint) {
+        measure(() -> new InMemoryOrderRepository(orders), footprint);
+    }
+
+    @Benchmark
+    public void columnar(Footprint footprint) {
+        measure(() -> new OrderStore(orders), footprint);
+    }
+
+    // the store is filled before the first reading, so only the views are counted
+    @Benchmark
+    public void columnarViews(Footprint footprint) {
+        OrderStore store = new OrderStore(orders);
+        for (int i = 0; i < orders; i++) {
+            store.save(new Order(orderId(i), i % 1000));
+        }
+        long before = usedHeapAfterGc();
+        Order[] views = new Order[orders];
+        for (int i = 0; i < orders; i++) {
+            views[i] = store.findById(orderId(i)).orElseThrow();
+        }
+        long after = usedHeapAfterGc();
+        Reference.reachabilityFence(views);
+        Reference.reachabilityFence(store);
+        footprint.retainedBytesPerOrder = (after - before) / orders;
+    }
+
+    // the repository is created after the first reading, pre-sized columns count too
+    private void measure(Supplier<OrderRepository> factory, Footprint footprint) {
+        long before = usedHeapAfterGc();
+        OrderRepository repository = factory.get();
+        for (int i = 0; i < orders; i++) {
+            repository.save(new Order(orderId(i), i % 1000));
+        }
+        long after = usedHeapAfterGc();
+        // keep the repository alive for the second reading without holding on to it afterwards
+        Reference.reachabilityFence(repository);
+        footprint.retainedBytesPerOrder = (after - before) / orders;
+    }
+
+    private String orderId(int i) {
+        return ids.equals("numeric") ? String.valueOf(i) : "order-" + i;
+    }
+
+    // sums what the heap pools held right after the last collection,
+    // the plain "used" value also counts whatever the current TLABs allocated since
+    private static long usedHeapAfterGc() {
+        System.gc();
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null) {
+                used += pool.getCollectionUsage().getUsed();
+            }
+        }
+        return used;
+    }
+}
@@ -0,0 +1,98 @@
+package com.sda.benchmark;
+
+import com.sda.InMemoryOrderRepository;
+import com.sda.MappedOrderRepository;
+import com.sda.Order;
+import com.sda.OrderBatchResult;
+import com.sda.OrderCalculatorV2;
+import com.sda.OrderRepository;
+import com.sda.OrderRequest;
+import com.sda.OrderService;
+import com.sda.OrderStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Importing a feed of new orders (10% of them duplicates): createOrder() per request
+// vs one createOrders() call. Every invocation starts from an empty repository
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 15)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class OrderImportBenchmark {
+
+    @Param({"100000"})
+    private int requests;
+
+    @Param({"inMemory", "store", "mapped"})
+    private String repositoryType;
+
+    private final List<OrderRequest> feed = new ArrayList<>();
+    private OrderRepository repository;
+    private OrderService orderService;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUpFeed() {
+        Random random = new Random(42);
+        for (int i = 0; i < requests; i++) {
+            int id = random.nextInt(10) == 0 && i > 0 ? random.nextInt(i) : i;
+            feed.add(new OrderRequest(String.valueOf(id), random.nextInt(100_000) / 100.0, 1 + random.nextInt(5), 0.2));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpRepository() throws IOException {
+        switch (repositoryType) {
+            case "store":
+                repository = new OrderStore(requests);
+                break;
+            case "mapped":
+                file = Paths.get("target", "benchmark-data", "import.dat");
+                Files.createDirectories(file.getParent());
+                Files.deleteIfExists(file);
+                repository = new MappedOrderRepository(file);
+                break;
+            default:
+                repository = new InMemoryOrderRepository(requests);
+        }
+        orderService = new OrderService(repository, new OrderCalculatorV2());
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownRepository() throws Exception {
+        if (repository instanceof AutoCloseable) {
+            ((AutoCloseable) repository).close();
+        }
+    }
+
+    @Benchmark
+    public int perOrder() {
+        int created = 0;
+        for (OrderRequest request : feed) {
+            try {
+                Order order = orderService.createOrder(request.getOrderId(), request.getItemPrice(),
+                        request.getItemCount(), request.getTaxRate());
+                created += order != null ? 1 : 0;
+            } catch (IllegalArgumentException e) {
+                // duplicate
+            }
+        }
+        return created;
+    }
+
+    @Benchmark
+    public int batched() {
+        OrderBatchResult result = orderService.createOrders(feed);
+        return result.getCreated().size();
+    }
+}
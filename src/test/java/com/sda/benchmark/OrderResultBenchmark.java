@@ -0,0 +1,64 @@
+package com.sda.benchmark;
+
+import com.sda.InMemoryOrderRepository;
+import com.sda.OrderCalculatorV2;
+import com.sda.OrderResult;
+import com.sda.OrderService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Throwing API against result API when rejectionRate percent of the calls are rejected:
+// half of them create an order that already exists, half confirm one that doesn't.
+// The accepted calls create a new order. Stacks here are shallow, behind a web framework
+// fillInStackTrace() walks many more frames and the gap grows
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class OrderResultBenchmark {
+
+    @Param({"0", "10", "50", "90"})
+    private int rejectionRate;
+
+    private OrderService orderService;
+    private long next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        orderService = new OrderService(new InMemoryOrderRepository(1 << 20), new OrderCalculatorV2());
+        orderService.createOrder("existing", 10.0, 2, 0.2);
+    }
+
+    @Benchmark
+    public Object throwing() {
+        int roll = ThreadLocalRandom.current().nextInt(200);
+        try {
+            if (roll < rejectionRate) {
+                return orderService.createOrder("existing", 10.0, 2, 0.2);
+            }
+            if (roll < 2 * rejectionRate) {
+                orderService.confirmOrder("missing");
+                return null;
+            }
+            return orderService.createOrder("order-" + next++, 10.0, 2, 0.2);
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public OrderResult result() {
+        int roll = ThreadLocalRandom.current().nextInt(200);
+        if (roll < rejectionRate) {
+            return orderService.tryCreateOrder("existing", 10.0, 2, 0.2);
+        }
+        if (roll < 2 * rejectionRate) {
+            return orderService.tryConfirmOrder("missing");
+        }
+        return orderService.tryCreateOrder("order-" + next++, 10.0, 2, 0.2);
+    }
+}
@@ -0,0 +1,61 @@
+package com.sda.benchmark;
+
+import com.sda.InMemoryOrderRepository;
+import com.sda.Order;
+import com.sda.OrderCalculatorV2;
+import com.sda.OrderService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Single threaded latency of each OrderService operation on the in-memory repository.
+// confirm and cancel walk over pre-created orders. After the first round they confirm a confirmed
+// (cancel a cancelled) order, which is accepted and does the same read, check and compareAndUpdate()
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class OrderServiceBenchmark {
+    private static final int ORDERS = 1 << 16;
+
+    private final String[] orderIds = new String[ORDERS];
+    private OrderService orderService;
+    private long nextNewId;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        orderService = new OrderService(new InMemoryOrderRepository(ORDERS * 4), new OrderCalculatorV2());
+        for (int i = 0; i < ORDERS; i++) {
+            orderIds[i] = "existing-" + i;
+            orderService.createOrder(orderIds[i], 100.0, 2, 0.1);
+        }
+        nextNewId = 0;
+    }
+
+    private int nextOrder() {
+        return next = (next + 1) & (ORDERS - 1);
+    }
+
+    // the new id String is part of the measured work, like it is for a real caller
+    @Benchmark
+    public Order createOrder() {
+        return orderService.createOrder(Long.toString(nextNewId++), 100.0, 2, 0.1);
+    }
+
+    @Benchmark
+    public String confirmOrder() {
+        String orderId = orderIds[nextOrder()];
+        orderService.confirmOrder(orderId);
+        return orderId;
+    }
+
+    @Benchmark
+    public String cancelOrder() {
+        String orderId = orderIds[nextOrder()];
+        orderService.cancelOrder(orderId);
+        return orderId;
+    }
+}
@@ -0,0 +1,78 @@
+package com.sda.benchmark;
+
+import com.sda.OrderCalculator;
+import com.sda.OrderCalculatorV2;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Per call pricing vs the bulk array API, both calculators.
+// Scores are per batch, divide by batchSize for the cost of one line item
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+    @Param({"1024", "65536"})
+    private int batchSize;
+
+    private final OrderCalculator calculator = new OrderCalculator();
+    private final OrderCalculatorV2 calculatorV2 = new OrderCalculatorV2();
+
+    private double[] prices;
+    private int[] counts;
+    private double[] taxRates;
+    private double[] discounts;
+    private double[] thresholds;
+    private double[] totals;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        prices = new double[batchSize];
+        counts = new int[batchSize];
+        taxRates = new double[batchSize];
+        discounts = new double[batchSize];
+        thresholds = new double[batchSize];
+        totals = new double[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            prices[i] = random.nextInt(100_000) / 100.0;
+            counts[i] = 1 + random.nextInt(10);
+            taxRates[i] = random.nextInt(25) / 100.0;
+            discounts[i] = random.nextInt(5_000) / 100.0;
+            thresholds[i] = random.nextInt(100_000) / 100.0;
+        }
+    }
+
+    @Benchmark
+    public double[] perCall() {
+        for (int i = 0; i < batchSize; i++) {
+            totals[i] = calculator.calculateTotal(prices[i], counts[i], taxRates[i], discounts[i]);
+        }
+        return totals;
+    }
+
+    @Benchmark
+    public double[] bulk() {
+        calculator.calculateTotals(prices, counts, taxRates, discounts, totals);
+        return totals;
+    }
+
+    @Benchmark
+    public double[] perCallV2() {
+        for (int i = 0; i < batchSize; i++) {
+            totals[i] = calculatorV2.calculateTotal(prices[i], counts[i], taxRates[i], discounts[i], thresholds[i]);
+        }
+        return totals;
+    }
+
+    @Benchmark
+    public double[] bulkV2() {
+        calculatorV2.calculateTotals(prices, counts, taxRates, discounts, thresholds, totals);
+        return totals;
+    }
+}
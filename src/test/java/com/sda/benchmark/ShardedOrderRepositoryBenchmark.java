@@ -0,0 +1,71 @@
+package com.sda.benchmark;
+
+import com.sda.Order;
+import com.sda.ShardedOrderRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Throughput of ShardedOrderRepository over 1 to 16 loopback shard nodes, each serving one call
+// at a time in serviceMicros.
+//
+// - findById: 64 callers, each call goes to the shard that owns the order,
+//   throughput should grow close to linearly with the shards
+// - existsAll: one caller checking batches of 64 random ids, split over the shards in parallel,
+//   should stay flat: a batch costs one round trip however many shards it touches
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ShardedOrderRepositoryBenchmark {
+    private static final int ORDERS = 100_000;
+    private static final int BATCH = 64;
+
+    @Param({"1", "2", "4", "8", "16"})
+    private int shards;
+
+    @Param({"1000"})
+    private long serviceMicros;
+
+    private ShardedOrderRepository repository;
+    private String[] orderIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, LoopbackShard> nodes = new LinkedHashMap<>();
+        for (int i = 0; i < shards; i++) {
+            nodes.put("node-" + i, new LoopbackShard(TimeUnit.MICROSECONDS.toNanos(serviceMicros)));
+        }
+        repository = new ShardedOrderRepository(nodes);
+        orderIds = new String[ORDERS];
+        for (int i = 0; i < ORDERS; i++) {
+            orderIds[i] = "order-" + i;
+            nodes.get(repository.shardOf(orderIds[i])).preload(new Order(orderIds[i], 100.0));
+        }
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object findById() {
+        return repository.findById(orderIds[ThreadLocalRandom.current().nextInt(ORDERS)]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(BATCH)
+    public Set<String> existsAll() {
+        List<String> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(orderIds[ThreadLocalRandom.current().nextInt(ORDERS)]);
+        }
+        return repository.existsAll(batch);
+    }
+}
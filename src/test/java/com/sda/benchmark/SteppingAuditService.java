@@ -0,0 +1,20 @@
+package com.sda.benchmark;
+
+import com.sda.ManualAuditClock;
+import com.sda.OrderAuditService;
+import com.sda.OrderRepository;
+
+import java.time.Duration;
+
+// every recorded entry is one millisecond after the previous one, starting at the epoch,
+// so a cutoff of n milliseconds removes exactly the first n entries
+class SteppingAuditService extends OrderAuditService {
+
+    SteppingAuditService() {
+        this(null);
+    }
+
+    SteppingAuditService(OrderRepository repository) {
+        super(repository, null, null, new ManualAuditClock(0, Duration.ofMillis(1)));
+    }
+}